@@ -39,22 +39,45 @@ import at.bitcoin_austria.bitfluids.trafficSignal.Status;
 import at.bitcoin_austria.bitfluids.trafficSignal.TrafficSignal;
 import at.bitcoin_austria.bitfluids.trafficSignal.TrafficSignalReciever;
 import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.AddressFormatException;
 import com.google.bitcoin.core.Sha256Hash;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BitFluidsMainActivity extends Activity {
     public static final String TAG = "BF";
     public static final int TTS_ACTION = 1224;
+    /**
+     * sales shown after a restart, older ones stay in the journal only
+     */
+    private static final int RESTORED_SALES = 200;
+    /**
+     * how long a sale address is watched after it was shown last. a day, so a payment
+     * which is only seen once it is in a block is still recognized
+     */
+    private static final long SALE_ADDRESS_TTL = 24 * 60 * 60 * 1000L;
+    private static final int ADDRESSES_AHEAD = 8;
+    private static final int ADDRESS_THREADS = 1;
+    //sale addresses watched again after a restart, a few hundred sales a day fit within the ttl
+    private static final int SALE_ADDRESS_LOG_SIZE = 512;
     private final Environment env = Environment.PROD;
 
     private final Handler uiHandler = new Handler();
+    //reused for every throughput update
+    private final DecimalFormat tpsFormat = new DecimalFormat("#.0");
+    //all view updates from other threads go through this, at most once per frame
+    private UiUpdateCoalescer uiUpdates;
 
     // wake lock for preventing the screen from sleeping
     private PowerManager.WakeLock wakeLock;
@@ -70,7 +93,14 @@ public class BitFluidsMainActivity extends Activity {
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
     //service dependencies, initialized in constructor, run/shutdown in onCreate onDestroy
+    private EventDispatcher events;
     private BitcoinTransactionListener bitcoinTransactionListener;
+    private PriceService priceService;
+    private AndroidHttpClient httpClient;
+    private PaymentCodes paymentCodes;
+    private ExpiringAddressIndex<FluidType> watchedAddresses;
+    private Runnable queryBtcEurTask;
+    private SalesJournal salesJournal;
     private BroadcastReceiver netStatusReciever;
     private TextView netStatus;
     private TextView exchStatus;
@@ -100,6 +130,12 @@ public class BitFluidsMainActivity extends Activity {
         }
         bitcoinTransactionListener.shutdown();
         bitcoinTransactionListener = null;
+        priceService.shutdown();
+        httpClient.close();
+        paymentCodes.shutdown();
+        salesJournal.close();
+        events.shutdown();
+        uiHandler.removeCallbacksAndMessages(null);
     }
 
 
@@ -140,25 +176,16 @@ public class BitFluidsMainActivity extends Activity {
         wakeLock.acquire();
     }
 
-    @Override
-    protected void onSaveInstanceState(Bundle outState) {
-        super.onSaveInstanceState(outState);
-        outState.putSerializable("state", state);
-    }
-
-    @Override
-    protected void onRestoreInstanceState(Bundle savedInstanceState) {
-        super.onRestoreInstanceState(savedInstanceState);
-        restoreState(savedInstanceState);
-    }
-
-    private void restoreState(Bundle savedInstanceState) {
+    /**
+     * the sales are read from the journal, which survives process death, instead of the instance state bundle
+     */
+    private void restoreState() {
         Preconditions.checkNotNull(bitcoinTransactionListener);
-        if (savedInstanceState != null) {
-            state = (BitFluidsActivityState) savedInstanceState.getSerializable("state");
-        }
-        if (state == null) {
-            state = new BitFluidsActivityState();
+        state = new BitFluidsActivityState();
+        try {
+            state.getTransactionItems().addAll(salesJournal.readRecent(RESTORED_SALES));
+        } catch (IOException e) {
+            Log.e(TAG, "could not read the sales journal", e);
         }
         bitcoinTransactionListener.addHashes(state.getTransactionItems());
         list_view_adapter = new ArrayAdapter<TransactionItem>(this, R.layout.list_tx_item, Lists.reverse(state.getTransactionItems()));
@@ -181,9 +208,32 @@ public class BitFluidsMainActivity extends Activity {
         bind();
         checkForTTS();
 
-        bitcoinTransactionListener = new BitcoinTransactionListener(env);
-        restoreState(savedInstanceState);
-        final PriceService priceService = new PriceService(AndroidHttpClient.newInstance("Bitfluids 0.1"));
+        events = new EventDispatcher();
+        watchedAddresses = Tx2FluidsAdapter.fixedKeys(env, SALE_ADDRESS_TTL, Clock.SYSTEM);
+        //the keys of the sale addresses are added as they are shown, only the two fixed ones need hashing
+        WatchedPubKeys saleKeys = WatchedPubKeys.growing(watchedAddresses, BitcoinTransactionListener.fixedKeys(env));
+        try {
+            bitcoinTransactionListener = new BitcoinTransactionListener(env, getFilesDir(), events,
+                    BitcoinTransactionListener.withAddressIndex(watchedAddresses, getFilesDir()), saleKeys);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot open the address index", e);
+        }
+        try {
+            salesJournal = SalesJournal.open(new File(getFilesDir(), "sales"));
+        } catch (IOException e) {
+            throw new RuntimeException("cannot open the sales journal", e);
+        }
+        restoreState();
+        //keeps connections alive, passing the context also persists TLS sessions across restarts
+        httpClient = AndroidHttpClient.newInstance("Bitfluids 0.1", this);
+        try {
+            priceService = new PriceService(new PriceAggregator(TickerSource.configured(getFilesDir(), httpClient)), events);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot read the price sources", e);
+        }
+        AddressPool addressPool = openAddressPool();
+        paymentCodes = new PaymentCodes(env, watchedAddresses, saleKeys, addressPool,
+                addressPool == null ? null : openSaleAddressLog(saleKeys));
 
         // what follows is a list of initializations, encapsulated into {} blocks
 
@@ -232,112 +282,169 @@ public class BitFluidsMainActivity extends Activity {
             netStatus.setBackgroundColor(unknown);
             exchStatus.setBackgroundColor(unknown);
             p2pStatus.setBackgroundColor(unknown);
+            final TextView tpsText = (TextView) findViewById(R.id.TPS);
+            uiUpdates = new UiUpdateCoalescer(new UiUpdateCoalescer.Screen() {
+                @Override
+                public void showSignal(SignalType signalType, Status status) {
+                    switch (signalType) { //switch is generally ugly, perhaps this should move into enum?
+                        case NETWORK:
+                            netStatus.setBackgroundColor(TrafficSignal.androidColor(status));
+                            break;
+                        case EXCHANGERATE:
+                            exchStatus.setBackgroundColor(TrafficSignal.androidColor(status));
+                            break;
+                        case PEERS:
+                            p2pStatus.setBackgroundColor(TrafficSignal.androidColor(status));
+                            break;
+                        default:
+                            throw new IllegalArgumentException("unexpected signal :" + signalType);
+
+                    }
+                }
+
+                @Override
+                public void showStats(StatsSnapshot snapshot) {
+                    tpsText.setText(tpsFormat.format(snapshot.perMinute1));
+                }
+
+                @Override
+                public void showSales(List<TransactionItem> sales) {
+                    for (TransactionItem transactionItem : sales) {
+                        state.getTransactionItems().add(transactionItem);
+                        if (transactionItem.fluidType != null && textToSpeech != null) {
+                            textToSpeech.speak(transactionItem.buildSentence(), TextToSpeech.QUEUE_ADD, null);
+                        }
+                    }
+                    list_view_adapter.notifyDataSetChanged();
+                }
+            }, new UiUpdateCoalescer.FrameScheduler() {
+                @Override
+                public void schedule(Runnable frame, long delayMillis) {
+                    uiHandler.postDelayed(frame, delayMillis);
+                }
+            }, UiUpdateCoalescer.FRAME_MILLIS);
             // start background task to singal Status
-            TrafficSignal trafficSignal = new TrafficSignal(this, bitcoinTransactionListener, priceService);
+            TrafficSignal trafficSignal = new TrafficSignal(this, events);
             netStatusReciever = trafficSignal.addNotifier(new TrafficSignalReciever() {
                 @Override
-                public void onStatusChanged(final SignalType signalType, final Status status) {
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            switch (signalType) { //switch is generally ugly, perhaps this should move into enum?
-                                case NETWORK:
-                                    netStatus.setBackgroundColor(status.androidColor);
-                                    break;
-                                case EXCHANGERATE:
-                                    exchStatus.setBackgroundColor(status.androidColor);
-                                    break;
-                                case PEERS:
-                                    p2pStatus.setBackgroundColor(status.androidColor);
-                                    break;
-                                default:
-                                    throw new IllegalArgumentException("unexpected signal :" + signalType);
-
-                            }
-                        }
-                    });
+                public void onStatusChanged(SignalType signalType, Status status) {
+                    uiUpdates.setSignal(signalType, status);
                 }
             });
         }
 
 
         {
-            final Runnable queryBtcEurTask = new Runnable() {
+            final AtomicBoolean queryRunning = new AtomicBoolean(false);
+            final AtomicBoolean queryPending = new AtomicBoolean(false);
+            queryBtcEurTask = new Runnable() {
                 @Override
                 public void run() {
-                    QueryBtcEur btcEur = new QueryBtcEur(BitFluidsMainActivity.this, priceService, env);
+                    //a query which is still running is not started a second time, it runs again when done.
+                    //pending is set first, so a query finishing right now cannot miss it
+                    queryPending.set(true);
+                    if (!queryRunning.compareAndSet(false, true)) {
+                        return;
+                    }
+                    queryPending.set(false);
+                    QueryBtcEur btcEur = new QueryBtcEur(BitFluidsMainActivity.this, priceService, queryRunning,
+                            queryPending, paymentCodes);
                     //noinspection unchecked
                     btcEur.execute();
                 }
             };
             scheduler.scheduleAtFixedRate(queryBtcEurTask, 0, 10 * 60, TimeUnit.SECONDS);
-            //todo soll nicht gleichzeitig laufen!
         }
 
         {
-            Tx2FluidsAdapter adapter = new Tx2FluidsAdapter(priceService, env);
+            Tx2FluidsAdapter adapter = new Tx2FluidsAdapter(priceService, watchedAddresses);
+            //sales must not get lost, the peer thread waits if journaling is that far behind
+            events.subscribe(Events.SALES, new Consumer<TransactionItem>() {
+                @Override
+                public void consume(TransactionItem transactionItem) {
+                    journal(transactionItem);
+                    uiUpdates.addSale(transactionItem);
+                    if (transactionItem.fluidType != null && env.getSaleKey() != null) {
+                        //the next customer gets a fresh address
+                        paymentCodes.rotate(transactionItem.fluidType);
+                        queryBtcEur();
+                    }
+                }
+            }, EventDispatcher.Policy.BLOCK, 64);
             TxNotifier convert = adapter.convert(new FluidsNotifier() {
                 @Override
-                public void onFluidPaid(final TransactionItem transactionItem) {
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            state.getTransactionItems().add(transactionItem);
-                            list_view_adapter.notifyDataSetChanged();
-                            String sentence = transactionItem.buildSentence();
-                            if (textToSpeech != null) {
-                                textToSpeech.speak(sentence, TextToSpeech.QUEUE_ADD, null);
-                            }
-                        }
-                    });
+                public void onFluidPaid(TransactionItem transactionItem) {
+                    events.publish(Events.SALES, transactionItem);
                 }
 
                 @Override
-                public void onError(String message, FluidType type, Bitcoins bitcoins) {
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            state.getTransactionItems().add(new TransactionItem(null, null, 0, Double.NaN, Sha256Hash.ZERO_HASH));
-                            list_view_adapter.notifyDataSetChanged();
-
-                        }
-                    });
+                public void onError(String message, @Nullable FluidType type, Bitcoins bitcoins, Sha256Hash hash) {
+                    Log.w(TAG, "no price for " + bitcoins + " in " + hash + ": " + message);
+                    events.publish(Events.SALES, TransactionItem.unpriced(type, bitcoins, hash));
                 }
             });
             bitcoinTransactionListener.init(convert);
-            final TextView TpsText = (TextView) findViewById(R.id.TPS);
-            bitcoinTransactionListener.setStatsNotifier(new Stats() {
+            events.subscribe(Events.STATS, new Consumer<StatsSnapshot>() {
                 @Override
-                public void update(final double tpm) {
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            TpsText.setText(new DecimalFormat("#.0").format(tpm));
-                        }
-                    });
+                public void consume(StatsSnapshot snapshot) {
+                    uiUpdates.setStats(snapshot);
                 }
-            });
+            }, EventDispatcher.Policy.COALESCE, 1);
         }
 
 
         { // click on QR code copies public address (after wallet init!)
             class QrClickListener implements OnClickListener {
-                private final Address addr;
+                private final FluidType type;
 
-                public QrClickListener(Address addr) {
-                    this.addr = addr;
+                public QrClickListener(FluidType type) {
+                    this.type = type;
                 }
 
                 @Override
                 public void onClick(View v) {
+                    Address addr = paymentCodes.getAddress(type);
                     copyToClipboard(addr.toString());
                     String t = "Address " + addr + " copied to clipboard.";
                     Toast.makeText(getApplicationContext(), t, Toast.LENGTH_SHORT).show();
                 }
             }
 
-            qr_alk.setOnClickListener(new QrClickListener(env.getKey200()));
-            qr_nonalk.setOnClickListener(new QrClickListener(env.getKey150()));
+            qr_alk.setOnClickListener(new QrClickListener(FluidType.MATE));
+            qr_nonalk.setOnClickListener(new QrClickListener(FluidType.COLA));
+        }
+    }
+
+    /**
+     * @return null if the environment has no sale key, the fixed addresses are shown then
+     */
+    @Nullable
+    private AddressPool openAddressPool() {
+        String saleKey = env.getSaleKey();
+        if (saleKey == null) {
+            return null;
+        }
+        try {
+            return new AddressPool(ExtendedPublicKey.parse(saleKey), env.getNetworkParams(),
+                    new File(getFilesDir(), "sale-address-index"), ADDRESSES_AHEAD, ADDRESS_THREADS);
+        } catch (AddressFormatException e) {
+            throw new RuntimeException("the sale key of " + env + " is broken", e);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot read the next sale address index", e);
+        }
+    }
+
+    /**
+     * watches the sale addresses shown before the restart again
+     */
+    private SaleAddressLog openSaleAddressLog(WatchedPubKeys saleKeys) {
+        try {
+            SaleAddressLog ret = new SaleAddressLog(new File(getFilesDir(), "sale-addresses"), SALE_ADDRESS_LOG_SIZE);
+            int restored = ret.restore(watchedAddresses, saleKeys, env.getNetworkParams());
+            Log.i(TAG, "watching " + restored + " sale addresses shown before the restart");
+            return ret;
+        } catch (IOException e) {
+            throw new RuntimeException("cannot read the shown sale addresses", e);
         }
     }
 
@@ -397,10 +504,29 @@ public class BitFluidsMainActivity extends Activity {
         ImageView qr_image_view = (ImageView) findViewById(id);
         qr_image_view.setImageBitmap(qr_bitmap);
         TextView qr_txt = ((TextView) findViewById(id_txt));
-        String txt = amountBtc.toCurrencyString() + "\n" + "(~" + Utils.eurDF.format(amountEur) + ")";
+        StringBuilder txt = Formats.appendCurrency(new StringBuilder(32), amountBtc).append("\n(~");
+        Formats.appendEuros(txt, amountEur).append(')');
         qr_txt.setText(txt);
     }
 
+    /**
+     * called on the dispatcher thread, before the sale is shown
+     */
+    private void journal(TransactionItem transactionItem) {
+        try {
+            salesJournal.append(transactionItem);
+        } catch (IOException e) {
+            Log.e(TAG, "could not journal " + transactionItem, e);
+        }
+    }
+
+    /**
+     * fetches the price and draws the QR codes, after the running query if there is one
+     */
+    void queryBtcEur() {
+        scheduler.execute(queryBtcEurTask);
+    }
+
     void drawQrCodes(Bitmap qrcode1_5, Bitmap qrcode2_0, Bitcoins btc_15, Bitcoins btc_20) {
         drawOneQrCode(R.id.qr_code_nonalk, R.id.qr_code_nonalk_txt, btc_15, FluidType.COLA.getEuroPrice(), qrcode1_5);
         drawOneQrCode(R.id.qr_code_alk, R.id.qr_code_alk_txt, btc_20, FluidType.MATE.getEuroPrice(), qrcode2_0);
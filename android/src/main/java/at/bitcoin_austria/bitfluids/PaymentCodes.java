@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Log;
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.uri.BitcoinURI;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * the QR codes shown for paying. after each price update the codes for the neighbouring
+ * price steps are rendered in the background, the more volatile the price the further out.
+ * with an {@link AddressPool} each drink type shows its own fresh address until it is sold,
+ * every address shown is watched for a while after it was last shown.
+ */
+final class PaymentCodes {
+    public static final int QR_SIZE = 512;
+    /**
+     * codes rendered ahead, including the ones shown. a 512px bitmap takes 1MB
+     */
+    private static final int PRERENDERED_CODES = 6;
+    private static final int CACHED_CODES = 8;
+    private static final int STEPS_PER_SIDE = 2;
+    private static final int RENDER_THREADS = 2;
+    private static final QrRasterizer QR_RASTERIZER = new QrRasterizer(Color.BLACK, Color.WHITE);
+
+    private final Environment env;
+    private final PriceLadder ladder;
+    private final VolatilityEstimator volatility = new VolatilityEstimator();
+    private final QrPrerenderer<Bitmap> prerenderer;
+    private final ExpiringAddressIndex<FluidType> watched;
+    private final WatchedPubKeys saleKeys;
+    @Nullable
+    private final AddressPool pool;
+    @Nullable
+    private final SaleAddressLog shown;
+    private final Map<FluidType, Address> current = new ConcurrentHashMap<FluidType, Address>();
+
+    /**
+     * @param watched  the index the listener looks up payments in
+     * @param saleKeys gets the public key of every sale address, see {@link WatchedPubKeys#growing}
+     * @param pool     null to show the fixed addresses of the environment
+     * @param shown    logs every sale address handed out, so it is watched again after a restart
+     */
+    PaymentCodes(Environment env, ExpiringAddressIndex<FluidType> watched, WatchedPubKeys saleKeys,
+                 @Nullable AddressPool pool, @Nullable SaleAddressLog shown) {
+        this.env = env;
+        this.watched = watched;
+        this.saleKeys = saleKeys;
+        this.pool = pool;
+        this.shown = shown;
+        //the layout only shows single drinks, more items can be rendered ahead by adding them here
+        ladder = new PriceLadder(Arrays.asList(
+                new PriceLadder.Item(FluidType.MATE, 1),
+                new PriceLadder.Item(FluidType.COLA, 1)),
+                QueryBtcEur.SHOW_NUM_DIGITS, STEPS_PER_SIDE);
+        prerenderer = new QrPrerenderer<Bitmap>(new QrPrerenderer.Renderer<Bitmap>() {
+            @Override
+            public Bitmap render(String uri) {
+                return getQRCodeBitmap(uri, QR_SIZE);
+            }
+        }, CACHED_CODES, RENDER_THREADS);
+    }
+
+    Bitmap getCode(FluidType type, Bitcoins amount) {
+        Address address = getAddress(type);
+        if (pool != null) {
+            //shown again, so it is watched for longer
+            watched.watch(address, type);
+        }
+        return prerenderer.get(uri(address, new PriceLadder.Item(type, 1), amount));
+    }
+
+    /**
+     * the address currently shown for this type
+     */
+    Address getAddress(FluidType type) {
+        if (pool == null) {
+            return fixedAddress(type);
+        }
+        Address ret = current.get(type);
+        return ret == null ? rotate(type) : ret;
+    }
+
+    /**
+     * switches this type to a fresh address, the old one stays watched until it expires
+     *
+     * @return the new address, the fixed one if the pool fails
+     */
+    Address rotate(FluidType type) {
+        if (pool == null) {
+            return fixedAddress(type);
+        }
+        ExtendedPublicKey key;
+        try {
+            key = pool.nextKey();
+        } catch (IOException e) {
+            Log.e(BitFluidsMainActivity.TAG, "no fresh address for " + type, e);
+            return fixedAddress(type);
+        }
+        Address ret = key.toAddress(env.getNetworkParams());
+        watched.watch(ret, type);
+        saleKeys.add(key.getPublicKey());
+        if (shown != null) {
+            try {
+                shown.append(key.getPublicKey(), type);
+            } catch (IOException e) {
+                Log.e(BitFluidsMainActivity.TAG, "could not log " + ret + ", it is not watched after a restart", e);
+            }
+        }
+        current.put(type, ret);
+        return ret;
+    }
+
+    /**
+     * learns from the new price and starts rendering the codes likely needed next
+     */
+    void onPrice(double eurPerBitcoin) {
+        volatility.update(eurPerBitcoin);
+        List<PriceLadder.Step> steps = ladder.plan(eurPerBitcoin, volatility.getRelativeStdDev(), PRERENDERED_CODES);
+        List<String> uris = new ArrayList<String>(steps.size());
+        for (PriceLadder.Step step : steps) {
+            uris.add(uri(getAddress(step.item.type), step.item, step.amount));
+        }
+        prerenderer.prerender(uris);
+        Log.d(BitFluidsMainActivity.TAG, "qr codes " + prerenderer.getCache());
+    }
+
+    void shutdown() {
+        prerenderer.shutdown();
+        if (pool != null) {
+            pool.shutdown();
+        }
+        if (shown != null) {
+            try {
+                shown.close();
+            } catch (IOException e) {
+                Log.e(BitFluidsMainActivity.TAG, "could not close the sale address log", e);
+            }
+        }
+    }
+
+    static Bitmap getQRCodeBitmap(final String url, final int size) {
+        try {
+            final ByteMatrix modules = QrRasterizer.encode(url, ErrorCorrectionLevel.M);
+            final int outputSize = QrRasterizer.outputSize(modules, size);
+            final int[] pixels = QR_RASTERIZER.rasterize(modules, size);
+
+            final Bitmap bitmap = Bitmap.createBitmap(outputSize, outputSize, Bitmap.Config.ARGB_8888);
+            bitmap.setPixels(pixels, 0, outputSize, 0, 0, outputSize, outputSize);
+            return bitmap;
+        } catch (final WriterException x) {
+            x.printStackTrace();
+            return null;
+        }
+    }
+
+    private Address fixedAddress(FluidType type) {
+        return type == FluidType.MATE ? env.getKey200() : env.getKey150();
+    }
+
+    private static String uri(Address address, PriceLadder.Item item, Bitcoins amount) {
+        String label = item.quantity == 1 ? item.type.getDescription() : item.quantity + "x " + item.type.getDescription();
+        return BitcoinURI.convertToBitcoinURI(address, amount.toBigInteger(), label, null);
+    }
+}
@@ -19,9 +19,8 @@ package at.bitcoin_austria.bitfluids;
 import android.graphics.Bitmap;
 import android.os.AsyncTask;
 import android.widget.TextView;
-import com.google.bitcoin.uri.BitcoinURI;
 
-import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * a good read is
@@ -35,12 +34,22 @@ final class QueryBtcEur extends AsyncTask<Void, String, QueryBtcEur.Data> {
     private final TextView txt_view;
     private final BitFluidsMainActivity activity;
     private final PriceService priceService;
-    private final Environment env;
+    private final AtomicBoolean running;
+    private final AtomicBoolean pending;
+    private final PaymentCodes paymentCodes;
 
-    QueryBtcEur(BitFluidsMainActivity activity, PriceService priceService, Environment env) {
+    /**
+     * @param running      set while a query is under way, cleared by this task when it is done
+     * @param pending      set when another query was asked for meanwhile, e.g. after a rotated address
+     * @param paymentCodes QR codes, usually rendered ahead for the new price already
+     */
+    QueryBtcEur(BitFluidsMainActivity activity, PriceService priceService, AtomicBoolean running,
+                AtomicBoolean pending, PaymentCodes paymentCodes) {
         this.activity = activity;
         this.priceService = priceService;
-        this.env = env;
+        this.running = running;
+        this.pending = pending;
+        this.paymentCodes = paymentCodes;
         this.txt_view = (TextView) activity.findViewById(R.id.recent_activity);
     }
 
@@ -65,13 +74,12 @@ final class QueryBtcEur extends AsyncTask<Void, String, QueryBtcEur.Data> {
     protected QueryBtcEur.Data doInBackground(Void... v) {
         publishProgress("connecting …");
         try {
-            Double btceur = priceService.getEurQuote();
+            Double btceur = priceService.fetchEurQuote();
             Bitcoins price150 = roundedBitcoins(FluidType.COLA.getEuroPrice() / btceur);
             Bitcoins price200 = roundedBitcoins(FluidType.MATE.getEuroPrice() / btceur);
-            String uri150 = BitcoinURI.convertToBitcoinURI(env.getKey150(), price150.toBigInteger(), FluidType.COLA.getDescription(),null);
-            String uri200 = BitcoinURI.convertToBitcoinURI(env.getKey200(), price200.toBigInteger(), FluidType.MATE.getDescription(), null);
-            Bitmap bitmap150 = Utils.getQRCodeBitmap(uri150, 512);
-            Bitmap bitmap200 = Utils.getQRCodeBitmap(uri200, 512);
+            Bitmap bitmap150 = paymentCodes.getCode(FluidType.COLA, price150);
+            Bitmap bitmap200 = paymentCodes.getCode(FluidType.MATE, price200);
+            paymentCodes.onPrice(btceur);
             return new Data(btceur,bitmap200,bitmap150, price150, price200);
         } catch (RemoteSystemFail remoteSystemFail) {
             publishProgress("ERROR: " + remoteSystemFail.getMessage());
@@ -94,8 +102,14 @@ final class QueryBtcEur extends AsyncTask<Void, String, QueryBtcEur.Data> {
     /**
      * this one runs on the UI thread
      */
+    @Override
+    protected void onCancelled() {
+        done();
+    }
+
     @Override
     protected void onPostExecute(Data data) {
+        done();
         StringBuilder text = new StringBuilder();
         if (data != null) {
             text.append("1฿ = ").append(data.price).append("€");
@@ -104,7 +118,15 @@ final class QueryBtcEur extends AsyncTask<Void, String, QueryBtcEur.Data> {
         } else {
             text.append("<Error: NULL>");
         }
-        text.append("\num ").append(Utils.timeFmt.format(new Date()));
+        Formats.appendTime(text.append("\num "), System.currentTimeMillis());
         this.txt_view.setText(text.toString());
     }
+
+    private void done() {
+        running.set(false);
+        //this query may have drawn codes which were rotated meanwhile
+        if (pending.get()) {
+            activity.queryBtcEur();
+        }
+    }
 }
\ No newline at end of file
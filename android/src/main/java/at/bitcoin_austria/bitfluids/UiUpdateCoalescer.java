@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import at.bitcoin_austria.bitfluids.trafficSignal.SignalType;
+import at.bitcoin_austria.bitfluids.trafficSignal.Status;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * collects state changes from any thread and applies them to the screen at most once per frame.
+ * <ul>
+ * <li>the pending state is a fixed set of slots, a newer signal or stats value replaces the older one</li>
+ * <li>sales are never replaced, they are shown in the order they came in</li>
+ * <li>only the first change after a frame schedules the next one, a burst costs a single post to the UI thread</li>
+ * </ul>
+ */
+public class UiUpdateCoalescer {
+    public static final long FRAME_MILLIS = 16;
+
+    private static final SignalType[] SIGNAL_TYPES = SignalType.values();
+
+    /**
+     * called on the UI thread
+     */
+    public interface Screen {
+        void showSignal(SignalType type, Status status);
+
+        void showStats(StatsSnapshot snapshot);
+
+        /**
+         * @param sales oldest first, only valid during the call
+         */
+        void showSales(List<TransactionItem> sales);
+    }
+
+    public interface FrameScheduler {
+        /**
+         * runs the frame on the UI thread after the delay
+         */
+        void schedule(Runnable frame, long delayMillis);
+    }
+
+    private final Screen screen;
+    private final FrameScheduler scheduler;
+    private final long intervalMillis;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable frame = new Runnable() {
+        @Override
+        public void run() {
+            applyFrame();
+        }
+    };
+    private volatile long lastFrameNanos;
+
+    //pending changes, guarded by this
+    private final Status[] signals = new Status[SIGNAL_TYPES.length];
+    @Nullable
+    private StatsSnapshot stats;
+    private List<TransactionItem> sales = new ArrayList<TransactionItem>();
+
+    //what the current frame applies, only touched on the UI thread
+    private final Status[] frameSignals = new Status[SIGNAL_TYPES.length];
+    private List<TransactionItem> frameSales = new ArrayList<TransactionItem>();
+
+    /**
+     * @param intervalMillis minimum time between two frames, e.g. {@link #FRAME_MILLIS}
+     */
+    public UiUpdateCoalescer(Screen screen, FrameScheduler scheduler, long intervalMillis) {
+        this.screen = screen;
+        this.scheduler = scheduler;
+        this.intervalMillis = intervalMillis;
+        lastFrameNanos = System.nanoTime() - intervalMillis * 1000000;
+    }
+
+    public void setSignal(SignalType type, Status status) {
+        synchronized (this) {
+            signals[type.ordinal()] = status;
+        }
+        requestFrame();
+    }
+
+    public void setStats(StatsSnapshot snapshot) {
+        synchronized (this) {
+            stats = snapshot;
+        }
+        requestFrame();
+    }
+
+    public void addSale(TransactionItem item) {
+        synchronized (this) {
+            sales.add(item);
+        }
+        requestFrame();
+    }
+
+    private void requestFrame() {
+        if (scheduled.compareAndSet(false, true)) {
+            long sinceLast = (System.nanoTime() - lastFrameNanos) / 1000000;
+            scheduler.schedule(frame, Math.max(0, intervalMillis - sinceLast));
+        }
+    }
+
+    private void applyFrame() {
+        StatsSnapshot frameStats;
+        synchronized (this) {
+            //changes from now on go into the next frame
+            scheduled.set(false);
+            System.arraycopy(signals, 0, frameSignals, 0, signals.length);
+            for (int i = 0; i < signals.length; i++) {
+                signals[i] = null;
+            }
+            frameStats = stats;
+            stats = null;
+            List<TransactionItem> swap = frameSales;
+            frameSales = sales;
+            sales = swap;
+        }
+        lastFrameNanos = System.nanoTime();
+        for (int i = 0; i < frameSignals.length; i++) {
+            if (frameSignals[i] != null) {
+                screen.showSignal(SIGNAL_TYPES[i], frameSignals[i]);
+            }
+        }
+        if (frameStats != null) {
+            screen.showStats(frameStats);
+        }
+        if (!frameSales.isEmpty()) {
+            screen.showSales(frameSales);
+            frameSales.clear();
+        }
+    }
+}
@@ -20,11 +20,13 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.graphics.Color;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import at.bitcoin_austria.bitfluids.BitcoinTransactionListener;
 import at.bitcoin_austria.bitfluids.Consumer;
-import at.bitcoin_austria.bitfluids.PriceService;
+import at.bitcoin_austria.bitfluids.EventDispatcher;
+import at.bitcoin_austria.bitfluids.Events;
 
 /**
  * @author apetersson
@@ -32,17 +34,15 @@ import at.bitcoin_austria.bitfluids.PriceService;
 public class TrafficSignal {
 
     private final Context context;
-    private final PriceService priceService;
-    private final BitcoinTransactionListener bitcoinNet;
+    private final EventDispatcher events;
 
-    public TrafficSignal(Context context, BitcoinTransactionListener bitcoinNet, PriceService priceService) {
-        this.bitcoinNet = bitcoinNet;
+    public TrafficSignal(Context context, EventDispatcher events) {
         this.context = context;
-        this.priceService = priceService;
+        this.events = events;
     }
 
     /**
-     * @param trafficSignReciever where you will be notified
+     * @param trafficSignReciever where you will be notified, from any thread. it only gets the latest status of each signal
      * @return the BroadcastReceiver to unregister by the UI
      */
     public BroadcastReceiver addNotifier(final TrafficSignalReciever trafficSignReciever) {
@@ -56,7 +56,7 @@ public class TrafficSignal {
             }
         };
         context.registerReceiver(receiver, intentFilter);
-        bitcoinNet.addPeerCountListener(new Consumer<Integer>() {
+        events.subscribe(Events.PEER_COUNT, new Consumer<Integer>() {
             @Override
             public void consume(Integer count) {
                 if (count < 1) {
@@ -67,16 +67,32 @@ public class TrafficSignal {
                     trafficSignReciever.onStatusChanged(SignalType.PEERS, Status.GREEN);
                 }
             }
-        });
-        priceService.addLastQuoteListener(new Consumer<Status>() {
+        }, EventDispatcher.Policy.COALESCE, 1);
+        events.subscribe(Events.PRICE_STATUS, new Consumer<Status>() {
             @Override
             public void consume(Status status) {
                 trafficSignReciever.onStatusChanged(SignalType.EXCHANGERATE, status);
             }
-        });
+        }, EventDispatcher.Policy.COALESCE, 1);
         return receiver;
     }
 
+    /**
+     * the status enum lives in the core module, which knows nothing about android colors
+     */
+    public static int androidColor(Status status) {
+        switch (status) {
+            case RED:
+                return Color.RED;
+            case YELLOW:
+                return Color.YELLOW;
+            case GREEN:
+                return Color.GREEN;
+            default:
+                throw new IllegalArgumentException("unexpected status :" + status);
+        }
+    }
+
     private void checkInternet(TrafficSignalReciever trafficSignalReciever) {
         ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
         NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import at.bitcoin_austria.bitfluids.trafficSignal.SignalType;
+import at.bitcoin_austria.bitfluids.trafficSignal.Status;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class UiUpdateCoalescerTest {
+    private final List<Runnable> frames = new ArrayList<Runnable>();
+    private final List<Long> delays = new ArrayList<Long>();
+    private final List<String> shown = new ArrayList<String>();
+
+    private final UiUpdateCoalescer updates = new UiUpdateCoalescer(new UiUpdateCoalescer.Screen() {
+        @Override
+        public void showSignal(SignalType type, Status status) {
+            shown.add(type + "=" + status);
+        }
+
+        @Override
+        public void showStats(StatsSnapshot snapshot) {
+            shown.add("stats " + snapshot.perMinute1);
+        }
+
+        @Override
+        public void showSales(List<TransactionItem> sales) {
+            for (TransactionItem sale : sales) {
+                shown.add("sale " + sale.count);
+            }
+        }
+    }, new UiUpdateCoalescer.FrameScheduler() {
+        @Override
+        public void schedule(Runnable frame, long delayMillis) {
+            frames.add(frame);
+            delays.add(delayMillis);
+        }
+    }, 1000);
+
+    @Test
+    public void testBurstIsOneFrame() {
+        for (int i = 0; i < 100; i++) {
+            updates.setSignal(SignalType.PEERS, i % 2 == 0 ? Status.YELLOW : Status.GREEN);
+            updates.setStats(snapshot(i));
+        }
+        updates.setSignal(SignalType.NETWORK, Status.RED);
+        assertEquals(1, frames.size());
+        frames.get(0).run();
+        assertEquals("[NETWORK=RED, PEERS=GREEN, stats 99.0]", shown.toString());
+    }
+
+    @Test
+    public void testKeepsAllSalesInOrder() {
+        for (int i = 0; i < 5; i++) {
+            updates.addSale(sale(i));
+        }
+        frames.get(0).run();
+        updates.addSale(sale(5));
+        assertEquals(2, frames.size());
+        frames.get(1).run();
+        assertEquals("[sale 0, sale 1, sale 2, sale 3, sale 4, sale 5]", shown.toString());
+    }
+
+    @Test
+    public void testWaitsForTheNextFrame() {
+        updates.setStats(snapshot(1));
+        //nothing was drawn for a long time, the first frame comes right away
+        assertEquals(0L, (long) delays.get(0));
+        frames.get(0).run();
+        updates.setStats(snapshot(2));
+        assertTrue(delays.get(1) > 900);
+        frames.get(1).run();
+        assertEquals("[stats 1.0, stats 2.0]", shown.toString());
+    }
+
+    @Test
+    public void testEmptyFrameShowsNothing() {
+        updates.setStats(snapshot(1));
+        frames.get(0).run();
+        frames.get(0).run();
+        assertEquals(1, shown.size());
+    }
+
+    private static StatsSnapshot snapshot(double perMinute) {
+        return new StatsSnapshot(perMinute, 0, 0, 0, 0);
+    }
+
+    private static TransactionItem sale(int count) {
+        return new TransactionItem(FluidType.MATE, Bitcoins.valueOf(1000), count, 10, null);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.AddressFormatException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the per sale addresses: deriving the next one, and watching it while the oldest expire.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AddressBenchmark {
+    //m of BIP32 test vector 2
+    private static final String ACCOUNT = "xpub661MyMwAqRbcFW31YEwpkMuc5THy2PSt5bDMsktWQcFF8syAmRUapSCGu8ED9W6oDMSgv6Zz8idoc4a6mr8BDzTJY47LJhkJ8UB7WEGuduB";
+    //a power of two, see watchAndExpire()
+    private static final int ADDRESSES = 64 * 1024;
+
+    /**
+     * addresses watched at any time, one expires for each one watched
+     */
+    @Param({"1000", "10000"})
+    public int outstanding;
+
+    private ExtendedPublicKey account;
+    private int child;
+    private List<Address> addresses;
+    private ExpiringAddressIndex<FluidType> index;
+    private long now;
+    private int cursor;
+
+    @Setup
+    public void setUp() throws AddressFormatException {
+        account = ExtendedPublicKey.parse(ACCOUNT);
+        addresses = Workloads.addresses(Workloads.hash160s(ADDRESSES, new Random(Workloads.SEED)));
+        index = new ExpiringAddressIndex<FluidType>(outstanding, new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        });
+        for (int i = 0; i < outstanding; i++) {
+            watchNext();
+        }
+    }
+
+    @Benchmark
+    public ExtendedPublicKey derive() {
+        return account.derive(child++ & ExtendedPublicKey.MAX_INDEX);
+    }
+
+    /**
+     * one millisecond per address, so the oldest one expires each time
+     */
+    @Benchmark
+    public int watchAndExpire() {
+        watchNext();
+        return index.size();
+    }
+
+    private void watchNext() {
+        now++;
+        index.watch(addresses.get(cursor++ & (ADDRESSES - 1)), FluidType.COLA);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * runs the benchmarks with the gc profiler and compares time and allocation per operation to the baseline.
+ * <p/>
+ * usage: BenchmarkMain [regex of the benchmarks to run, default all]
+ * <ul>
+ * <li>-Dbaseline=file, default benchmark/baseline.properties, run from the project root</li>
+ * <li>-Dbaseline.update=true stores the results of this run in the baseline</li>
+ * </ul>
+ * exits with 2 if a benchmark got slower or allocates more than before, so a build can fail on it.
+ * exits with 3 if there is no baseline for some of the benchmarks, nothing was compared for them then.
+ * the baseline only means something for the machine it was recorded on, it notes which one that was.
+ */
+public final class BenchmarkMain {
+    //run to run noise on a quiet machine stays below this
+    private static final double TIME_TOLERANCE = 0.10;
+    //allocation per operation is exact, apart from a little padding
+    private static final double ALLOC_TOLERANCE_BYTES = 16;
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+    private static final String DEFAULT_BASELINE = "benchmark/baseline.properties";
+    private static final int EXIT_REGRESSION = 2;
+    private static final int EXIT_NO_BASELINE = 3;
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String include = args.length > 0 ? args[0] : BenchmarkMain.class.getPackage().getName() + ".*Benchmark.*";
+        File file = new File(System.getProperty("baseline", DEFAULT_BASELINE));
+        Properties baseline = load(file);
+        boolean update = Boolean.getBoolean("baseline.update");
+        if (!update && baseline.isEmpty()) {
+            //fail before spending minutes on a run that cannot be compared
+            System.out.println("no baseline in " + file + ", record it on this machine with -Dbaseline.update=true");
+            System.exit(EXIT_NO_BASELINE);
+        }
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        Properties current = new Properties();
+        List<String> regressions = new ArrayList<String>();
+        List<String> missing = new ArrayList<String>();
+        for (RunResult result : results) {
+            String key = key(result.getParams());
+            Result primary = result.getPrimaryResult();
+            current.setProperty(key + ".time", Double.toString(primary.getScore()));
+            current.setProperty(key + ".unit", primary.getScoreUnit());
+            double allocated = allocated(result);
+            if (!Double.isNaN(allocated)) {
+                current.setProperty(key + ".alloc", Double.toString(allocated));
+            }
+            if (baseline.getProperty(key + ".time") == null) {
+                missing.add(key);
+            }
+            compare(key, baseline, current, regressions);
+        }
+
+        if (update) {
+            baseline.putAll(current);
+            store(baseline, file);
+            System.out.println("baseline " + file + " updated with " + results.size() + " results");
+        }
+        if (!regressions.isEmpty()) {
+            System.out.println(regressions.size() + " regressions against " + file + ":");
+            for (String regression : regressions) {
+                System.out.println("  " + regression);
+            }
+            System.exit(EXIT_REGRESSION);
+        }
+        if (!update && !missing.isEmpty()) {
+            //nothing to compare against means no regression can show up, that is no pass
+            System.out.println(missing.size() + " of " + results.size() + " benchmarks have no baseline in " + file
+                    + ", record it with -Dbaseline.update=true");
+            System.exit(EXIT_NO_BASELINE);
+        }
+        System.out.println("no regressions against " + file);
+    }
+
+    /**
+     * e.g. IndexBenchmark.mapped.size_1000, stable across runs and free of characters properties escape
+     */
+    static String key(BenchmarkParams params) {
+        String benchmark = params.getBenchmark();
+        StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+        List<String> names = new ArrayList<String>(params.getParamsKeys());
+        Collections.sort(names);
+        for (String name : names) {
+            key.append('.').append(name).append('_').append(params.getParam(name));
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return bytes per operation, NaN if the profiler did not report it
+     */
+    private static double allocated(RunResult result) {
+        for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet()) {
+            //older jmh versions prefix the profiler results with a middle dot
+            if (secondary.getKey().endsWith(ALLOC_NORM)) {
+                return secondary.getValue().getScore();
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static void compare(String key, Properties baseline, Properties current, List<String> regressions) {
+        DecimalFormat format = new DecimalFormat("0.###");
+        String unit = current.getProperty(key + ".unit");
+        String before = baseline.getProperty(key + ".time");
+        if (before == null) {
+            System.out.println(key + ": no baseline yet");
+        } else if (unit.equals(baseline.getProperty(key + ".unit"))) {
+            double was = Double.parseDouble(before);
+            double is = Double.parseDouble(current.getProperty(key + ".time"));
+            if (is > was * (1 + TIME_TOLERANCE)) {
+                regressions.add(key + " time " + format.format(was) + " -> " + format.format(is) + " " + unit
+                        + " (+" + Math.round((is / was - 1) * 100) + "%)");
+            }
+        }
+        String allocBefore = baseline.getProperty(key + ".alloc");
+        String allocNow = current.getProperty(key + ".alloc");
+        if (allocBefore != null && allocNow != null) {
+            double was = Double.parseDouble(allocBefore);
+            double is = Double.parseDouble(allocNow);
+            if (is > was + ALLOC_TOLERANCE_BYTES) {
+                regressions.add(key + " allocation " + format.format(was) + " -> " + format.format(is) + " B/op");
+            }
+        }
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties properties = new Properties();
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * what the numbers depend on besides the code
+     */
+    private static String machine() {
+        return System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", "
+                + Runtime.getRuntime().availableProcessors() + " cpus, "
+                + System.getProperty("java.vm.name") + " " + System.getProperty("java.version");
+    }
+
+    /**
+     * sorted, so a new baseline diffs well. keys and values need no escaping, see key()
+     */
+    private static void store(Properties properties, File file) throws IOException {
+        List<String> keys = new ArrayList<String>(properties.stringPropertyNames());
+        Collections.sort(keys);
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1"));
+        try {
+            out.println("# bitfluids benchmark baseline, time and allocation per operation");
+            out.println("# recorded on " + machine());
+            for (String key : keys) {
+                out.println(key + "=" + properties.getProperty(key));
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the cost on the publishing peer thread, the subscriber drains on the dispatcher's pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    private static final EventDispatcher.Topic<Integer> TOPIC = new EventDispatcher.Topic<Integer>("benchmark");
+    private static final Integer EVENT = 42;
+
+    @Param({"DROP", "COALESCE", "BLOCK"})
+    public EventDispatcher.Policy policy;
+
+    private EventDispatcher events;
+    private EventDispatcher.Subscription subscription;
+    private volatile int consumed;
+
+    @Setup
+    public void subscribe() {
+        events = new EventDispatcher();
+        subscription = events.subscribe(TOPIC, new Consumer<Integer>() {
+            @Override
+            public void consume(Integer event) {
+                consumed++;
+            }
+        }, policy, 1024);
+    }
+
+    @TearDown
+    public void shutdown() {
+        subscription.cancel();
+        events.shutdown();
+    }
+
+    @Benchmark
+    public int publish() {
+        events.publish(TOPIC, EVENT);
+        return consumed;
+    }
+}
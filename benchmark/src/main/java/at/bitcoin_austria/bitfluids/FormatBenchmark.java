@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the text under the QR codes and in the status line, {@link Formats} against the formatters it replaced.
+ * the Formats benchmarks append to one builder, so they should not allocate at all.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+    //a power of two, see next()
+    private static final int VALUES = 1024;
+    private static final BigDecimal SATOSHIS_PER_BITCOIN = BigDecimal.valueOf(100000000);
+
+    private long[] satoshis;
+    private double[] euros;
+    private long[] times;
+    private int cursor;
+    private final StringBuilder out = new StringBuilder(64);
+    private final DecimalFormat eurFormat = (DecimalFormat) Utils.eurDF.clone();
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(Workloads.SEED);
+        satoshis = new long[VALUES];
+        euros = new double[VALUES];
+        times = new long[VALUES];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < VALUES; i++) {
+            //one to three drinks
+            satoshis[i] = 15000000L + random.nextInt(45000000);
+            euros[i] = 1.5 + 4.5 * random.nextDouble();
+            times[i] = now + random.nextInt(24 * 60 * 60 * 1000);
+        }
+    }
+
+    /**
+     * what Bitcoins.toString() did before
+     */
+    @Benchmark
+    public String bitcoinsBigDecimal() {
+        return BigDecimal.valueOf(satoshis[next()]).divide(SATOSHIS_PER_BITCOIN).toPlainString();
+    }
+
+    @Benchmark
+    public StringBuilder bitcoinsFormats() {
+        out.setLength(0);
+        return Formats.appendBitcoins(out, satoshis[next()]);
+    }
+
+    @Benchmark
+    public String eurosDecimalFormat() {
+        return eurFormat.format(euros[next()]);
+    }
+
+    @Benchmark
+    public StringBuilder eurosFormats() {
+        out.setLength(0);
+        return Formats.appendEuros(out, euros[next()]);
+    }
+
+    @Benchmark
+    public String timeSimpleDateFormat() {
+        return timeFormat.format(new Date(times[next()]));
+    }
+
+    @Benchmark
+    public StringBuilder timeFormats() {
+        out.setLength(0);
+        return Formats.appendTime(out, times[next()]);
+    }
+
+    private int next() {
+        return cursor++ & (VALUES - 1);
+    }
+}
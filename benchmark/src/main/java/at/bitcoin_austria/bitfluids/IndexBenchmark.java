@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * looking up the hash160 of an output among the watched addresses, half of the probes hit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IndexBenchmark {
+    //a power of two, see next()
+    private static final int PROBES = 1024;
+
+    /**
+     * the two fixed addresses, a shop with rotating addresses, a payment processor
+     */
+    @Param({"2", "1000", "1000000"})
+    public int size;
+
+    private byte[] probes;
+    private byte[][] scripts;
+    private int cursor;
+    private File file;
+    private AddressListIndex list;
+    private MappedHash160Index mapped;
+    private ExpiringAddressIndex<FluidType> expiring;
+    private OutputMatcher matcher;
+
+    @Setup
+    public void buildIndexes() throws IOException {
+        Random random = new Random(Workloads.SEED);
+        byte[][] watched = Workloads.hash160s(size, random);
+        List<Address> addresses = Workloads.addresses(watched);
+        list = new AddressListIndex(addresses);
+        expiring = new ExpiringAddressIndex<FluidType>(24 * 60 * 60 * 1000L, Clock.SYSTEM);
+        for (Address address : addresses) {
+            expiring.watch(address, FluidType.MATE);
+        }
+        file = File.createTempFile("index", ".hash160");
+        mapped = MappedHash160Index.create(file, Arrays.asList(watched));
+        matcher = new OutputMatcher(mapped, WatchedPubKeys.NONE);
+
+        probes = new byte[PROBES * 20];
+        scripts = new byte[PROBES][];
+        for (int i = 0; i < PROBES; i++) {
+            byte[] hash160 = i % 2 == 0 ? watched[random.nextInt(size)] : Workloads.randomBytes(random, 20);
+            System.arraycopy(hash160, 0, probes, i * 20, 20);
+            scripts[i] = Workloads.payToPubKeyHash(hash160);
+        }
+    }
+
+    @TearDown
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Benchmark
+    public boolean list() {
+        return list.contains(probes, next() * 20);
+    }
+
+    @Benchmark
+    public boolean mapped() {
+        return mapped.contains(probes, next() * 20);
+    }
+
+    /**
+     * the per sale addresses
+     */
+    @Benchmark
+    public boolean expiring() {
+        return expiring.contains(probes, next() * 20);
+    }
+
+    /**
+     * template match on the whole output script, then the index lookup
+     */
+    @Benchmark
+    public byte[] matchOutput() {
+        byte[] script = scripts[next()];
+        return matcher.matchedHash160(script, 0, script.length);
+    }
+
+    private int next() {
+        return cursor++ & (PROBES - 1);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.ProtocolException;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the per transaction work of {@link BitcoinTransactionListener}, on a mix of mainnet shaped transactions.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class ListenerBenchmark {
+    //a power of two, see next()
+    private static final int TRANSACTIONS = 8192;
+    //as in the listener
+    private static final int SEEN_CAPACITY = 64 * 1024;
+
+    private Transaction[] mix;
+    private byte[] hashes;
+    private int cursor;
+    private EventDispatcher events;
+    private BitcoinTransactionListener listener;
+    private SeenTransactions seen;
+    private ThroughputCounter throughput;
+    private long now;
+    private final CountingNotifier notifier = new CountingNotifier();
+
+    @Setup(Level.Trial)
+    public void parseMix() throws ProtocolException {
+        Random random = new Random(Workloads.SEED);
+        byte[][] raw = Workloads.transactionMix(TRANSACTIONS, random);
+        mix = new Transaction[TRANSACTIONS];
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            mix[i] = new Transaction(Workloads.ENV.getNetworkParams(), raw[i]);
+        }
+        //four times the capacity, so a hash is forgotten before it comes round again
+        hashes = Workloads.randomBytes(random, 4 * SEEN_CAPACITY * 32);
+    }
+
+    /**
+     * a fresh listener per iteration, the previous one has seen all transactions of the mix
+     */
+    @Setup(Level.Iteration)
+    public void newListener() {
+        events = new EventDispatcher();
+        listener = new BitcoinTransactionListener(Workloads.ENV, new File(System.getProperty("java.io.tmpdir")), events);
+        seen = new SeenTransactions(SEEN_CAPACITY);
+        now = 0;
+        throughput = new ThroughputCounter(now);
+    }
+
+    @TearDown(Level.Iteration)
+    public void shutdown() {
+        events.shutdown();
+    }
+
+    /**
+     * every transaction arrives once from each connected peer, only the first copy is analyzed
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 50)
+    @OperationsPerInvocation(TRANSACTIONS * BitcoinTransactionListener.MAX_CONNECTIONS)
+    public int processTransaction() {
+        for (int peer = 0; peer < BitcoinTransactionListener.MAX_CONNECTIONS; peer++) {
+            for (Transaction transaction : mix) {
+                listener.processTransaction(transaction, notifier);
+            }
+        }
+        return notifier.count;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 10, time = 1)
+    public boolean analyzeTransaction() {
+        return listener.analyzeTransaction(next(), notifier);
+    }
+
+    /**
+     * the duplicate check alone, with hashes it has not seen lately
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 10, time = 1)
+    public boolean seenAdd() {
+        int offset = (cursor++ & (4 * SEEN_CAPACITY - 1)) * 32;
+        return seen.add(hashes, offset);
+    }
+
+    /**
+     * counting one transaction for the stats, at mainnet rate every few milliseconds
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 10, time = 1)
+    public boolean countTransaction() {
+        now += 3;
+        return throughput.record(now);
+    }
+
+    private Transaction next() {
+        return mix[cursor++ & (TRANSACTIONS - 1)];
+    }
+
+    private static final class CountingNotifier implements TxNotifier {
+        private int count;
+
+        @Override
+        public void onValue(Bitcoins bitcoins, Address key, Sha256Hash hash) {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.Sha256Hash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * amounts as they are shown and converted, around the price of one drink.
+ * the ...BigDecimal and ...Doubles benchmarks are the calculations {@link Money} replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+    //a power of two, see next()
+    private static final int AMOUNTS = 1024;
+    private static final double EUR_PER_BITCOIN = 10.25873;
+    //the digits shown on the QR codes
+    private static final int SHOWN_DIGITS = 3;
+    private static final long MATE_CENTS = Money.cents(FluidType.MATE.getEuroPrice());
+
+    private Bitcoins[] amounts;
+    private double[] prices;
+    //with the five decimals the ticker has
+    private double[] tickerPrices;
+    private long[] scaledPrices;
+    private int cursor;
+    private EventDispatcher events;
+    private PriceService priceService;
+    private TxNotifier adapter;
+    private final Address mate = Workloads.ENV.getKey200();
+    private final Sha256Hash hash = Sha256Hash.ZERO_HASH;
+    private TransactionItem lastItem;
+
+    @Setup
+    public void setUp() throws RemoteSystemFail {
+        Random random = new Random(Workloads.SEED);
+        amounts = new Bitcoins[AMOUNTS];
+        prices = new double[AMOUNTS];
+        tickerPrices = new double[AMOUNTS];
+        scaledPrices = new long[AMOUNTS];
+        for (int i = 0; i < AMOUNTS; i++) {
+            //one to three drinks, not always paid exactly
+            amounts[i] = Bitcoins.valueOf(15000000L + random.nextInt(45000000));
+            prices[i] = EUR_PER_BITCOIN * (0.9 + 0.2 * random.nextDouble());
+            tickerPrices[i] = Math.round(prices[i] * 100000) / 100000.0;
+            scaledPrices[i] = Money.scaledPrice(tickerPrices[i]);
+        }
+        events = new EventDispatcher();
+        PriceAggregator aggregator = new PriceAggregator(Collections.<PriceSource>singletonList(new PriceSource() {
+            @Override
+            public String getName() {
+                return "fixed";
+            }
+
+            @Override
+            public double fetchEurPerBitcoin() {
+                return EUR_PER_BITCOIN;
+            }
+        }));
+        priceService = new PriceService(aggregator, events);
+        priceService.fetchEurQuote();
+        adapter = new Tx2FluidsAdapter(priceService, Workloads.ENV).convert(new FluidsNotifier() {
+            @Override
+            public void onFluidPaid(TransactionItem transactionItem) {
+                lastItem = transactionItem;
+            }
+
+            @Override
+            public void onError(String message, FluidType type, Bitcoins bitcoins, Sha256Hash hash) {
+                throw new IllegalStateException(message);
+            }
+        });
+    }
+
+    @TearDown
+    public void shutdown() {
+        priceService.shutdown();
+        events.shutdown();
+    }
+
+    @Benchmark
+    public String bitcoinsToString() {
+        return amounts[next()].toString();
+    }
+
+    @Benchmark
+    public String toCurrencyString() {
+        return amounts[next()].toCurrencyString();
+    }
+
+    @Benchmark
+    public Bitcoins roundToSignificantFigures() {
+        return amounts[next()].roundToSignificantFigures(SHOWN_DIGITS);
+    }
+
+    @Benchmark
+    public long roundToSignificantFiguresDoubles() {
+        long num = amounts[next()].getSatoshis();
+        double magnitude = Math.pow(10, SHOWN_DIGITS - (int) Math.ceil(Math.log10(num)));
+        return (long) (Math.round(num * magnitude) / magnitude);
+    }
+
+    /**
+     * the price of a drink as shown on its QR code
+     */
+    @Benchmark
+    public Bitcoins drinkPrice() {
+        return Bitcoins.nearestValue(FluidType.MATE.getEuroPrice() / prices[next()]).roundToSignificantFigures(SHOWN_DIGITS);
+    }
+
+    /**
+     * a payment to the mate address, counted in drinks
+     */
+    @Benchmark
+    public TransactionItem convertPayment() {
+        adapter.onValue(amounts[next()], mate, hash);
+        return lastItem;
+    }
+
+    @Benchmark
+    public int drinksFixedPoint() {
+        int i = next();
+        return Money.drinks(amounts[i].getSatoshis(), scaledPrices[i], MATE_CENTS);
+    }
+
+    @Benchmark
+    public int drinksBigDecimal() {
+        int i = next();
+        BigDecimal euros = amounts[i].multiply(BigDecimal.valueOf(tickerPrices[i]));
+        BigDecimal anzahl = euros.divide(BigDecimal.valueOf(FluidType.MATE.getEuroPrice()), RoundingMode.HALF_UP);
+        return BigDecimal.valueOf(anzahl.add(BigDecimal.valueOf(0.5)).longValue()).intValue();
+    }
+
+    private int next() {
+        return cursor++ & (AMOUNTS - 1);
+    }
+}
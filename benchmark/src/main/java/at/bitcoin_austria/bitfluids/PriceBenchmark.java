@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getting the price out of a ticker response, combining several sources and reading the current price.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PriceBenchmark {
+    private byte[] ticker;
+    private final JsonPathExtractor extractor = new JsonPathExtractor(TickerSource.MTGOX_PATH);
+    private final double[] sourcePrices = {10.25873, 10.31, 10.19, 10.27, 12.5};
+    private EventDispatcher events;
+    private PriceService priceService;
+
+    @Setup
+    public void setUp() throws IOException, RemoteSystemFail {
+        ticker = Workloads.MTGOX_TICKER.getBytes("UTF-8");
+        events = new EventDispatcher();
+        priceService = new PriceService(new PriceAggregator(Collections.<PriceSource>singletonList(new PriceSource() {
+            @Override
+            public String getName() {
+                return "fixed";
+            }
+
+            @Override
+            public double fetchEurPerBitcoin() {
+                return sourcePrices[0];
+            }
+        })), events);
+        priceService.fetchEurQuote();
+    }
+
+    @TearDown
+    public void shutdown() {
+        priceService.shutdown();
+        events.shutdown();
+    }
+
+    /**
+     * what {@link TickerSource} does with the response
+     */
+    @Benchmark
+    public double streamingExtract() throws IOException, JSONException {
+        return extractor.extractDouble(new ByteArrayInputStream(ticker));
+    }
+
+    /**
+     * how the response was parsed before the streaming extractor: read it all, build the whole tree
+     */
+    @Benchmark
+    public double jsonObject() throws IOException, JSONException {
+        InputStream in = new ByteArrayInputStream(ticker);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        JSONObject json = new JSONObject(out.toString("UTF-8"));
+        String value = ((JSONObject) ((JSONObject) json.get("return")).get("avg")).get("value").toString();
+        return Double.parseDouble(value);
+    }
+
+    @Benchmark
+    public double median() {
+        return PriceAggregator.median(sourcePrices, sourcePrices.length);
+    }
+
+    /**
+     * what every payment asks for
+     */
+    @Benchmark
+    public Double currentQuote() throws RemoteSystemFail {
+        return priceService.getEurQuote();
+    }
+}
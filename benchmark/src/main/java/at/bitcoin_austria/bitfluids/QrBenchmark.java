@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the pixels of a payment code, everything the app does for a QR bitmap except creating the Bitmap.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class QrBenchmark {
+    private static final int BLACK = 0xFF000000;
+    private static final int WHITE = 0xFFFFFFFF;
+
+    @Param({"256", "512", "1024"})
+    public int size;
+
+    private final QrRasterizer rasterizer = new QrRasterizer(BLACK, WHITE);
+    private final QRCodeWriter writer = new QRCodeWriter();
+    private ByteMatrix modules;
+    private int[] pixels;
+
+    @Setup
+    public void encodeOnce() throws WriterException {
+        modules = QrRasterizer.encode(Workloads.PAYMENT_URI, ErrorCorrectionLevel.M);
+        int outputSize = QrRasterizer.outputSize(modules, size);
+        pixels = new int[outputSize * outputSize];
+    }
+
+    @Benchmark
+    public ByteMatrix encode() throws WriterException {
+        return QrRasterizer.encode(Workloads.PAYMENT_URI, ErrorCorrectionLevel.M);
+    }
+
+    /**
+     * into a reused buffer
+     */
+    @Benchmark
+    public int[] rasterize() {
+        rasterizer.rasterize(modules, size, pixels);
+        return pixels;
+    }
+
+    /**
+     * what a prerendered code costs, as in PaymentCodes
+     */
+    @Benchmark
+    public int[] encodeAndRasterize() throws WriterException {
+        return rasterizer.rasterize(QrRasterizer.encode(Workloads.PAYMENT_URI, ErrorCorrectionLevel.M), size);
+    }
+
+    /**
+     * how the pixels were made before QrRasterizer, through a size*size BitMatrix
+     */
+    @Benchmark
+    public int[] qrCodeWriter() throws WriterException {
+        Hashtable<EncodeHintType, Object> hints = new Hashtable<EncodeHintType, Object>();
+        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
+        BitMatrix result = writer.encode(Workloads.PAYMENT_URI, BarcodeFormat.QR_CODE, size, size, hints);
+        int width = result.getWidth();
+        int height = result.getHeight();
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[offset + x] = result.get(x, y) ? BLACK : WHITE;
+            }
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.ProtocolException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * what a full block costs: the raw scan for payments, the transaction ids and their merkle root.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ScanBenchmark {
+    /**
+     * blocks of late 2012 and of today
+     */
+    @Param({"400", "2500"})
+    public int transactions;
+
+    private byte[] block;
+    private byte[] ids;
+    private BlockScanner scanner;
+    private final CountingHandler handler = new CountingHandler();
+
+    @Setup
+    public void buildBlock() throws ProtocolException {
+        Random random = new Random(Workloads.SEED);
+        byte[][] mix = Workloads.transactionMix(transactions, random);
+        block = Workloads.block(mix);
+        scanner = new BlockScanner(new OutputMatcher(new AddressListIndex(Arrays.asList(
+                Workloads.ENV.getKey200(), Workloads.ENV.getKey150())), WatchedPubKeys.NONE));
+        final byte[] collected = new byte[transactions * 32];
+        scanner.scan(ByteBuffer.wrap(block), handler, new BlockScanner.TxIdHandler() {
+            private int count;
+
+            @Override
+            public void onTxId(byte[] id) {
+                System.arraycopy(id, 0, collected, 32 * count++, 32);
+            }
+        });
+        ids = collected;
+    }
+
+    @Benchmark
+    public int scan() throws ProtocolException {
+        return scanner.scan(ByteBuffer.wrap(block), handler);
+    }
+
+    /**
+     * as the listener scans, collecting the ids for the confirmations
+     */
+    @Benchmark
+    public int scanWithIds() throws ProtocolException {
+        ConfirmationTracker.BlockIds blockIds = new ConfirmationTracker.BlockIds();
+        scanner.scan(ByteBuffer.wrap(block), handler, blockIds);
+        return blockIds.size();
+    }
+
+    @Benchmark
+    public byte[] merkleRoot() {
+        return ConfirmationTracker.merkleRoot(ids, transactions);
+    }
+
+    private static final class CountingHandler implements BlockScanner.MatchHandler {
+        private int matches;
+
+        @Override
+        public void onMatch(ByteBuffer raw, int offset, int length) {
+            matches++;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Block;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.ProtocolException;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.StoredBlock;
+import com.google.bitcoin.core.Utils;
+import com.google.bitcoin.core.VerificationException;
+import com.google.bitcoin.store.BlockStoreException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * what is written to and read from disk: the sales journal, the binary codec of its records and the block headers.
+ * the codec is compared to a java serialization round trip of the same fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+    //the sales shown after a restart
+    private static final int SALES = 200;
+    //a power of two, see next(). more than the store keeps, so putting always evicts
+    private static final int HEADERS = 8192;
+
+    private final NetworkParameters params = Workloads.ENV.getNetworkParams();
+    private TransactionItem[] items;
+    private SerializableItem[] serializableItems;
+    private final ByteBuffer buf = ByteBuffer.allocate(BinaryCodec.TRANSACTION_ITEM_SIZE);
+    private File journalDir;
+    private SalesJournal journal;
+    private File headerFile;
+    private HeaderStore headers;
+    private StoredBlock[] chain;
+    private Sha256Hash[] stored;
+    private int cursor;
+
+    @Setup
+    public void setUp() throws IOException, BlockStoreException, ProtocolException, VerificationException {
+        Random random = new Random(Workloads.SEED);
+        items = new TransactionItem[SALES];
+        serializableItems = new SerializableItem[SALES];
+        for (int i = 0; i < SALES; i++) {
+            FluidType type = i % 3 == 0 ? FluidType.COLA : FluidType.MATE;
+            items[i] = new TransactionItem(type, Bitcoins.valueOf(15000000L + random.nextInt(45000000)),
+                    1 + random.nextInt(3), 10 + random.nextDouble(), new Sha256Hash(Workloads.randomBytes(random, 32)));
+            serializableItems[i] = new SerializableItem(items[i]);
+        }
+
+        journalDir = File.createTempFile("journal", "");
+        journalDir.delete();
+        journalDir.mkdirs();
+        journal = SalesJournal.open(journalDir);
+        for (TransactionItem item : items) {
+            journal.append(item);
+        }
+
+        headerFile = File.createTempFile("headers", ".blocks");
+        headerFile.delete();
+        headers = new HeaderStore(params, headerFile, HeaderStore.DEFAULT_CAPACITY, Collections.<Checkpoint>emptyList());
+        chain = new StoredBlock[HEADERS];
+        StoredBlock block = headers.getChainHead();
+        for (int i = 0; i < HEADERS; i++) {
+            block = synthetic(block, i);
+            chain[i] = block;
+        }
+        //the newest ones stay in the store while putting, get() reads from these
+        stored = new Sha256Hash[HeaderStore.DEFAULT_CAPACITY / 2];
+        for (int i = 0; i < stored.length; i++) {
+            headers.put(chain[i]);
+            stored[i] = chain[i].getHeader().getHash();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        journal.close();
+        File[] segments = journalDir.listFiles();
+        if (segments != null) {
+            for (File segment : segments) {
+                segment.delete();
+            }
+        }
+        journalDir.delete();
+        headers.close();
+        headerFile.delete();
+    }
+
+    @Benchmark
+    public Bitcoins codecBitcoins() {
+        buf.clear();
+        BinaryCodec.writeBitcoins(buf, items[cursor++ % SALES].paid);
+        buf.flip();
+        return BinaryCodec.readBitcoins(buf);
+    }
+
+    @Benchmark
+    public Object serializeBitcoins() throws IOException, ClassNotFoundException {
+        return roundTrip(new SerializableBitcoins(items[cursor++ % SALES].paid.getSatoshis()));
+    }
+
+    @Benchmark
+    public Sha256Hash codecHash() {
+        buf.clear();
+        BinaryCodec.writeHash(buf, items[cursor++ % SALES].hash);
+        buf.flip();
+        return BinaryCodec.readHash(buf);
+    }
+
+    /**
+     * Sha256Hash is serializable itself
+     */
+    @Benchmark
+    public Object serializeHash() throws IOException, ClassNotFoundException {
+        return roundTrip(items[cursor++ % SALES].hash);
+    }
+
+    @Benchmark
+    public TransactionItem codecItem() throws IOException {
+        buf.clear();
+        BinaryCodec.writeTransactionItem(buf, items[cursor++ % SALES]);
+        buf.flip();
+        return BinaryCodec.readTransactionItem(buf);
+    }
+
+    @Benchmark
+    public Object serializeItem() throws IOException, ClassNotFoundException {
+        return roundTrip(serializableItems[cursor++ % SALES]);
+    }
+
+    /**
+     * what a restart shows
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<TransactionItem> journalReadRecent() throws IOException {
+        return journal.readRecent(SALES);
+    }
+
+    /**
+     * the sale is in the mapped segment when this returns, the disk catches up in the background
+     */
+    @Benchmark
+    public SalesJournal journalAppend() throws IOException {
+        journal.append(items[cursor++ % SALES]);
+        return journal;
+    }
+
+    @Benchmark
+    public StoredBlock headerGet() throws BlockStoreException {
+        return headers.get(stored[cursor++ % stored.length]);
+    }
+
+    @Benchmark
+    public HeaderStore headerPut() throws BlockStoreException {
+        headers.put(chain[cursor++ & (HEADERS - 1)]);
+        return headers;
+    }
+
+    private static Object roundTrip(Serializable value) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * the fields of Bitcoins, which is no longer Serializable itself
+     */
+    private static final class SerializableBitcoins implements Serializable {
+        private final long satoshis;
+
+        private SerializableBitcoins(long satoshis) {
+            this.satoshis = satoshis;
+        }
+    }
+
+    /**
+     * the fields of TransactionItem, which is no longer Serializable itself
+     */
+    private static final class SerializableItem implements Serializable {
+        private final FluidType fluidType;
+        private final int count;
+        private final SerializableBitcoins paid;
+        private final double euroPerBitcoin;
+        private final Sha256Hash hash;
+
+        private SerializableItem(TransactionItem item) {
+            fluidType = item.fluidType;
+            count = item.count;
+            paid = new SerializableBitcoins(item.paid.getSatoshis());
+            euroPerBitcoin = item.euroPerBitcoin;
+            hash = item.hash;
+        }
+    }
+
+    /**
+     * a header on top of prev, with the lowest difficulty so nothing has to be mined
+     */
+    private StoredBlock synthetic(StoredBlock prev, int nonce) throws ProtocolException, VerificationException {
+        byte[] header = new byte[80];
+        Utils.uint32ToByteArrayLE(1, header, 0);
+        System.arraycopy(Utils.reverseBytes(prev.getHeader().getHash().getBytes()), 0, header, 4, 32);
+        Utils.uint32ToByteArrayLE(prev.getHeader().getTimeSeconds() + 600, header, 68);
+        Utils.uint32ToByteArrayLE(0x207fffffL, header, 72);
+        Utils.uint32ToByteArrayLE(nonce, header, 76);
+        return prev.build(new Block(params, header));
+    }
+}
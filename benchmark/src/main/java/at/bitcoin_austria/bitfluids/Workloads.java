@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.NetworkParameters;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * synthetic but realistically shaped inputs for the benchmarks, always from a fixed seed
+ * so runs and baselines compare the same work.
+ */
+final class Workloads {
+    static final long SEED = 42;
+    static final Environment ENV = Environment.PROD;
+
+    /**
+     * one transaction in this many pays to a watched address
+     */
+    static final int PAYING_ONE_IN = 500;
+
+    static final String MTGOX_TICKER = "{\"result\":\"success\",\"return\":{" +
+            "\"high\":{\"value\":\"10.46000\",\"value_int\":\"1046000\",\"display\":\"10.46000\\u00a0\\u20ac\",\"currency\":\"EUR\"}," +
+            "\"low\":{\"value\":\"10.05001\",\"value_int\":\"1005001\",\"display\":\"10.05001\\u00a0\\u20ac\",\"currency\":\"EUR\"}," +
+            "\"avg\":{\"value\":\"10.25873\",\"value_int\":\"1025873\",\"display\":\"10.25873\\u00a0\\u20ac\",\"currency\":\"EUR\"}," +
+            "\"vwap\":{\"value\":\"10.25422\",\"value_int\":\"1025422\",\"display\":\"10.25422\\u00a0\\u20ac\",\"currency\":\"EUR\"}," +
+            "\"vol\":{\"value\":\"3371.66573853\",\"value_int\":\"337166573853\",\"display\":\"3,371.66573853\\u00a0BTC\",\"currency\":\"BTC\"}," +
+            "\"now\":\"1348431312434436\"}}";
+
+    /**
+     * what a payment code looks like, as passed to the QR encoder
+     */
+    static final String PAYMENT_URI = "bitcoin:184bebdTa792ueyzQxUseXTpvAP5wXNTq1?amount=0.195&label=Club-Mate";
+
+    private Workloads() {
+    }
+
+    static byte[][] hash160s(int count, Random random) {
+        byte[][] hashes = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = new byte[20];
+            random.nextBytes(hashes[i]);
+        }
+        return hashes;
+    }
+
+    static List<Address> addresses(byte[][] hash160s) {
+        NetworkParameters params = ENV.getNetworkParams();
+        List<Address> addresses = new ArrayList<Address>(hash160s.length);
+        for (byte[] hash160 : hash160s) {
+            addresses.add(new Address(params, hash160));
+        }
+        return addresses;
+    }
+
+    /**
+     * raw transactions shaped like mainnet traffic: mostly one to three inputs and two
+     * pay-to-pubkey-hash outputs, some pay-to-pubkey outputs, now and then a payout with many outputs,
+     * a tenth in the segwit serialization. every {@link #PAYING_ONE_IN}th pays to the mate address.
+     */
+    static byte[][] transactionMix(int count, Random random) {
+        byte[] watched = ENV.getKey200().getHash160();
+        byte[][] transactions = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            int inputs = 1 + random.nextInt(3);
+            int outputs = i % 50 == 49 ? 20 : 2;
+            byte[][] hash160s = hash160s(outputs, random);
+            if (i % PAYING_ONE_IN == PAYING_ONE_IN / 2) {
+                hash160s[random.nextInt(outputs)] = watched;
+            }
+            transactions[i] = transaction(random, i % 10 == 3, inputs, hash160s, i % 10 == 7);
+        }
+        return transactions;
+    }
+
+    /**
+     * an 80 byte header (all zero, the scanner does not look at it) and the transactions
+     */
+    static byte[] block(byte[][] transactions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[80], 0, 80);
+        writeVarInt(out, transactions.length);
+        for (byte[] tx : transactions) {
+            out.write(tx, 0, tx.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param payToPubKey whether the last output pays to a public key instead of its hash
+     */
+    static byte[] transaction(Random random, boolean witness, int inputs, byte[][] hash160s, boolean payToPubKey) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, 1, 0, 0, 0); //version
+        if (witness) {
+            write(out, 0, 1);
+        }
+        out.write(inputs);
+        for (int i = 0; i < inputs; i++) {
+            //a random outpoint keeps the transaction ids apart
+            out.write(randomBytes(random, 36), 0, 36);
+            //signature and public key, the usual size of a pay-to-pubkey-hash spend
+            out.write(107);
+            out.write(randomBytes(random, 107), 0, 107);
+            write(out, 0xff, 0xff, 0xff, 0xff);
+        }
+        out.write(hash160s.length);
+        for (int i = 0; i < hash160s.length; i++) {
+            long satoshis = 100000 + random.nextInt(100000000);
+            for (int b = 0; b < 8; b++) {
+                out.write((int) (satoshis >>> (8 * b)));
+            }
+            if (payToPubKey && i == hash160s.length - 1) {
+                out.write(67);
+                out.write(65);
+                byte[] pubKey = randomBytes(random, 65);
+                pubKey[0] = 4;
+                out.write(pubKey, 0, 65);
+                out.write(0xac);
+            } else {
+                out.write(25);
+                out.write(payToPubKeyHash(hash160s[i]), 0, 25);
+            }
+        }
+        if (witness) {
+            for (int i = 0; i < inputs; i++) {
+                out.write(2); //signature and public key
+                out.write(72);
+                out.write(randomBytes(random, 72), 0, 72);
+                out.write(33);
+                out.write(randomBytes(random, 33), 0, 33);
+            }
+        }
+        write(out, 0, 0, 0, 0); //lock time
+        return out.toByteArray();
+    }
+
+    static byte[] payToPubKeyHash(byte[] hash160) {
+        byte[] script = new byte[25];
+        script[0] = 0x76; //OP_DUP
+        script[1] = (byte) 0xa9; //OP_HASH160
+        script[2] = 20;
+        System.arraycopy(hash160, 0, script, 3, 20);
+        script[23] = (byte) 0x88; //OP_EQUALVERIFY
+        script[24] = (byte) 0xac; //OP_CHECKSIG
+        return script;
+    }
+
+    static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        if (value < 0xfd) {
+            out.write(value);
+        } else {
+            write(out, 0xfd, value & 0xff, value >>> 8);
+        }
+    }
+
+    private static void write(ByteArrayOutputStream out, int... bytes) {
+        for (int b : bytes) {
+            out.write(b);
+        }
+    }
+}
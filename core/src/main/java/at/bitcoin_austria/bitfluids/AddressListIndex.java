@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+
+import java.util.List;
+
+/**
+ * plain linear scan over a handful of addresses. for the two keys of an {@link Environment}
+ * this is as fast as it gets, for anything bigger use {@link MappedHash160Index}.
+ */
+public class AddressListIndex implements WatchedAddresses {
+    private final byte[][] hashes;
+
+    public AddressListIndex(List<Address> addresses) {
+        hashes = new byte[addresses.size()][];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = addresses.get(i).getHash160().clone();
+        }
+    }
+
+    @Override
+    public boolean contains(byte[] hash160, int offset) {
+        for (byte[] hash : hashes) {
+            if (equalsAt(hash, hash160, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equalsAt(byte[] hash, byte[] candidate, int offset) {
+        for (int i = 0; i < HASH160_LENGTH; i++) {
+            if (hash[i] != candidate[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return hashes.length;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * fresh addresses for each sale, the children 0, 1, 2, ... of a watch-only {@link ExtendedPublicKey}.
+ * a derivation takes milliseconds, so the next few are derived in the background ahead of time.
+ * the index of the next unused child is kept in a file, an address is never handed out twice, also not after a restart.
+ * most addresses shown are never paid to, a wallet importing the key must look much further ahead than the usual gap of 20.
+ */
+public class AddressPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AddressPool.class);
+
+    private final ExtendedPublicKey account;
+    private final NetworkParameters params;
+    private final File state;
+    private final int ahead;
+    private final ThreadPoolExecutor executor;
+    //derivations in index order, guarded by this
+    private final LinkedList<FutureTask<ExtendedPublicKey>> derived = new LinkedList<FutureTask<ExtendedPublicKey>>();
+    //the index the head of derived is for
+    private int next;
+
+    /**
+     * @param state   where the next index is kept, created if missing
+     * @param ahead   addresses derived ahead of time
+     * @param threads deriving in the background
+     */
+    public AddressPool(ExtendedPublicKey account, NetworkParameters params, File state, int ahead, int threads)
+            throws IOException {
+        Preconditions.checkArgument(ahead > 0, "ahead must be positive: %s", ahead);
+        this.account = account;
+        this.params = params;
+        this.state = state;
+        this.ahead = ahead;
+        next = readNext(state);
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "address pool");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        synchronized (this) {
+            fill();
+        }
+    }
+
+    /**
+     * the next unused address. it is derived on the calling thread if the background is not done with it yet
+     */
+    public Address next() throws IOException {
+        return nextKey().toAddress(params);
+    }
+
+    /**
+     * like {@link #next()}, the key tells the public key as well, e.g. for {@link WatchedPubKeys#add(byte[])}
+     */
+    public synchronized ExtendedPublicKey nextKey() throws IOException {
+        while (true) {
+            Preconditions.checkState(!derived.isEmpty(), "all %s children of the sale key are used up", ExtendedPublicKey.MAX_INDEX);
+            FutureTask<ExtendedPublicKey> task = derived.removeFirst();
+            next++;
+            writeNext(state, next);
+            fill();
+            //a task the pool has already started is not run twice, get waits for it then
+            task.run();
+            ExtendedPublicKey ret;
+            try {
+                ret = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while deriving " + (next - 1));
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            //happens for about one in 2^127 indices, BIP32 says to go on with the next one
+            if (ret != null) {
+                return ret;
+            }
+            LOGGER.warn("child " + (next - 1) + " of the sale key is invalid, skipping it");
+        }
+    }
+
+    /**
+     * @return the index the next address is derived from
+     */
+    public synchronized int getNextIndex() {
+        return next;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void fill() {
+        int index = next + derived.size();
+        while (derived.size() < ahead && index >= 0) {
+            final int childIndex = index++;
+            FutureTask<ExtendedPublicKey> task = new FutureTask<ExtendedPublicKey>(new Callable<ExtendedPublicKey>() {
+                @Override
+                public ExtendedPublicKey call() {
+                    return account.derive(childIndex);
+                }
+            });
+            derived.add(task);
+            executor.execute(task);
+        }
+    }
+
+    private static int readNext(File state) throws IOException {
+        if (!state.exists()) {
+            return 0;
+        }
+        RandomAccessFile raf = new RandomAccessFile(state, "r");
+        try {
+            int ret = raf.readInt();
+            if (ret < 0) {
+                throw new IOException(state + " holds a negative index " + ret);
+            }
+            return ret;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void writeNext(File state, int next) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(state, "rw");
+        try {
+            raf.writeInt(next);
+            //an address must not be shown before this is on disk, else it may be handed out again after a crash
+            raf.getFD().sync();
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.bitcoin_austria.bitfluids;
+
+/**
+ * watches the addresses of both sets, e.g. the environment keys and a {@link MappedHash160Index}.
+ * the smaller set should come first, it is asked first.
+ */
+public class AddressUnion implements WatchedAddresses {
+    private final WatchedAddresses first;
+    private final WatchedAddresses second;
+
+    public AddressUnion(WatchedAddresses first, WatchedAddresses second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public boolean contains(byte[] hash160, int offset) {
+        return first.contains(hash160, offset) || second.contains(hash160, offset);
+    }
+
+    /**
+     * counts addresses in both sets twice
+     */
+    @Override
+    public int size() {
+        return first.size() + second.size();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Sha256Hash;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * fixed width binary layout of our value types, used for everything we store instead of java serialization.
+ * all values are big endian, absent values are written as -1 (amounts, fluid types) or zeros (hashes).
+ * containers such as the {@link SalesJournal} write {@link #VERSION} in front of the records, so the layout can change later.
+ * <pre>
+ * Bitcoins         satoshis (8)
+ * Sha256Hash       bytes (32)
+ * TransactionItem  fluid type ordinal (1), count (4, -1 if unpriced), paid (8), euro per bitcoin as double bits (8), hash (32)
+ * </pre>
+ */
+public final class BinaryCodec {
+    public static final byte VERSION = 1;
+
+    public static final int BITCOINS_SIZE = 8;
+    public static final int HASH_SIZE = 32;
+    public static final int TRANSACTION_ITEM_SIZE = 1 + 4 + BITCOINS_SIZE + 8 + HASH_SIZE;
+
+    private static final FluidType[] FLUID_TYPES = FluidType.values();
+
+    private BinaryCodec() {
+    }
+
+    public static void writeBitcoins(ByteBuffer buf, @Nullable Bitcoins bitcoins) {
+        buf.putLong(bitcoins == null ? -1 : bitcoins.getSatoshis());
+    }
+
+    @Nullable
+    public static Bitcoins readBitcoins(ByteBuffer buf) {
+        long satoshis = buf.getLong();
+        return satoshis < 0 ? null : Bitcoins.valueOf(satoshis);
+    }
+
+    public static void writeHash(ByteBuffer buf, @Nullable Sha256Hash hash) {
+        buf.put(hash == null ? Sha256Hash.ZERO_HASH.getBytes() : hash.getBytes());
+    }
+
+    public static Sha256Hash readHash(ByteBuffer buf) {
+        byte[] bytes = new byte[HASH_SIZE];
+        buf.get(bytes);
+        return new Sha256Hash(bytes);
+    }
+
+    public static void writeTransactionItem(ByteBuffer buf, TransactionItem item) {
+        buf.put(item.fluidType == null ? (byte) -1 : (byte) item.fluidType.ordinal());
+        buf.putInt(item.count);
+        writeBitcoins(buf, item.paid);
+        buf.putLong(Double.doubleToLongBits(item.euroPerBitcoin));
+        writeHash(buf, item.hash);
+    }
+
+    /**
+     * @throws IOException if the fluid type is unknown
+     */
+    public static TransactionItem readTransactionItem(ByteBuffer buf) throws IOException {
+        byte type = buf.get();
+        if (type >= FLUID_TYPES.length) {
+            throw new IOException("unknown fluid type " + type);
+        }
+        int count = buf.getInt();
+        Bitcoins paid = readBitcoins(buf);
+        double euroPerBitcoin = Double.longBitsToDouble(buf.getLong());
+        Sha256Hash hash = readHash(buf);
+        return new TransactionItem(type < 0 ? null : FLUID_TYPES[type], paid, count, euroPerBitcoin, hash);
+    }
+}
@@ -16,11 +16,10 @@
 
 package at.bitcoin_austria.bitfluids;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
-public class BitFluidsActivityState implements Serializable {
+public class BitFluidsActivityState {
     List<TransactionItem> transactionItems = new ArrayList<TransactionItem>();
 
     public List<TransactionItem> getTransactionItems() {
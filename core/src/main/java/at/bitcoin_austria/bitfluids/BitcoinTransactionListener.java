@@ -0,0 +1,405 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.*;
+import com.google.bitcoin.discovery.PeerDiscovery;
+import com.google.bitcoin.store.BlockStore;
+import com.google.bitcoin.store.BlockStoreException;
+import com.google.bitcoin.store.MemoryBlockStore;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * a very lazy implementation of a bitcoin client.
+ * this only checks for broadcasts of bitcoin transactions, not for blocks
+ * and apparently also not for validity of the parent inputs and transactions.
+ * the very basic idea is, that we listen to standard bitcoin-qt nodes,
+ * which typically only broadcast valid transactions.
+ * currently we depend on the first sight of a transaction.
+ * todo 1:
+ * in the future we will want to check with each and every
+ * of our connected hosts if he considers the TX valid.
+ * or
+ * we will maintain the blockchain ourselves, which means increased startup time and bandwidth.
+ * also less flexibility due to not knowing the deposit public keys.
+ * todo 2: inform UI about changes in confidence (double-spend, more peers seen it).
+ * the depth in the chain is published as {@link Events#CONFIRMATIONS}, see {@link ConfirmationTracker}
+ * todo 3: BIP37, send our addresses as a bloom filter (filterload) and take merkleblocks instead of
+ * every transaction and full block. bitcoinj 0.6 cannot serialize filterload and drops peers sending
+ * merkleblock, this needs a bitcoinj with bloom filter support.
+ *
+ * @author apetersson
+ */
+public class BitcoinTransactionListener {
+    public static final int MAX_CONNECTIONS = 4;
+    /**
+     * checkpoints in the data directory, in addition to the ones the environment bundles
+     */
+    public static final String CHECKPOINT_FILE = "checkpoints";
+    /**
+     * a {@link MappedHash160Index} in the data directory, watched in addition to the addresses passed in
+     */
+    public static final String ADDRESS_INDEX_FILE = "addresses.idx";
+    private final Environment env;
+    private final File blockStoreFile;
+    private final File checkpointFile;
+    private final OutputMatcher outputMatcher;
+    private final BlockScanner blockScanner;
+    private final ConfirmationTracker confirmations = new ConfirmationTracker(ConfirmationTracker.DEFAULT_MAX_DEPTH);
+    private final EventDispatcher events;
+
+    private HeaderStore blockStore;
+    private BlockChain chain;
+    private PeerGroup peerGroup;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BitcoinTransactionListener.class);
+    //bounded, so old transactions are forgotten eventually. a few minutes of mainnet traffic fit in here
+    private static final int SEEN_CAPACITY = 64 * 1024;
+    private final SeenTransactions seen = new SeenTransactions(SEEN_CAPACITY);
+
+    //we keep strong refs to these to surely not double-check
+    private final ConcurrentHashMap<Sha256Hash, Boolean> interestingHashes = new ConcurrentHashMap<Sha256Hash, Boolean>();
+
+    private final ThroughputCounter throughput;
+    private final Clock clock;
+    @Nullable
+    private volatile TrafficRecorder recorder;
+
+    /**
+     * @param dataDir where the block headers are kept
+     * @param events  gets the peer count, stats and confirmations, see {@link Events}
+     */
+    public BitcoinTransactionListener(Environment env, File dataDir, EventDispatcher events) {
+        this(env, dataDir, events, fixedKeys(env));
+    }
+
+    private BitcoinTransactionListener(Environment env, File dataDir, EventDispatcher events, WatchedAddresses fixedKeys) {
+        this(env, dataDir, events, fixedKeys, WatchedPubKeys.hashing(fixedKeys));
+    }
+
+    /**
+     * @param lookingFor the addresses to watch, e.g. a {@link MappedHash160Index} loaded at startup
+     * @param pubKeys    public keys to detect in pay-to-pubkey outputs
+     */
+    public BitcoinTransactionListener(Environment env, File dataDir, final EventDispatcher events,
+                                      WatchedAddresses lookingFor, WatchedPubKeys pubKeys) {
+        this(env, dataDir, events, lookingFor, pubKeys, Clock.SYSTEM);
+    }
+
+    /**
+     * @param clock for the stats and the catch up time, a replay passes the recorded time
+     */
+    public BitcoinTransactionListener(Environment env, File dataDir, final EventDispatcher events,
+                                      WatchedAddresses lookingFor, WatchedPubKeys pubKeys, Clock clock) {
+        this.env = env;
+        this.events = events;
+        this.clock = clock;
+        blockStoreFile = new File(dataDir, env.getBlockChainFilename());
+        checkpointFile = new File(dataDir, CHECKPOINT_FILE);
+        outputMatcher = new OutputMatcher(lookingFor, pubKeys);
+        blockScanner = new BlockScanner(outputMatcher);
+        throughput = new ThroughputCounter(clock.currentTimeMillis());
+        confirmations.addListener(new Consumer<ConfirmationTracker.Confirmation>() {
+            @Override
+            public void consume(ConfirmationTracker.Confirmation confirmation) {
+                events.publish(Events.CONFIRMATIONS, confirmation);
+            }
+        });
+    }
+
+    /**
+     * the two addresses of the environment
+     */
+    public static WatchedAddresses fixedKeys(Environment env) {
+        return new AddressListIndex(Arrays.asList(env.getKey200(), env.getKey150()));
+    }
+
+    /**
+     * @return the addresses, together with the {@link #ADDRESS_INDEX_FILE} of the data directory if there is one
+     */
+    public static WatchedAddresses withAddressIndex(WatchedAddresses addresses, File dataDir) throws IOException {
+        File file = new File(dataDir, ADDRESS_INDEX_FILE);
+        if (!file.exists()) {
+            return addresses;
+        }
+        MappedHash160Index index = MappedHash160Index.open(file);
+        LOGGER.info("watching " + index.size() + " addresses of " + file + " as well");
+        return new AddressUnion(addresses, index);
+    }
+
+    /**
+     * this starts off acitivity in the bitcoin network. (non-blocking)
+     * to stop activity
+     *
+     * @param txNotifier callback when a new matching transaction occurs
+     * @see #shutdown()
+     */
+    public void init(final TxNotifier txNotifier) {
+        Preconditions.checkState(peerGroup == null);
+        final PeerEventListener txProcessListener = new AbstractPeerEventListener() {
+            @Override
+            public void onTransaction(Peer peer, Transaction t) {
+                processTransaction(t, txNotifier);
+            }
+        };
+        try {
+            openChain();
+            //bitcoinj wants a chain for the peers, one that is never added to does not sync anything
+            BlockChain peerChain = chain != null ? chain
+                    : new BlockChain(env.getNetworkParams(), new MemoryBlockStore(env.getNetworkParams()));
+            peerGroup = new PeerGroup(env.getNetworkParams(), peerChain);
+            final AtomicInteger counter = new AtomicInteger(0);
+            peerGroup.addEventListener(new AbstractPeerEventListener() {
+
+                /**
+                 * full blocks are not handed to bitcoinj, we only pick out the transactions paying us,
+                 * which we might not have seen yet, and add the header to the chain.
+                 */
+                @Override
+                public Message onPreMessageReceived(Peer peer, Message m) {
+                    TrafficRecorder current = recorder;
+                    if (current != null) {
+                        current.record(m);
+                    }
+                    if (m instanceof Block) {
+                        processBlock((Block) m, txNotifier);
+                        return null;
+                    }
+                    return m;
+                }
+
+                @Override
+                public void onPeerConnected(Peer peer, int peerCount) {
+                    peer.addEventListener(txProcessListener);
+                    events.publish(Events.PEER_COUNT, counter.incrementAndGet());
+                }
+
+                @Override
+                public void onPeerDisconnected(Peer peer, int peerCount) {
+                    peer.removeEventListener(txProcessListener);
+                    events.publish(Events.PEER_COUNT, counter.decrementAndGet());
+                }
+            });
+
+            List<PeerDiscovery> discoveries = env.getPeerDiscoveries();
+            for (PeerDiscovery discovery : discoveries) {
+                peerGroup.addPeerDiscovery(discovery);
+            }
+            //in our case we are only interested in future transactions, older blocks are fetched as headers only
+            peerGroup.setFastCatchupTimeSecs(clock.currentTimeMillis() / 1000);
+            peerGroup.setMaxConnections(MAX_CONNECTIONS);
+            peerGroup.start();
+            if (chain != null) {
+                peerGroup.startBlockChainDownload(new AbstractPeerEventListener());
+            }
+        } catch (BlockStoreException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * the header chain without the network, {@link #init(TxNotifier)} does this as well.
+     * without a checkpoint the chain would start at the genesis block and download every header,
+     * so then there is no chain at all and confirmations are not counted.
+     */
+    void openChain() throws BlockStoreException {
+        Preconditions.checkState(chain == null);
+        List<Checkpoint> checkpoints = checkpoints();
+        if (checkpoints.isEmpty()) {
+            LOGGER.warn("no checkpoints for " + env + " and no " + checkpointFile + ", the header chain is not synced");
+            return;
+        }
+        blockStore = HeaderStore.open(env, blockStoreFile, checkpoints);
+        chain = new BlockChain(env.getNetworkParams(), blockStore);
+    }
+
+    /**
+     * the bundled checkpoints and those in {@link #CHECKPOINT_FILE}, oldest first
+     */
+    private List<Checkpoint> checkpoints() throws BlockStoreException {
+        List<Checkpoint> ret = new ArrayList<Checkpoint>(env.getCheckpoints());
+        if (checkpointFile.exists()) {
+            try {
+                ret.addAll(Checkpoint.load(checkpointFile));
+            } catch (IOException e) {
+                throw new BlockStoreException(e);
+            }
+        }
+        Collections.sort(ret, new Comparator<Checkpoint>() {
+            @Override
+            public int compare(Checkpoint a, Checkpoint b) {
+                return a.height < b.height ? -1 : (a.height == b.height ? 0 : 1);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * @param recorder gets every transaction and block message from the peers, null to stop recording
+     */
+    public void setRecorder(@Nullable TrafficRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    //not synchronized, peer threads run in parallel. seen.add is atomic, so only one of them processes a TX
+    void processTransaction(Transaction t, TxNotifier txNotifier) {
+        Sha256Hash transactionHash = t.getHash();
+        //paid before, maybe in an earlier run
+        if (interestingHashes.containsKey(transactionHash)) {
+            return;
+        }
+        if (!seen.add(transactionHash)) {
+            return;
+        }
+        boolean wasInteresting = analyzeTransaction(t, txNotifier);
+        updateStats();
+        if (wasInteresting) {
+            interestingHashes.put(transactionHash, Boolean.TRUE);
+            //without a header chain the depth never moves, tracking would only fill the tracker
+            if (chain != null) {
+                confirmations.track(transactionHash);
+            }
+        }
+    }
+
+
+    /**
+     * scans the block and only parses the transactions paying to a watched address.
+     * transactions only seen in a block are therefore not counted in the stats.
+     * <p/>
+     * this is not zero-copy. bitcoinj 0.6 has parsed the block message before we get it, and the scan runs over
+     * the bytes it serializes again, so every block still costs one full parse and one copy. the scan saves the
+     * Transaction objects and script matching of everything that does not pay us. scanning the payload before
+     * bitcoinj parses it would take a serializer of our own below the peer.
+     */
+    void processBlock(final Block block, final TxNotifier txNotifier) {
+        //matches are tracked during the scan, so a payment first seen in this block gets its confirmation right away.
+        //the ids are only hashed when there is a chain to count confirmations on
+        ConfirmationTracker.BlockIds ids = chain == null ? null : new ConfirmationTracker.BlockIds();
+        try {
+            blockScanner.scan(ByteBuffer.wrap(block.bitcoinSerialize()), new BlockScanner.MatchHandler() {
+                @Override
+                public void onMatch(ByteBuffer raw, int offset, int length) {
+                    byte[] txBytes = new byte[length];
+                    System.arraycopy(raw.array(), raw.arrayOffset() + offset, txBytes, 0, length);
+                    try {
+                        processTransaction(new Transaction(env.getNetworkParams(), txBytes), txNotifier);
+                    } catch (ProtocolException e) {
+                        LOGGER.error("could not parse matching transaction in block " + block.getHashAsString(), e);
+                    }
+                }
+            }, ids);
+            if (ids != null) {
+                confirmations.onBlock(block.getHash(), block.getMerkleRoot(), ids);
+            }
+        } catch (ProtocolException e) {
+            LOGGER.error("could not scan block " + block.getHashAsString(), e);
+        }
+        if (chain == null) {
+            return;
+        }
+        try {
+            chain.add(block.cloneAsHeader());
+            confirmations.onChainHead(blockStore.getChainHead(), blockStore);
+        } catch (VerificationException e) {
+            LOGGER.warn("could not add block " + block.getHashAsString() + " to the chain", e);
+        } catch (BlockStoreException e) {
+            LOGGER.error("could not look up confirmations", e);
+        }
+    }
+
+    /**
+     * @return height of the best known chain, -1 before {@link #init(TxNotifier)} or without checkpoints
+     */
+    public int getChainHeight() {
+        BlockChain current = chain;
+        return current == null ? -1 : current.getBestChainHeight();
+    }
+
+    /**
+     * @return paid transactions whose confirmations are still counted
+     */
+    int trackedCount() {
+        return confirmations.size();
+    }
+
+    /**
+     * publishes a snapshot at most once per second, counting itself is cheap
+     */
+    private void updateStats() {
+        long now = clock.currentTimeMillis();
+        if (throughput.record(now)) {
+            events.publish(Events.STATS, throughput.snapshot(now));
+        }
+    }
+
+    boolean analyzeTransaction(Transaction t, TxNotifier txNotifier) {
+        try {
+            List<TransactionOutput> outputs = t.getOutputs();
+            boolean wasInteresting = false;
+            for (TransactionOutput output : outputs) {
+                final Address address = extractWatchedAddress(output);
+                if (address != null) {
+                    Bitcoins bitcoins = Bitcoins.valueOf(output);
+                    LOGGER.debug("detected relevant transaction!" + bitcoins);
+                    wasInteresting = true;
+                    txNotifier.onValue(bitcoins, address, t.getHash());
+                }
+            }
+            return wasInteresting;
+        } catch (RuntimeException e) {
+            LOGGER.error("there was an error while looking at a transaction", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the watched address this output pays to, null for all other (also nonstandard) scripts
+     */
+    @Nullable
+    private Address extractWatchedAddress(TransactionOutput output) {
+        byte[] script = output.getScriptBytes();
+        byte[] hash160 = outputMatcher.matchedHash160(script, 0, script.length);
+        return hash160 == null ? null : new Address(env.getNetworkParams(), hash160);
+    }
+
+    public void shutdown() {
+        if (peerGroup != null) {
+            peerGroup.stop();
+        }
+        peerGroup = null;
+        if (blockStore != null) {
+            blockStore.close();
+        }
+    }
+
+    public void addHashes(List<TransactionItem> transactionItems) {
+        for (TransactionItem item : transactionItems) {
+            interestingHashes.put(item.hash, Boolean.TRUE);
+        }
+    }
+}
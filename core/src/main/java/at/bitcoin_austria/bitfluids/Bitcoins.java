@@ -19,9 +19,9 @@ package at.bitcoin_austria.bitfluids;
 import com.google.bitcoin.core.TransactionOutput;
 import com.google.common.base.Preconditions;
 
-import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.RoundingMode;
 
 /**
  * a core Bitcoin Value representation, caputuring many domain specific aspects of it.
@@ -29,7 +29,7 @@ import java.math.BigInteger;
  *
  * @author apetersson
  */
-public final class Bitcoins implements Serializable {
+public final class Bitcoins {
     /**
      * 100 000 000   must be long, else MAX_VALUE will overflow
      */
@@ -37,6 +37,8 @@ public final class Bitcoins implements Serializable {
     private static final BigDecimal SATOSHIS_PER_BITCOIN_BD = BigDecimal.valueOf(SATOSHIS_PER_BITCOIN);
     private static final long MAX_VALUE = 21000000 * SATOSHIS_PER_BITCOIN;
     public static final String BITCOIN_SYMBOL = "฿";
+    //"20999999.99999999"
+    private static final int MAX_LENGTH = 17;
 
     private final long satoshis;
 
@@ -93,12 +95,12 @@ public final class Bitcoins implements Serializable {
         return pricePerBtc.divide(SATOSHIS_PER_BITCOIN_BD).multiply(BigDecimal.valueOf(satoshis));
     }
 
-
+    /**
+     * plain decimal bitcoins without trailing zeros, see {@link Formats#appendBitcoins(StringBuilder, long)}
+     */
     @Override
     public String toString() {
-        //this could surely be implented faster without using BigDecimal. but it is good enough for now.
-        //this could be cached
-        return BigDecimal.valueOf(satoshis).divide(SATOSHIS_PER_BITCOIN_BD).toPlainString();
+        return Formats.appendBitcoins(new StringBuilder(MAX_LENGTH), satoshis).toString();
     }
 
     @Override
@@ -118,29 +120,22 @@ public final class Bitcoins implements Serializable {
         return true;
     }
 
+    public long getSatoshis() {
+        return satoshis;
+    }
+
     public BigInteger toBigInteger() {
         return BigInteger.valueOf(satoshis);
     }
 
     public String toCurrencyString() {
-        return toString() + " " + BITCOIN_SYMBOL;
+        return Formats.appendCurrency(new StringBuilder(MAX_LENGTH + 2), this).toString();
     }
 
+    /**
+     * rounds HALF_UP, e.g. 0.1525 to 0.153 for n = 3
+     */
     public Bitcoins roundToSignificantFigures(int n) {
-        return Bitcoins.valueOf(roundToSignificantFigures(satoshis,n));
-    }
-
-    private static long roundToSignificantFigures(long num, int n) {     //todo optimize for long
-        if(num == 0) {
-            return 0;
-        }
-        final double d = Math.ceil(Math.log10(num < 0 ? -num: num));
-        final int power = n - (int) d;
-
-        final double magnitude = Math.pow(10, power);
-        final long shifted = Math.round(num*magnitude);
-        long ret = (long) (shifted / magnitude);
-        return ret;
+        return Bitcoins.valueOf(Money.roundToSignificantFigures(satoshis, n, RoundingMode.HALF_UP));
     }
-
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.ProtocolException;
+
+import javax.annotation.Nullable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * finds payments to watched addresses in a serialized block without building Transaction objects.
+ * it walks the raw bytes, skips inputs and witness data and only looks at the output scripts.
+ * the caller gets the byte range of each matching transaction and can parse just that one.
+ * blocks in a direct buffer are copied to the heap once, the scripts are matched in place in the array.
+ * on request the id of every transaction is hashed in place as well, e.g. to look for confirmations.
+ * note the listener only gets blocks bitcoinj has parsed already, see {@link BitcoinTransactionListener#processBlock}.
+ */
+public final class BlockScanner {
+    private static final int HEADER_SIZE = 80;
+    private static final int OUTPOINT_SIZE = 36;
+
+    private final OutputMatcher matcher;
+
+    public interface MatchHandler {
+        /**
+         * @param block  the buffer given to {@link #scan(ByteBuffer, MatchHandler)}
+         * @param offset absolute offset of the matching transaction in the buffer
+         * @param length length of the serialized transaction
+         */
+        void onMatch(ByteBuffer block, int offset, int length);
+    }
+
+    public interface TxIdHandler {
+        /**
+         * @param id double SHA-256 of the transaction without witness data, in internal byte order
+         */
+        void onTxId(byte[] id);
+    }
+
+    public BlockScanner(OutputMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    /**
+     * scans a serialized block from the buffer's position on. the buffer itself is not modified.
+     *
+     * @return the number of transactions in the block
+     * @throws ProtocolException if the block is truncated or malformed
+     */
+    public int scan(ByteBuffer block, MatchHandler handler) throws ProtocolException {
+        return scan(block, handler, null);
+    }
+
+    /**
+     * like {@link #scan(ByteBuffer, MatchHandler)}, also passes the id of every transaction to ids, in block order
+     */
+    public int scan(ByteBuffer block, MatchHandler handler, @Nullable TxIdHandler ids) throws ProtocolException {
+        MessageDigest sha256 = ids == null ? null : newSha256();
+        //start of the input count and of the witness data, -1 for transactions without witness
+        int[] witness = new int[2];
+        ByteBuffer buf = block.duplicate();
+        if (!buf.hasArray()) {
+            ByteBuffer copy = ByteBuffer.allocate(buf.remaining());
+            copy.put(buf);
+            copy.position(0);
+            buf = copy;
+        }
+        int shift = block.position() - buf.position();
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            skip(buf, HEADER_SIZE);
+            long txCount = readVarInt(buf);
+            for (long i = 0; i < txCount; i++) {
+                int start = buf.position();
+                if (scanTransaction(buf, witness)) {
+                    handler.onMatch(block, start + shift, buf.position() - start);
+                }
+                if (ids != null) {
+                    ids.onTxId(txId(sha256, buf.array(), buf.arrayOffset(), start, buf.position(), witness));
+                }
+            }
+            return (int) txCount;
+        } catch (BufferUnderflowException e) {
+            throw new ProtocolException("block is truncated");
+        }
+    }
+
+    private boolean scanTransaction(ByteBuffer buf, int[] witness) throws ProtocolException {
+        skip(buf, 4); //version
+        boolean hasWitness = false;
+        witness[0] = -1;
+        long inputs = readVarInt(buf);
+        if (inputs == 0) {
+            //segwit marker, the flag and the real input count follow
+            int flag = buf.get() & 0xFF;
+            if (flag != 1) {
+                throw new ProtocolException("unknown transaction flag " + flag);
+            }
+            hasWitness = true;
+            witness[0] = buf.position();
+            inputs = readVarInt(buf);
+        }
+        for (long i = 0; i < inputs; i++) {
+            skip(buf, OUTPOINT_SIZE);
+            skip(buf, readVarInt(buf)); //scriptSig
+            skip(buf, 4); //sequence
+        }
+        boolean matched = false;
+        long outputs = readVarInt(buf);
+        for (long i = 0; i < outputs; i++) {
+            skip(buf, 8); //value
+            long scriptLength = readVarInt(buf);
+            int scriptStart = buf.position();
+            skip(buf, scriptLength);
+            matched = matched || matcher.matches(buf.array(), buf.arrayOffset() + scriptStart, (int) scriptLength);
+        }
+        if (hasWitness) {
+            witness[1] = buf.position();
+            for (long i = 0; i < inputs; i++) {
+                long items = readVarInt(buf);
+                for (long j = 0; j < items; j++) {
+                    skip(buf, readVarInt(buf));
+                }
+            }
+        }
+        skip(buf, 4); //lock time
+        return matched;
+    }
+
+    /**
+     * the id leaves out the segwit marker, flag and witness data, the rest is hashed where it is
+     */
+    private static byte[] txId(MessageDigest sha256, byte[] array, int base, int start, int end, int[] witness) {
+        if (witness[0] < 0) {
+            sha256.update(array, base + start, end - start);
+        } else {
+            sha256.update(array, base + start, 4);
+            sha256.update(array, base + witness[0], witness[1] - witness[0]);
+            sha256.update(array, base + end - 4, 4);
+        }
+        return sha256.digest(sha256.digest());
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void skip(ByteBuffer buf, long bytes) throws ProtocolException {
+        if (bytes < 0 || bytes > buf.remaining()) {
+            throw new ProtocolException("block is truncated");
+        }
+        buf.position(buf.position() + (int) bytes);
+    }
+
+    private static long readVarInt(ByteBuffer buf) {
+        int first = buf.get() & 0xFF;
+        if (first < 0xFD) {
+            return first;
+        } else if (first == 0xFD) {
+            return buf.getShort() & 0xFFFF;
+        } else if (first == 0xFE) {
+            return buf.getInt() & 0xFFFFFFFFL;
+        } else {
+            return buf.getLong();
+        }
+    }
+}
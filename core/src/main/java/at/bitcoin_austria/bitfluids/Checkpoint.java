@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Block;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.ProtocolException;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.StoredBlock;
+import com.google.bitcoin.core.Utils;
+import com.google.bitcoin.store.BlockStoreException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * a known block the header chain starts from instead of the genesis block, so a fresh install
+ * only downloads the headers after it.
+ * checkpoints have to be retarget blocks (height a multiple of the difficulty interval),
+ * bitcoinj walks back to the last one of those when checking the next difficulty transition.
+ * the text form is "height hash chainwork header", all but the height in hex.
+ * {@link HeaderStore} logs this line for every retarget block it stores.
+ */
+public class Checkpoint {
+    static final int HEADER_SIZE = 80;
+
+    public final int height;
+    public final Sha256Hash hash;
+    public final BigInteger chainWork;
+    private final byte[] header;
+
+    public Checkpoint(int height, Sha256Hash hash, BigInteger chainWork, byte[] header) {
+        if (header.length != HEADER_SIZE) {
+            throw new IllegalArgumentException("a block header has " + HEADER_SIZE + " bytes, not " + header.length);
+        }
+        this.height = height;
+        this.hash = hash;
+        this.chainWork = chainWork;
+        this.header = header.clone();
+    }
+
+    public static Checkpoint parse(String line) {
+        String[] parts = line.trim().split("\\s+");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("not a checkpoint: " + line);
+        }
+        return new Checkpoint(Integer.parseInt(parts[0]), new Sha256Hash(parts[1]),
+                new BigInteger(parts[2], 16), decodeHex(parts[3]));
+    }
+
+    /**
+     * reads one checkpoint per line, empty lines and lines starting with # are skipped
+     */
+    public static List<Checkpoint> load(File file) throws IOException {
+        List<Checkpoint> ret = new ArrayList<Checkpoint>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "US-ASCII"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    try {
+                        ret.add(parse(line));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException(file + ": " + e.getMessage());
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return ret;
+    }
+
+    public static String format(StoredBlock block) {
+        byte[] header = new byte[HEADER_SIZE];
+        System.arraycopy(block.getHeader().bitcoinSerialize(), 0, header, 0, HEADER_SIZE);
+        return block.getHeight() + " " + block.getHeader().getHashAsString() + " "
+                + block.getChainWork().toString(16) + " " + Utils.bytesToHexString(header);
+    }
+
+    /**
+     * @throws BlockStoreException if the header does not hash to the expected value
+     */
+    public StoredBlock toStoredBlock(NetworkParameters params) throws BlockStoreException {
+        Block block;
+        try {
+            block = new Block(params, header.clone());
+        } catch (ProtocolException e) {
+            throw new BlockStoreException(e);
+        }
+        if (!hash.equals(block.getHash())) {
+            throw new BlockStoreException("checkpoint at " + height + " hashes to " + block.getHash() + ", not " + hash);
+        }
+        return new StoredBlock(block, chainWork, height);
+    }
+
+    @Override
+    public String toString() {
+        return height + " " + hash;
+    }
+
+    private static byte[] decodeHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("odd number of hex digits");
+        }
+        byte[] ret = new byte[hex.length() / 2];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return ret;
+    }
+}
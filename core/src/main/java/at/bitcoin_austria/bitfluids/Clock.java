@@ -16,18 +16,17 @@
 
 package at.bitcoin_austria.bitfluids;
 
-import org.junit.Test;
-
-import static junit.framework.Assert.assertEquals;
-
 /**
- * @author apetersson
+ * the time for everything that counts or ages, so a recording can be replayed with its own timestamps.
+ * measuring how long something took stays with System.nanoTime.
  */
-public class FormatTest {
-    @Test
-    public void testEuroFormat(){
-        //hmm this does not fail. in my emulator this does _not always_ work correctly.
-        // must be something with the compiler missing UTF-8 encoded .java files.
-        assertEquals("2,00 €",Utils.eurDF.format(2.0));
-    }
+public interface Clock {
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    long currentTimeMillis();
 }
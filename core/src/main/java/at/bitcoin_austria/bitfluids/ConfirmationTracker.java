@@ -0,0 +1,332 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.StoredBlock;
+import com.google.bitcoin.core.Utils;
+import com.google.bitcoin.store.BlockStore;
+import com.google.bitcoin.store.BlockStoreException;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * follows paid transactions until they are buried deep enough in the best chain.
+ * <ul>
+ * <li>the pending transactions are indexed by the first 8 bytes of their id in a small open addressing table,
+ * checking a block costs one probe per transaction, no matter how many payments are pending</li>
+ * <li>an inclusion only counts if the merkle root of the block's transactions matches its header,
+ * so a peer cannot make up a confirmation by sending a real header with other transactions</li>
+ * <li>on every new chain head the newest maxDepth blocks are walked back, a transaction whose
+ * block left the best chain in a reorg is reported with depth 0 again</li>
+ * </ul>
+ * listeners get every change of depth, a transaction is forgotten once it reaches maxDepth.
+ * one that is not in the best chain for maxUnconfirmedBlocks blocks is forgotten as well, it was double spent
+ * or dropped. if more than maxPending are waiting anyway, e.g. without a header chain, the oldest is forgotten.
+ */
+public class ConfirmationTracker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfirmationTracker.class);
+
+    public static final int DEFAULT_MAX_DEPTH = 6;
+    /**
+     * a day of blocks
+     */
+    public static final int DEFAULT_MAX_UNCONFIRMED_BLOCKS = 144;
+    public static final int DEFAULT_MAX_PENDING = 4096;
+    private static final int ID_SIZE = 32;
+
+    private final int maxDepth;
+    private final int maxUnconfirmedBlocks;
+    private final int maxPending;
+    //oldest first
+    private final Map<Sha256Hash, Pending> pending = new LinkedHashMap<Sha256Hash, Pending>();
+    private final List<Consumer<Confirmation>> listeners = new CopyOnWriteArrayList<Consumer<Confirmation>>();
+    //id prefixes of the pending transactions, 0 marks a free slot
+    private long[] index = new long[16];
+
+    public ConfirmationTracker(int maxDepth) {
+        this(maxDepth, DEFAULT_MAX_UNCONFIRMED_BLOCKS, DEFAULT_MAX_PENDING);
+    }
+
+    public ConfirmationTracker(int maxDepth, int maxUnconfirmedBlocks, int maxPending) {
+        Preconditions.checkArgument(maxDepth > 0);
+        Preconditions.checkArgument(maxUnconfirmedBlocks > 0);
+        Preconditions.checkArgument(maxPending > 0);
+        this.maxDepth = maxDepth;
+        this.maxUnconfirmedBlocks = maxUnconfirmedBlocks;
+        this.maxPending = maxPending;
+    }
+
+    public static class Confirmation {
+        public final Sha256Hash hash;
+        /**
+         * blocks on top of and including the one with the transaction, 0 if it is not in the best chain (anymore)
+         */
+        public final int depth;
+
+        Confirmation(Sha256Hash hash, int depth) {
+            this.hash = hash;
+            this.depth = depth;
+        }
+
+        @Override
+        public String toString() {
+            return hash + " at depth " + depth;
+        }
+    }
+
+    /**
+     * collects the transaction ids of a block while it is scanned
+     */
+    public static class BlockIds implements BlockScanner.TxIdHandler {
+        private byte[] ids = new byte[256 * ID_SIZE];
+        private int count;
+
+        @Override
+        public void onTxId(byte[] id) {
+            if ((count + 1) * ID_SIZE > ids.length) {
+                byte[] grown = new byte[ids.length * 2];
+                System.arraycopy(ids, 0, grown, 0, count * ID_SIZE);
+                ids = grown;
+            }
+            System.arraycopy(id, 0, ids, count * ID_SIZE, ID_SIZE);
+            count++;
+        }
+
+        public int size() {
+            return count;
+        }
+    }
+
+    private static final class Pending {
+        private final Sha256Hash hash;
+        //blocks we saw including the transaction, usually one, more after a reorg
+        private final Set<Sha256Hash> blocks = new HashSet<Sha256Hash>(2);
+        private int depth;
+        //height of the including block in the best chain, -1 if none
+        private int height = -1;
+        //of the first chain head after it was tracked, -1 before
+        private int trackedHeight = -1;
+
+        private Pending(Sha256Hash hash) {
+            this.hash = hash;
+        }
+    }
+
+    public void addListener(Consumer<Confirmation> listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void track(Sha256Hash hash) {
+        if (pending.containsKey(hash)) {
+            return;
+        }
+        if (pending.size() >= maxPending) {
+            Iterator<Pending> oldest = pending.values().iterator();
+            LOGGER.warn("too many pending transactions, forgetting " + oldest.next().hash);
+            oldest.remove();
+            pending.put(hash, new Pending(hash));
+            rebuildIndex();
+        } else {
+            pending.put(hash, new Pending(hash));
+            if (pending.size() * 2 > index.length) {
+                rebuildIndex();
+            } else {
+                insert(key(hash));
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * notes which pending transactions are in the block, before it is connected to the chain
+     *
+     * @param merkleRoot as in the block header
+     */
+    public synchronized void onBlock(Sha256Hash blockHash, Sha256Hash merkleRoot, BlockIds ids) {
+        List<Pending> included = null;
+        for (int i = 0; i < ids.count; i++) {
+            if (!indexed(prefix(ids.ids, i * ID_SIZE))) {
+                continue;
+            }
+            byte[] id = new byte[ID_SIZE];
+            System.arraycopy(ids.ids, i * ID_SIZE, id, 0, ID_SIZE);
+            Pending match = pending.get(new Sha256Hash(Utils.reverseBytes(id)));
+            if (match != null) {
+                if (included == null) {
+                    included = new ArrayList<Pending>();
+                }
+                included.add(match);
+            }
+        }
+        if (included == null) {
+            return;
+        }
+        if (!Arrays.equals(Utils.reverseBytes(merkleRoot.getBytes()), merkleRoot(ids.ids, ids.count))) {
+            LOGGER.warn("transactions of block " + blockHash + " do not match its merkle root, ignoring it");
+            return;
+        }
+        for (Pending match : included) {
+            match.blocks.add(blockHash);
+        }
+    }
+
+    /**
+     * updates the depth of all included transactions, call it after the chain head moved
+     */
+    public void onChainHead(StoredBlock head, BlockStore store) throws BlockStoreException {
+        List<Confirmation> changes = new ArrayList<Confirmation>();
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Map<Sha256Hash, Integer> recent = new HashMap<Sha256Hash, Integer>(maxDepth * 2);
+            StoredBlock cursor = head;
+            for (int i = 0; i < maxDepth && cursor != null; i++) {
+                recent.put(cursor.getHeader().getHash(), cursor.getHeight());
+                cursor = cursor.getPrev(store);
+            }
+            boolean removed = false;
+            for (Iterator<Pending> it = pending.values().iterator(); it.hasNext(); ) {
+                Pending next = it.next();
+                if (next.trackedHeight < 0) {
+                    next.trackedHeight = head.getHeight();
+                }
+                int depth = 0;
+                for (Sha256Hash block : next.blocks) {
+                    Integer height = recent.get(block);
+                    if (height != null) {
+                        depth = head.getHeight() - height + 1;
+                    }
+                }
+                if (depth == 0 && next.height >= 0 && head.getHeight() - next.height + 1 > maxDepth) {
+                    //the head moved on by several blocks at once, the block is now below the part we walked
+                    depth = maxDepth;
+                }
+                next.height = depth > 0 ? head.getHeight() - depth + 1 : -1;
+                if (depth != next.depth) {
+                    next.depth = Math.min(depth, maxDepth);
+                    changes.add(new Confirmation(next.hash, next.depth));
+                }
+                if (depth >= maxDepth) {
+                    it.remove();
+                    removed = true;
+                } else if (depth == 0 && head.getHeight() - next.trackedHeight >= maxUnconfirmedBlocks) {
+                    LOGGER.info(next.hash + " is not in the chain " + maxUnconfirmedBlocks + " blocks later, forgetting it");
+                    it.remove();
+                    removed = true;
+                }
+            }
+            if (removed) {
+                rebuildIndex();
+            }
+        }
+        for (Confirmation change : changes) {
+            for (Consumer<Confirmation> listener : listeners) {
+                listener.consume(change);
+            }
+        }
+    }
+
+    /**
+     * @return the merkle root of the ids, in internal byte order
+     */
+    static byte[] merkleRoot(byte[] ids, int count) {
+        byte[] level = new byte[count * ID_SIZE];
+        System.arraycopy(ids, 0, level, 0, level.length);
+        MessageDigest sha256 = BlockScanner.newSha256();
+        int n = count;
+        while (n > 1) {
+            int next = 0;
+            for (int i = 0; i < n; i += 2) {
+                //an odd last node is paired with itself
+                int right = Math.min(i + 1, n - 1);
+                sha256.update(level, i * ID_SIZE, ID_SIZE);
+                sha256.update(level, right * ID_SIZE, ID_SIZE);
+                //the parent never overwrites a node which is still to be read
+                System.arraycopy(sha256.digest(sha256.digest()), 0, level, next * ID_SIZE, ID_SIZE);
+                next++;
+            }
+            n = next;
+        }
+        byte[] root = new byte[ID_SIZE];
+        System.arraycopy(level, 0, root, 0, ID_SIZE);
+        return root;
+    }
+
+    private void rebuildIndex() {
+        int capacity = 16;
+        while (capacity < pending.size() * 2) {
+            capacity *= 2;
+        }
+        index = new long[capacity];
+        for (Sha256Hash hash : pending.keySet()) {
+            insert(key(hash));
+        }
+    }
+
+    private void insert(long key) {
+        int slot = slot(key);
+        while (index[slot] != 0 && index[slot] != key) {
+            slot = (slot + 1) & (index.length - 1);
+        }
+        index[slot] = key;
+    }
+
+    private static long key(Sha256Hash hash) {
+        //the hash is in display order, the ids of a block are reversed
+        return prefix(Utils.reverseBytes(hash.getBytes()), 0);
+    }
+
+    private boolean indexed(long key) {
+        for (int slot = slot(key); index[slot] != 0; slot = (slot + 1) & (index.length - 1)) {
+            if (index[slot] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int slot(long key) {
+        //the ids are hashes already, the low bits are as good as any
+        return (int) key & (index.length - 1);
+    }
+
+    private static long prefix(byte[] id, int offset) {
+        long ret = 0;
+        for (int i = 0; i < 8; i++) {
+            ret = (ret << 8) | (id[offset + i] & 0xFF);
+        }
+        return ret == 0 ? 1 : ret;
+    }
+}
@@ -24,7 +24,9 @@ import com.google.bitcoin.discovery.IrcDiscovery;
 import com.google.bitcoin.discovery.PeerDiscovery;
 import com.google.bitcoin.discovery.SeedPeers;
 
+import javax.annotation.Nullable;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -51,6 +53,12 @@ public enum Environment {
                     new SeedPeers(getNetworkParams()));
 
         }
+
+        @Override
+        public List<Checkpoint> getCheckpoints() {
+            //paste the checkpoint lines HeaderStore logs for retarget blocks here, oldest first
+            return Collections.emptyList();
+        }
     }, TEST(makeTestNet(), "bitfluids.blocksTEST") {
         @Override
         public Address getKey200() {
@@ -70,6 +78,11 @@ public enum Environment {
                     , new DnsDiscovery(getNetworkParams())
                     , new SeedPeers(getNetworkParams()));
         }
+
+        @Override
+        public List<Checkpoint> getCheckpoints() {
+            return Collections.emptyList();
+        }
     };
 
     private static NetworkParameters makeTestNet() {
@@ -112,6 +125,23 @@ public enum Environment {
 
     public abstract List<PeerDiscovery> getPeerDiscoveries();
 
+    /**
+     * @return the xpub (tpub on testnet) of the account each sale gets a fresh address from,
+     *         null to take the payments on {@link #getKey200()} and {@link #getKey150()} only
+     */
+    @Nullable
+    public String getSaleKey() {
+        //paste the watch-only key exported by the wallet here
+        return null;
+    }
+
+    /**
+     * @return known retarget blocks to start the header chain from, oldest first.
+     * more can be put into {@link BitcoinTransactionListener#CHECKPOINT_FILE} in the data directory.
+     * without any, the header chain is not synced at all, see {@link BitcoinTransactionListener}
+     */
+    public abstract List<Checkpoint> getCheckpoints();
+
     public String getBlockChainFilename() {
         return blockChainFilename;
     }
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * hands events from the threads producing them (peers, price refresher) to their subscribers,
+ * a slow subscriber like the UI or text to speech never holds up the producer.
+ * <ul>
+ * <li>events are published to typed {@link Topic}s, see {@link Events}. publishing and (un)subscribing take no locks</li>
+ * <li>every subscriber has its own bounded queue, drained on the executor it subscribed with.
+ * only one drain per subscriber runs at a time, so it gets its events in order</li>
+ * <li>what happens to an event for a full queue is chosen per subscriber, see {@link Policy}</li>
+ * </ul>
+ */
+public class EventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventDispatcher.class);
+
+    /**
+     * events handed to the consumer per drain, then the executor gets the chance to run something else
+     */
+    private static final int BATCH = 32;
+    private static final Subscriber<?>[] NONE = new Subscriber<?>[0];
+
+    public enum Policy {
+        /**
+         * new events are dropped while the queue is full, for samples where a gap does not matter
+         */
+        DROP,
+        /**
+         * only the newest event is kept, for states like a status or a counter
+         */
+        COALESCE,
+        /**
+         * the producer waits for room, for events which must not get lost
+         */
+        BLOCK
+    }
+
+    public static final class Topic<E> {
+        private final String name;
+
+        public Topic(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public interface Subscription {
+        void cancel();
+
+        /**
+         * @return events which never reached the subscriber, because they were dropped or replaced by newer ones
+         */
+        long getDropped();
+    }
+
+    private final ConcurrentMap<Topic<?>, AtomicReference<Subscriber<?>[]>> topics =
+            new ConcurrentHashMap<Topic<?>, AtomicReference<Subscriber<?>[]>>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "event dispatch");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * the consumer is called on the dispatcher's own threads
+     */
+    public <E> Subscription subscribe(Topic<E> topic, Consumer<E> consumer, Policy policy, int capacity) {
+        return subscribe(topic, consumer, policy, capacity, executor);
+    }
+
+    /**
+     * @param capacity ignored for {@link Policy#COALESCE}
+     * @param executor runs the consumer, e.g. posting to the UI thread
+     */
+    public <E> Subscription subscribe(Topic<E> topic, Consumer<E> consumer, Policy policy, int capacity, Executor executor) {
+        Preconditions.checkArgument(capacity > 0 || policy == Policy.COALESCE);
+        AtomicReference<Subscriber<?>[]> subscribers = topics.get(topic);
+        if (subscribers == null) {
+            topics.putIfAbsent(topic, new AtomicReference<Subscriber<?>[]>(NONE));
+            subscribers = topics.get(topic);
+        }
+        Subscriber<E> subscriber = new Subscriber<E>(subscribers, consumer, policy, capacity, executor);
+        while (true) {
+            Subscriber<?>[] current = subscribers.get();
+            Subscriber<?>[] next = new Subscriber<?>[current.length + 1];
+            System.arraycopy(current, 0, next, 0, current.length);
+            next[current.length] = subscriber;
+            if (subscribers.compareAndSet(current, next)) {
+                return subscriber;
+            }
+        }
+    }
+
+    /**
+     * returns as soon as the event is queued for all subscribers, only a full {@link Policy#BLOCK} queue makes it wait
+     */
+    @SuppressWarnings("unchecked")
+    public <E> void publish(Topic<E> topic, E event) {
+        AtomicReference<Subscriber<?>[]> subscribers = topics.get(topic);
+        if (subscribers == null) {
+            return;
+        }
+        for (Subscriber<?> subscriber : subscribers.get()) {
+            ((Subscriber<E>) subscriber).offer(event);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class Subscriber<E> implements Subscription, Runnable {
+        private final AtomicReference<Subscriber<?>[]> subscribers;
+        private final Consumer<E> consumer;
+        private final Policy policy;
+        private final Executor executor;
+        private final BlockingQueue<E> queue;
+        private final AtomicReference<E> latest = new AtomicReference<E>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean cancelled;
+
+        private Subscriber(AtomicReference<Subscriber<?>[]> subscribers, Consumer<E> consumer, Policy policy,
+                           int capacity, Executor executor) {
+            this.subscribers = subscribers;
+            this.consumer = consumer;
+            this.policy = policy;
+            this.executor = executor;
+            queue = policy == Policy.COALESCE ? null : new ArrayBlockingQueue<E>(capacity);
+        }
+
+        private void offer(E event) {
+            switch (policy) {
+                case COALESCE:
+                    if (latest.getAndSet(event) != null) {
+                        dropped.incrementAndGet();
+                    }
+                    break;
+                case DROP:
+                    if (!queue.offer(event)) {
+                        dropped.incrementAndGet();
+                    }
+                    break;
+                case BLOCK:
+                    try {
+                        queue.put(event);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped.incrementAndGet();
+                        LOGGER.warn("interrupted while waiting to queue " + event);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("unexpected policy " + policy);
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!cancelled && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    //shut down, nothing will be delivered anymore
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < BATCH && !cancelled; i++) {
+                    E event = poll();
+                    if (event == null) {
+                        break;
+                    }
+                    try {
+                        consumer.consume(event);
+                    } catch (RuntimeException e) {
+                        LOGGER.error("subscriber failed on " + event, e);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                //events which came in after the last poll, or more than one batch
+                if (hasPending()) {
+                    schedule();
+                }
+            }
+        }
+
+        private E poll() {
+            return queue == null ? latest.getAndSet(null) : queue.poll();
+        }
+
+        private boolean hasPending() {
+            return queue == null ? latest.get() != null : !queue.isEmpty();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            while (true) {
+                Subscriber<?>[] current = subscribers.get();
+                int at = -1;
+                for (int i = 0; i < current.length; i++) {
+                    if (current[i] == this) {
+                        at = i;
+                    }
+                }
+                if (at < 0) {
+                    return;
+                }
+                Subscriber<?>[] next = new Subscriber<?>[current.length - 1];
+                System.arraycopy(current, 0, next, 0, at);
+                System.arraycopy(current, at + 1, next, at, next.length - at);
+                if (subscribers.compareAndSet(current, next)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public long getDropped() {
+            return dropped.get();
+        }
+    }
+}
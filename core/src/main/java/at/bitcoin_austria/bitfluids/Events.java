@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import at.bitcoin_austria.bitfluids.EventDispatcher.Topic;
+import at.bitcoin_austria.bitfluids.trafficSignal.Status;
+
+/**
+ * the topics published on the {@link EventDispatcher}
+ */
+public final class Events {
+    /**
+     * connected peers, on every connect and disconnect
+     */
+    public static final Topic<Integer> PEER_COUNT = new Topic<Integer>("peer count");
+    /**
+     * how well the price sources answered, after every price refresh
+     */
+    public static final Topic<Status> PRICE_STATUS = new Topic<Status>("price status");
+    /**
+     * transaction throughput, at most once per second
+     */
+    public static final Topic<StatsSnapshot> STATS = new Topic<StatsSnapshot>("stats");
+    /**
+     * every sold item, also the payments we could not price
+     */
+    public static final Topic<TransactionItem> SALES = new Topic<TransactionItem>("sales");
+    /**
+     * changes of the depth of paid transactions in the chain
+     */
+    public static final Topic<ConfirmationTracker.Confirmation> CONFIRMATIONS =
+            new Topic<ConfirmationTracker.Confirmation>("confirmations");
+
+    private Events() {
+    }
+}
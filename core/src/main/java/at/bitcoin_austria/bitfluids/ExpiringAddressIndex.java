@@ -0,0 +1,262 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * watched addresses which are forgotten some time after they were last shown, each with a value
+ * such as the {@link FluidType} it sells. lookups are O(1) and lock free, like {@link MappedHash160Index}
+ * it is an open addressing table with linear probing on the first 4 bytes of the hash160.
+ * <p/>
+ * all addresses live equally long, so they expire in the order they were watched. a queue in that order
+ * tells which entries to drop, expiring never looks at the entries which are still valid.
+ * an expired address is not found anymore even before it is dropped, which happens on the next {@link #watch}
+ * or {@link #expire()}.
+ */
+public class ExpiringAddressIndex<V> implements WatchedAddresses {
+    private static final int MIN_CAPACITY = 16;
+    private static final long FOREVER = Long.MAX_VALUE;
+    private static final Entry<Object> REMOVED = new Entry<Object>(new byte[HASH160_LENGTH], null, 0);
+
+    private final long ttlMillis;
+    private final Clock clock;
+
+    private volatile AtomicReferenceArray<Entry<V>> table = new AtomicReferenceArray<Entry<V>>(MIN_CAPACITY);
+    //the rest is only touched with the lock held
+    private int live;
+    private int used;
+    private Entry<?>[] queue = new Entry<?>[MIN_CAPACITY];
+    private int queueHead;
+    private int queueSize;
+
+    private static final class Entry<V> {
+        final byte[] hash160;
+        final int hash;
+        @Nullable
+        final V value;
+        final long expiresAt;
+
+        Entry(byte[] hash160, @Nullable V value, long expiresAt) {
+            this.hash160 = hash160;
+            this.hash = hashOf(hash160, 0);
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param ttlMillis how long an address is watched after it was shown the last time
+     */
+    public ExpiringAddressIndex(long ttlMillis, Clock clock) {
+        Preconditions.checkArgument(ttlMillis > 0, "ttl must be positive: %s", ttlMillis);
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * watches the address for the ttl from now on, also if it is watched already
+     */
+    public void watch(Address address, V value) {
+        long now = clock.currentTimeMillis();
+        synchronized (this) {
+            expire(now);
+            Entry<V> entry = new Entry<V>(address.getHash160().clone(), value, now + ttlMillis);
+            if (put(entry)) {
+                enqueue(entry);
+            }
+        }
+    }
+
+    /**
+     * for the fixed addresses, they never expire
+     */
+    public synchronized void watchForever(Address address, V value) {
+        put(new Entry<V>(address.getHash160().clone(), value, FOREVER));
+    }
+
+    /**
+     * drops the expired addresses, this takes time in proportion to their number only
+     */
+    public void expire() {
+        long now = clock.currentTimeMillis();
+        synchronized (this) {
+            expire(now);
+        }
+    }
+
+    @Override
+    public boolean contains(byte[] hash160, int offset) {
+        return find(hash160, offset) != null;
+    }
+
+    /**
+     * @return the value the address was watched with, null if it is not watched (anymore)
+     */
+    @Nullable
+    public V get(Address address) {
+        Entry<V> entry = find(address.getHash160(), 0);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * @return the addresses not dropped yet, including expired ones
+     */
+    @Override
+    public synchronized int size() {
+        return live;
+    }
+
+    @Nullable
+    private Entry<V> find(byte[] hash160, int offset) {
+        AtomicReferenceArray<Entry<V>> current = table;
+        int mask = current.length() - 1;
+        int hash = hashOf(hash160, offset);
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Entry<V> entry = current.get(i);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.hash == hash && entry != REMOVED && equalsAt(entry.hash160, hash160, offset)) {
+                return entry.expiresAt > clock.currentTimeMillis() ? entry : null;
+            }
+        }
+    }
+
+    /**
+     * @return false if the address was watched forever already, it stays that way
+     */
+    private boolean put(Entry<V> entry) {
+        AtomicReferenceArray<Entry<V>> current = table;
+        int mask = current.length() - 1;
+        int free = -1;
+        int i = entry.hash & mask;
+        for (Entry<V> slot = current.get(i); slot != null; i = (i + 1) & mask, slot = current.get(i)) {
+            if (slot == REMOVED) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (slot.hash == entry.hash && equalsAt(slot.hash160, entry.hash160, 0)) {
+                if (slot.expiresAt == FOREVER) {
+                    return false;
+                }
+                //the old entry is still queued, it is skipped when it comes up
+                current.set(i, entry);
+                return true;
+            }
+        }
+        if (free >= 0) {
+            current.set(free, entry);
+        } else {
+            current.set(i, entry);
+            used++;
+        }
+        live++;
+        //removed slots count as used, they end a probe just as late
+        if (used * 2 > current.length()) {
+            rehash();
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expire(long now) {
+        while (queueSize > 0 && queue[queueHead].expiresAt <= now) {
+            Entry<V> entry = (Entry<V>) queue[queueHead];
+            queue[queueHead] = null;
+            queueHead = (queueHead + 1) & (queue.length - 1);
+            queueSize--;
+            remove(entry);
+        }
+    }
+
+    /**
+     * removes exactly this entry, not a newer one for the same address
+     */
+    @SuppressWarnings("unchecked")
+    private void remove(Entry<V> entry) {
+        AtomicReferenceArray<Entry<V>> current = table;
+        int mask = current.length() - 1;
+        for (int i = entry.hash & mask; ; i = (i + 1) & mask) {
+            Entry<V> slot = current.get(i);
+            if (slot == null) {
+                return;
+            }
+            if (slot == entry) {
+                current.set(i, (Entry<V>) (Entry<?>) REMOVED);
+                live--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * into a new table with room for twice the live entries, readers switch over when it is complete
+     */
+    private void rehash() {
+        AtomicReferenceArray<Entry<V>> old = table;
+        int capacity = MIN_CAPACITY;
+        while (capacity < live * 4) {
+            capacity <<= 1;
+        }
+        AtomicReferenceArray<Entry<V>> fresh = new AtomicReferenceArray<Entry<V>>(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < old.length(); i++) {
+            Entry<V> entry = old.get(i);
+            if (entry != null && entry != REMOVED) {
+                int j = entry.hash & mask;
+                while (fresh.get(j) != null) {
+                    j = (j + 1) & mask;
+                }
+                fresh.set(j, entry);
+            }
+        }
+        used = live;
+        table = fresh;
+    }
+
+    private void enqueue(Entry<V> entry) {
+        if (queueSize == queue.length) {
+            Entry<?>[] grown = new Entry<?>[queue.length * 2];
+            for (int i = 0; i < queueSize; i++) {
+                grown[i] = queue[(queueHead + i) & (queue.length - 1)];
+            }
+            queue = grown;
+            queueHead = 0;
+        }
+        queue[(queueHead + queueSize) & (queue.length - 1)] = entry;
+        queueSize++;
+    }
+
+    private static int hashOf(byte[] hash160, int offset) {
+        return (hash160[offset] & 0xFF) << 24 | (hash160[offset + 1] & 0xFF) << 16
+                | (hash160[offset + 2] & 0xFF) << 8 | (hash160[offset + 3] & 0xFF);
+    }
+
+    private static boolean equalsAt(byte[] hash, byte[] candidate, int offset) {
+        for (int i = 0; i < HASH160_LENGTH; i++) {
+            if (hash[i] != candidate[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
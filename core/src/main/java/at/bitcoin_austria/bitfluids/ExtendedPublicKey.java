@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.AddressFormatException;
+import com.google.bitcoin.core.Base58;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.Utils;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+
+/**
+ * a watch-only BIP32 key (xpub or tpub). only public, non-hardened children can be derived,
+ * the private keys stay in the wallet which receives the payments.
+ * <p/>
+ * a derivation is a secp256k1 point multiplication in plain BigInteger arithmetic, a few milliseconds
+ * on a desktop and a lot more on a tablet, see {@link AddressPool} for deriving ahead.
+ */
+public final class ExtendedPublicKey {
+    private static final int XPUB = 0x0488B21E;
+    private static final int TPUB = 0x043587CF;
+    private static final int XPRV = 0x0488ADE4;
+    private static final int TPRV = 0x04358394;
+    private static final int SERIALIZED_LENGTH = 78;
+    private static final int KEY_LENGTH = 33;
+    public static final int MAX_INDEX = Integer.MAX_VALUE;
+
+    //secp256k1
+    private static final BigInteger P = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F", 16);
+    private static final BigInteger N = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEBAAEDCE6AF48A03BBFD25E8CD0364141", 16);
+    private static final BigInteger GX = new BigInteger("79BE667EF9DCBBAC55A06295CE870B07029BFCDB2DCE28D959F2815B16F81798", 16);
+    private static final BigInteger GY = new BigInteger("483ADA7726A3C4655DA4FBFC0E1108A8FD17B448A68554199C47D08FFB10D4B8", 16);
+    private static final BigInteger SEVEN = BigInteger.valueOf(7);
+    private static final BigInteger SQRT_EXPONENT = P.add(BigInteger.ONE).shiftRight(2);
+
+    private final byte[] publicKey;
+    private final byte[] chainCode;
+    private final int depth;
+    private final int childNumber;
+
+    private ExtendedPublicKey(byte[] publicKey, byte[] chainCode, int depth, int childNumber) {
+        this.publicKey = publicKey;
+        this.chainCode = chainCode;
+        this.depth = depth;
+        this.childNumber = childNumber;
+    }
+
+    /**
+     * @param base58 e.g. the account's receive chain, m/44'/0'/0'/0, exported as xpub
+     */
+    public static ExtendedPublicKey parse(String base58) throws AddressFormatException {
+        byte[] bytes = Base58.decodeChecked(base58);
+        if (bytes.length != SERIALIZED_LENGTH) {
+            throw new AddressFormatException("not an extended key, " + bytes.length + " bytes");
+        }
+        int version = readInt(bytes, 0);
+        if (version == XPRV || version == TPRV) {
+            throw new AddressFormatException("this is a private key, only the public one (xpub) belongs here");
+        }
+        if (version != XPUB && version != TPUB) {
+            throw new AddressFormatException("unknown extended key version " + Integer.toHexString(version));
+        }
+        byte[] chainCode = new byte[32];
+        System.arraycopy(bytes, 13, chainCode, 0, chainCode.length);
+        byte[] publicKey = new byte[KEY_LENGTH];
+        System.arraycopy(bytes, 45, publicKey, 0, publicKey.length);
+        if (publicKey[0] != 2 && publicKey[0] != 3) {
+            throw new AddressFormatException("public key is not compressed");
+        }
+        try {
+            decompress(publicKey);
+        } catch (IllegalArgumentException e) {
+            throw new AddressFormatException(e.getMessage());
+        }
+        return new ExtendedPublicKey(publicKey, chainCode, bytes[4] & 0xFF, readInt(bytes, 9));
+    }
+
+    /**
+     * @param index 0 to {@link #MAX_INDEX}, hardened children need the private key
+     * @return the child key, null for the few indexes BIP32 says to skip
+     */
+    @Nullable
+    public ExtendedPublicKey derive(int index) {
+        Preconditions.checkArgument(index >= 0, "hardened keys cannot be derived from a public key: %s", index);
+        byte[] data = new byte[KEY_LENGTH + 4];
+        System.arraycopy(publicKey, 0, data, 0, KEY_LENGTH);
+        data[KEY_LENGTH] = (byte) (index >>> 24);
+        data[KEY_LENGTH + 1] = (byte) (index >>> 16);
+        data[KEY_LENGTH + 2] = (byte) (index >>> 8);
+        data[KEY_LENGTH + 3] = (byte) index;
+        byte[] hmac = hmacSha512(chainCode, data);
+        byte[] left = new byte[32];
+        System.arraycopy(hmac, 0, left, 0, left.length);
+        BigInteger tweak = new BigInteger(1, left);
+        if (tweak.compareTo(N) >= 0) {
+            return null;
+        }
+        BigInteger[] parent = decompress(publicKey);
+        BigInteger[] sum = add(multiply(tweak), parent[0], parent[1]);
+        if (sum[2].signum() == 0) {
+            return null;
+        }
+        byte[] childChainCode = new byte[32];
+        System.arraycopy(hmac, 32, childChainCode, 0, childChainCode.length);
+        return new ExtendedPublicKey(compress(sum), childChainCode, depth + 1, index);
+    }
+
+    /**
+     * @return the compressed public key, 33 bytes
+     */
+    public byte[] getPublicKey() {
+        return publicKey.clone();
+    }
+
+    public byte[] getChainCode() {
+        return chainCode.clone();
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getChildNumber() {
+        return childNumber;
+    }
+
+    public byte[] getHash160() {
+        return Utils.sha256hash160(publicKey);
+    }
+
+    public Address toAddress(NetworkParameters params) {
+        return new Address(params, getHash160());
+    }
+
+    private static byte[] hmacSha512(byte[] key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA512");
+            mac.init(new SecretKeySpec(key, "HmacSHA512"));
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+    /**
+     * @return x and y of a compressed point
+     */
+    private static BigInteger[] decompress(byte[] compressed) {
+        byte[] xBytes = new byte[32];
+        System.arraycopy(compressed, 1, xBytes, 0, xBytes.length);
+        BigInteger x = new BigInteger(1, xBytes);
+        if (x.compareTo(P) >= 0) {
+            throw new IllegalArgumentException("public key is not on the curve");
+        }
+        BigInteger ySquare = x.pow(3).add(SEVEN).mod(P);
+        BigInteger y = ySquare.modPow(SQRT_EXPONENT, P);
+        if (!y.multiply(y).mod(P).equals(ySquare)) {
+            throw new IllegalArgumentException("public key is not on the curve");
+        }
+        if (y.testBit(0) != (compressed[0] == 3)) {
+            y = P.subtract(y);
+        }
+        return new BigInteger[]{x, y};
+    }
+
+    /**
+     * @param jacobian X, Y, Z with Z != 0
+     */
+    private static byte[] compress(BigInteger[] jacobian) {
+        BigInteger zInverse = jacobian[2].modInverse(P);
+        BigInteger zInverse2 = zInverse.multiply(zInverse).mod(P);
+        BigInteger x = jacobian[0].multiply(zInverse2).mod(P);
+        BigInteger y = jacobian[1].multiply(zInverse2).multiply(zInverse).mod(P);
+        byte[] ret = new byte[KEY_LENGTH];
+        ret[0] = (byte) (y.testBit(0) ? 3 : 2);
+        byte[] xBytes = x.toByteArray();
+        //toByteArray has a leading sign byte or fewer than 32 bytes
+        int length = Math.min(xBytes.length, 32);
+        System.arraycopy(xBytes, xBytes.length - length, ret, KEY_LENGTH - length, length);
+        return ret;
+    }
+
+    /**
+     * k * G, adding up the precomputed powers of two. in jacobian coordinates so there is no inversion per step
+     */
+    private static BigInteger[] multiply(BigInteger k) {
+        BigInteger[][] powers = GeneratorPowers.POWERS;
+        BigInteger[] point = {BigInteger.ONE, BigInteger.ONE, BigInteger.ZERO};
+        for (int i = k.bitLength() - 1; i >= 0; i--) {
+            if (k.testBit(i)) {
+                point = add(point, powers[i][0], powers[i][1]);
+            }
+        }
+        return point;
+    }
+
+    /**
+     * 2^i * G in affine coordinates, computed on first use
+     */
+    private static final class GeneratorPowers {
+        private static final BigInteger[][] POWERS = new BigInteger[256][];
+
+        static {
+            BigInteger[] point = {GX, GY, BigInteger.ONE};
+            for (int i = 0; i < POWERS.length; i++) {
+                BigInteger zInverse = point[2].modInverse(P);
+                BigInteger zInverse2 = zInverse.multiply(zInverse).mod(P);
+                POWERS[i] = new BigInteger[]{point[0].multiply(zInverse2).mod(P),
+                        point[1].multiply(zInverse2).multiply(zInverse).mod(P)};
+                point = twice(point);
+            }
+        }
+    }
+
+    private static BigInteger[] twice(BigInteger[] point) {
+        BigInteger x = point[0];
+        BigInteger y = point[1];
+        BigInteger z = point[2];
+        if (z.signum() == 0 || y.signum() == 0) {
+            return new BigInteger[]{BigInteger.ONE, BigInteger.ONE, BigInteger.ZERO};
+        }
+        BigInteger ySquare = y.multiply(y).mod(P);
+        BigInteger s = x.multiply(ySquare).shiftLeft(2).mod(P);
+        BigInteger m = x.multiply(x).multiply(BigInteger.valueOf(3)).mod(P);
+        BigInteger x3 = m.multiply(m).subtract(s.shiftLeft(1)).mod(P);
+        BigInteger y3 = m.multiply(s.subtract(x3)).subtract(ySquare.multiply(ySquare).shiftLeft(3)).mod(P);
+        BigInteger z3 = y.multiply(z).shiftLeft(1).mod(P);
+        return new BigInteger[]{x3, y3, z3};
+    }
+
+    /**
+     * jacobian plus affine point
+     */
+    private static BigInteger[] add(BigInteger[] point, BigInteger x2, BigInteger y2) {
+        BigInteger x1 = point[0];
+        BigInteger y1 = point[1];
+        BigInteger z1 = point[2];
+        if (z1.signum() == 0) {
+            return new BigInteger[]{x2, y2, BigInteger.ONE};
+        }
+        BigInteger z1Square = z1.multiply(z1).mod(P);
+        BigInteger u2 = x2.multiply(z1Square).mod(P);
+        BigInteger s2 = y2.multiply(z1Square).multiply(z1).mod(P);
+        BigInteger h = u2.subtract(x1).mod(P);
+        BigInteger r = s2.subtract(y1).mod(P);
+        if (h.signum() == 0) {
+            if (r.signum() == 0) {
+                return twice(point);
+            }
+            return new BigInteger[]{BigInteger.ONE, BigInteger.ONE, BigInteger.ZERO};
+        }
+        BigInteger hSquare = h.multiply(h).mod(P);
+        BigInteger hCube = hSquare.multiply(h).mod(P);
+        BigInteger x1hSquare = x1.multiply(hSquare).mod(P);
+        BigInteger x3 = r.multiply(r).subtract(hCube).subtract(x1hSquare.shiftLeft(1)).mod(P);
+        BigInteger y3 = r.multiply(x1hSquare.subtract(x3)).subtract(y1.multiply(hCube)).mod(P);
+        BigInteger z3 = h.multiply(z1).mod(P);
+        return new BigInteger[]{x3, y3, z3};
+    }
+}
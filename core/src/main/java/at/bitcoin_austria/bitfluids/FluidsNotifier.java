@@ -16,6 +16,9 @@
 
 package at.bitcoin_austria.bitfluids;
 
+import com.google.bitcoin.core.Sha256Hash;
+
+import javax.annotation.Nullable;
 import java.math.BigDecimal;
 
 /**
@@ -25,5 +28,10 @@ public interface FluidsNotifier {
 
     void onFluidPaid(TransactionItem transactionItem);
 
-    void onError(String message, FluidType type, Bitcoins bitcoins);
+    /**
+     * a payment arrived but could not be turned into drinks, it has to be settled by hand
+     *
+     * @param type null if the address is not known anymore
+     */
+    void onError(String message, @Nullable FluidType type, Bitcoins bitcoins, Sha256Hash hash);
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.TimeZone;
+
+/**
+ * writes amounts and times straight into a {@link StringBuilder}, with integer arithmetic only.
+ * the text is the same as {@link Bitcoins#toString()}, {@link Utils#eurDF} and a "HH:mm:ss" SimpleDateFormat.
+ * nothing is shared between calls, so any thread may use it without locking. only a builder
+ * which has to grow allocates.
+ */
+public final class Formats {
+    private static final long SATOSHIS_PER_BITCOIN = 100000000L;
+    private static final int SATOSHI_DIGITS = 8;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L};
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    /**
+     * above this, or for NaN and infinity, euros are formatted by a DecimalFormat
+     */
+    private static final double MAX_EXACT_EUROS = 1e15;
+    private static final String EURO_SUFFIX = " €";
+
+    //the same symbols eurDF got from the default locale
+    private static final char DECIMAL_SEPARATOR;
+    private static final char MINUS_SIGN;
+
+    static {
+        DecimalFormatSymbols symbols = Utils.eurDF.getDecimalFormatSymbols();
+        DECIMAL_SEPARATOR = symbols.getDecimalSeparator();
+        MINUS_SIGN = symbols.getMinusSign();
+    }
+
+    private static final TimeZone ZONE = (TimeZone) TimeZone.getDefault().clone();
+
+    private static final ThreadLocal<DecimalFormat> FALLBACK = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            return (DecimalFormat) Utils.eurDF.clone();
+        }
+    };
+
+    private Formats() {
+    }
+
+    /**
+     * like {@link Bitcoins#toString()}: no trailing zeros, no decimal point for whole bitcoins
+     */
+    public static StringBuilder appendBitcoins(StringBuilder out, long satoshis) {
+        long whole = satoshis / SATOSHIS_PER_BITCOIN;
+        long fraction = satoshis % SATOSHIS_PER_BITCOIN;
+        if (satoshis < 0) {
+            out.append('-');
+            whole = -whole;
+            fraction = -fraction;
+        }
+        out.append(whole);
+        if (fraction != 0) {
+            int digits = SATOSHI_DIGITS;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            out.append('.');
+            appendDigits(out, fraction, digits);
+        }
+        return out;
+    }
+
+    /**
+     * like {@link Bitcoins#toCurrencyString()}
+     */
+    public static StringBuilder appendCurrency(StringBuilder out, Bitcoins bitcoins) {
+        return appendBitcoins(out, bitcoins.getSatoshis()).append(' ').append(Bitcoins.BITCOIN_SYMBOL);
+    }
+
+    /**
+     * like {@link Utils#eurDF}, rounded half even on the exact value of the double
+     */
+    public static StringBuilder appendEuros(StringBuilder out, double euros) {
+        if (!(Math.abs(euros) < MAX_EXACT_EUROS)) {
+            return out.append(FALLBACK.get().format(euros));
+        }
+        long bits = Double.doubleToRawLongBits(euros);
+        int exponent = (int) (bits >>> 52) & 0x7FF;
+        long mantissa = bits & 0xFFFFFFFFFFFFFL;
+        if (exponent != 0) {
+            mantissa |= 1L << 52;
+        } else {
+            //subnormal
+            exponent = 1;
+        }
+        //euros = mantissa * 2^-shift, below the limit shift is always positive
+        int shift = 1075 - exponent;
+        long cents;
+        if (shift > 60) {
+            //mantissa * 100 < 2^60, less than half a cent
+            cents = 0;
+        } else {
+            long scaled = mantissa * 100;
+            cents = scaled >>> shift;
+            long rest = scaled & ((1L << shift) - 1);
+            long half = 1L << (shift - 1);
+            if (rest > half || (rest == half && (cents & 1) == 1)) {
+                cents++;
+            }
+        }
+        if (bits < 0) {
+            out.append(MINUS_SIGN);
+        }
+        out.append(cents / 100).append(DECIMAL_SEPARATOR);
+        appendDigits(out, cents % 100, 2);
+        return out.append(EURO_SUFFIX);
+    }
+
+    /**
+     * HH:mm:ss in the default time zone
+     */
+    public static StringBuilder appendTime(StringBuilder out, long millis) {
+        long local = millis + ZONE.getOffset(millis);
+        long ofDay = ((local % MILLIS_PER_DAY) + MILLIS_PER_DAY) % MILLIS_PER_DAY;
+        int seconds = (int) (ofDay / 1000);
+        appendDigits(out, seconds / 3600, 2);
+        out.append(':');
+        appendDigits(out, seconds / 60 % 60, 2);
+        out.append(':');
+        appendDigits(out, seconds % 60, 2);
+        return out;
+    }
+
+    /**
+     * @param digits at most 8, leading zeros are added
+     */
+    private static void appendDigits(StringBuilder out, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            out.append((char) ('0' + value / POWERS_OF_TEN[i] % 10));
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Block;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.ProtocolException;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.StoredBlock;
+import com.google.bitcoin.core.VerificationException;
+import com.google.bitcoin.store.BlockStore;
+import com.google.bitcoin.store.BlockStoreException;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * keeps the most recent block headers in a memory mapped ring of fixed size records.
+ * <ul>
+ * <li>only the newest capacity headers are kept, enough to check difficulty transitions and reorgs.
+ * older ones are overwritten and unknown to {@link #get(Sha256Hash)} afterwards</li>
+ * <li>an empty store starts from the newest checkpoint (or the genesis block), so a cold start
+ * only syncs the headers after it</li>
+ * <li>the position of every header is kept in memory, a lookup reads a single record.
+ * the chain head, which bitcoinj asks for with every new header, is not read at all</li>
+ * </ul>
+ * record layout: hash (32), chain work (32), height (4), header (80).
+ * chain work gets the full 256 bits, mainnet has outgrown the 96 bits older stores use.
+ * the file starts with magic, record size, capacity, next slot and the hash of the chain head.
+ */
+public class HeaderStore implements BlockStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeaderStore.class);
+
+    static final int RECORD_SIZE = 148;
+    private static final int HASH_SIZE = 32;
+    private static final int CHAIN_WORK_SIZE = 32;
+    private static final int FILE_HEADER_SIZE = 64;
+    private static final int NEXT_SLOT_OFFSET = 12;
+    private static final int HEAD_OFFSET = 16;
+    //"BFH2", files of the 12 byte chain work layout are started over
+    private static final int MAGIC = 0x42464832;
+
+    /**
+     * two difficulty periods, a little over four weeks of blocks
+     */
+    public static final int DEFAULT_CAPACITY = 2 * 2016 + 64;
+
+    private final NetworkParameters params;
+    private final int capacity;
+    private final MappedByteBuffer buffer;
+    private final Map<Sha256Hash, Integer> slots;
+    private final Sha256Hash[] slotHashes;
+    private final byte[] record = new byte[RECORD_SIZE];
+    private int nextSlot;
+    private StoredBlock chainHead;
+
+    /**
+     * @param checkpoints the bundled ones of the environment and those found next to the store, oldest first
+     */
+    public static HeaderStore open(Environment env, File file, List<Checkpoint> checkpoints) throws BlockStoreException {
+        return new HeaderStore(env.getNetworkParams(), file, DEFAULT_CAPACITY, checkpoints);
+    }
+
+    /**
+     * @param checkpoints the newest one is used when the store is empty, oldest first
+     */
+    public HeaderStore(NetworkParameters params, File file, int capacity, List<Checkpoint> checkpoints) throws BlockStoreException {
+        Preconditions.checkArgument(capacity > 1);
+        this.params = params;
+        this.capacity = capacity;
+        slots = new HashMap<Sha256Hash, Integer>(capacity * 2);
+        slotHashes = new Sha256Hash[capacity];
+        try {
+            buffer = map(file);
+        } catch (IOException e) {
+            throw new BlockStoreException(e);
+        }
+        if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == RECORD_SIZE && buffer.getInt(8) == capacity) {
+            load();
+        }
+        if (chainHead == null) {
+            if (!slots.isEmpty()) {
+                LOGGER.warn(file + " had no usable chain head, starting over");
+            }
+            clear();
+            bootstrap(checkpoints);
+        }
+        LOGGER.info("header chain starts at " + chainHead.getHeight() + ", " + slots.size() + " headers stored");
+    }
+
+    private MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(FILE_HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        } finally {
+            //the mapping stays valid after closing the file
+            raf.close();
+        }
+    }
+
+    private void load() throws BlockStoreException {
+        byte[] hash = new byte[HASH_SIZE];
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.position(offset(slot));
+            buffer.get(hash);
+            if (!isZero(hash)) {
+                Sha256Hash blockHash = new Sha256Hash(hash.clone());
+                slots.put(blockHash, slot);
+                slotHashes[slot] = blockHash;
+            }
+        }
+        nextSlot = buffer.getInt(NEXT_SLOT_OFFSET);
+        if (nextSlot < 0 || nextSlot >= capacity) {
+            return;
+        }
+        buffer.position(HEAD_OFFSET);
+        buffer.get(hash);
+        Integer headSlot = slots.get(new Sha256Hash(hash));
+        if (headSlot != null) {
+            chainHead = read(headSlot);
+        } else {
+            //the head is written last, after a crash it may point to a header which never made it to disk
+            chainHead = mostWork();
+        }
+    }
+
+    @Nullable
+    private StoredBlock mostWork() throws BlockStoreException {
+        StoredBlock ret = null;
+        for (int slot : slots.values()) {
+            StoredBlock block = read(slot);
+            if (ret == null || block.moreWorkThan(ret)) {
+                ret = block;
+            }
+        }
+        return ret;
+    }
+
+    private void clear() {
+        slots.clear();
+        for (int i = 0; i < capacity; i++) {
+            slotHashes[i] = null;
+        }
+        byte[] zeros = new byte[RECORD_SIZE];
+        buffer.position(0);
+        while (buffer.remaining() >= zeros.length) {
+            buffer.put(zeros);
+        }
+        buffer.put(zeros, 0, buffer.remaining());
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, RECORD_SIZE);
+        buffer.putInt(8, capacity);
+        nextSlot = 0;
+        buffer.putInt(NEXT_SLOT_OFFSET, nextSlot);
+    }
+
+    private void bootstrap(List<Checkpoint> checkpoints) throws BlockStoreException {
+        StoredBlock start;
+        if (checkpoints.isEmpty()) {
+            Block genesis = params.genesisBlock;
+            try {
+                start = new StoredBlock(genesis, genesis.getWork(), 0);
+            } catch (VerificationException e) {
+                throw new BlockStoreException(e);
+            }
+        } else {
+            Checkpoint checkpoint = checkpoints.get(checkpoints.size() - 1);
+            if (checkpoint.height % params.interval != 0) {
+                throw new BlockStoreException("checkpoint " + checkpoint + " is not a retarget block");
+            }
+            start = checkpoint.toStoredBlock(params);
+        }
+        put(start);
+        setChainHead(start);
+    }
+
+    @Override
+    public synchronized void put(StoredBlock block) throws BlockStoreException {
+        Sha256Hash hash = block.getHeader().getHash();
+        Integer existing = slots.get(hash);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+        } else {
+            slot = nextSlot;
+            nextSlot = (nextSlot + 1) % capacity;
+            Sha256Hash evicted = slotHashes[slot];
+            if (evicted != null) {
+                slots.remove(evicted);
+            }
+        }
+        encode(block, hash);
+        buffer.position(offset(slot));
+        buffer.put(record);
+        buffer.putInt(NEXT_SLOT_OFFSET, nextSlot);
+        slots.put(hash, slot);
+        slotHashes[slot] = hash;
+        if (block.getHeight() % params.interval == 0) {
+            LOGGER.info("checkpoint " + Checkpoint.format(block));
+        }
+    }
+
+    @Override
+    @Nullable
+    public synchronized StoredBlock get(Sha256Hash hash) throws BlockStoreException {
+        if (chainHead != null && hash.equals(chainHead.getHeader().getHash())) {
+            return chainHead;
+        }
+        Integer slot = slots.get(hash);
+        return slot == null ? null : read(slot);
+    }
+
+    @Override
+    public synchronized StoredBlock getChainHead() {
+        return chainHead;
+    }
+
+    @Override
+    public synchronized void setChainHead(StoredBlock chainHead) {
+        this.chainHead = chainHead;
+        buffer.position(HEAD_OFFSET);
+        buffer.put(chainHead.getHeader().getHash().getBytes());
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    /**
+     * forces everything to disk, the store stays usable
+     */
+    @Override
+    public synchronized void close() {
+        buffer.force();
+    }
+
+    private void encode(StoredBlock block, Sha256Hash hash) throws BlockStoreException {
+        byte[] chainWork = block.getChainWork().toByteArray();
+        //toByteArray adds a sign byte when the highest bit is set
+        int start = chainWork.length > CHAIN_WORK_SIZE && chainWork[0] == 0 ? 1 : 0;
+        int length = chainWork.length - start;
+        if (length > CHAIN_WORK_SIZE) {
+            throw new BlockStoreException("chain work " + block.getChainWork() + " does not fit");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        buf.put(hash.getBytes());
+        for (int i = length; i < CHAIN_WORK_SIZE; i++) {
+            buf.put((byte) 0);
+        }
+        buf.put(chainWork, start, length);
+        buf.putInt(block.getHeight());
+        buf.put(block.getHeader().bitcoinSerialize(), 0, Checkpoint.HEADER_SIZE);
+    }
+
+    private StoredBlock read(int slot) throws BlockStoreException {
+        buffer.position(offset(slot) + HASH_SIZE);
+        byte[] chainWork = new byte[CHAIN_WORK_SIZE];
+        buffer.get(chainWork);
+        int height = buffer.getInt();
+        byte[] header = new byte[Checkpoint.HEADER_SIZE];
+        buffer.get(header);
+        try {
+            return new StoredBlock(new Block(params, header), new BigInteger(1, chainWork), height);
+        } catch (ProtocolException e) {
+            throw new BlockStoreException(e);
+        }
+    }
+
+    private static int offset(int slot) {
+        return FILE_HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private static boolean isZero(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
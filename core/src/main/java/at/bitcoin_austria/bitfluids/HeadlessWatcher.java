@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Sha256Hash;
+import org.apache.http.client.HttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * watches for payments without any UI, e.g. on a server next to the tablet.
+ * sales are journaled and logged, the same way the activity journals and shows them.
+ * <p/>
+ * usage: HeadlessWatcher [PROD|TEST] [data directory] [recording]
+ * <p/>
+ * with a recording file all transactions and blocks are written to it as well, see {@link TrafficReplayer}.
+ */
+public class HeadlessWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeadlessWatcher.class);
+
+    /**
+     * sales whose transactions are not reported again after a restart
+     */
+    private static final int RESTORED_SALES = 200;
+
+    private final Environment env;
+    private final HttpClient httpClient;
+    private final EventDispatcher events = new EventDispatcher();
+    private final SalesJournal salesJournal;
+    private final BitcoinTransactionListener listener;
+    private final PriceService priceService;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "price refresh");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final AtomicBoolean stopping = new AtomicBoolean();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    @Nullable
+    private TrafficRecorder recorder;
+
+    /**
+     * @param dataDir    holds the block headers, the sales journal and optionally an index of more addresses to watch,
+     *                   see {@link BitcoinTransactionListener#ADDRESS_INDEX_FILE}, and the price sources,
+     *                   see {@link TickerSource#CONFIG_FILE}
+     * @param httpClient for the price sources, closed on shutdown
+     */
+    public HeadlessWatcher(Environment env, File dataDir, HttpClient httpClient) throws IOException {
+        this.env = env;
+        this.httpClient = httpClient;
+        salesJournal = SalesJournal.open(new File(dataDir, "sales"));
+        WatchedAddresses fixedKeys = BitcoinTransactionListener.fixedKeys(env);
+        listener = new BitcoinTransactionListener(env, dataDir, events,
+                BitcoinTransactionListener.withAddressIndex(fixedKeys, dataDir), WatchedPubKeys.hashing(fixedKeys));
+        priceService = new PriceService(new PriceAggregator(TickerSource.configured(dataDir, httpClient)), events);
+    }
+
+    /**
+     * writes the traffic to the file until shutdown, call before {@link #start()}
+     */
+    public void record(File recording) throws IOException {
+        recorder = new TrafficRecorder(recording, Clock.SYSTEM);
+        listener.setRecorder(recorder);
+    }
+
+    public EventDispatcher getEvents() {
+        return events;
+    }
+
+    /**
+     * connects to the network and returns, sales are published on {@link Events#SALES}
+     */
+    public void start() {
+        try {
+            listener.addHashes(salesJournal.readRecent(RESTORED_SALES));
+        } catch (IOException e) {
+            LOGGER.warn("could not read the sales journal", e);
+        }
+        //sales must not get lost, the peer thread waits if journaling is that far behind
+        events.subscribe(Events.SALES, new Consumer<TransactionItem>() {
+            @Override
+            public void consume(TransactionItem transactionItem) {
+                try {
+                    salesJournal.append(transactionItem);
+                } catch (IOException e) {
+                    LOGGER.error("could not journal " + transactionItem, e);
+                }
+                LOGGER.info("someone paid for " + transactionItem);
+            }
+        }, EventDispatcher.Policy.BLOCK, 64);
+        events.subscribe(Events.STATS, new Consumer<StatsSnapshot>() {
+            @Override
+            public void consume(StatsSnapshot snapshot) {
+                LOGGER.info(snapshot.toString());
+            }
+        }, EventDispatcher.Policy.COALESCE, 1);
+        Tx2FluidsAdapter adapter = new Tx2FluidsAdapter(priceService, env);
+        listener.init(adapter.convert(new FluidsNotifier() {
+            @Override
+            public void onFluidPaid(TransactionItem transactionItem) {
+                events.publish(Events.SALES, transactionItem);
+            }
+
+            @Override
+            public void onError(String message, @Nullable FluidType type, Bitcoins bitcoins, Sha256Hash hash) {
+                LOGGER.warn("someone paid " + bitcoins + " for " + type + " in " + hash + " but there is no price: " + message);
+                //journaled like the activity does, without a price the sale is settled by hand
+                events.publish(Events.SALES, TransactionItem.unpriced(type, bitcoins, hash));
+            }
+        }));
+        //keeps the price fresh, so a payment does not wait for the sources
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    priceService.fetchEurQuote();
+                } catch (RemoteSystemFail e) {
+                    LOGGER.warn("could not refresh the price", e);
+                }
+            }
+        }, 0, Utils.TEN_MINUTES_IN_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * starts and blocks until {@link #shutdown()} is called, which happens on ctrl-c or kill as well
+     */
+    public void run() throws InterruptedException {
+        Runtime.getRuntime().addShutdownHook(new Thread("shutdown") {
+            @Override
+            public void run() {
+                shutdown();
+            }
+        });
+        start();
+        stopped.await();
+    }
+
+    public void shutdown() {
+        if (!stopping.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.shutdownNow();
+        listener.shutdown();
+        if (recorder != null) {
+            listener.setRecorder(null);
+            recorder.close();
+        }
+        priceService.shutdown();
+        httpClient.getConnectionManager().shutdown();
+        salesJournal.close();
+        events.shutdown();
+        stopped.countDown();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 3) {
+            System.err.println("usage: HeadlessWatcher [PROD|TEST] [data directory] [recording]");
+            System.exit(1);
+        }
+        Environment env = args.length > 0 ? Environment.valueOf(args[0].toUpperCase()) : Environment.PROD;
+        File dataDir = new File(args.length > 1 ? args[1] : System.getProperty("user.dir"));
+        if (!dataDir.isDirectory() && !dataDir.mkdirs()) {
+            throw new IOException("cannot create " + dataDir);
+        }
+        LOGGER.info("watching " + env + " payments, data in " + dataDir);
+        HeadlessWatcher watcher = new HeadlessWatcher(env, dataDir, PooledHttpClient.newInstance("Bitfluids headless"));
+        if (args.length > 2) {
+            LOGGER.info("recording traffic to " + args[2]);
+            watcher.record(new File(args[2]));
+        }
+        watcher.run();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * request counters of one price source, shows whether keep-alive and conditional requests pay off.
+ * latencies are measured from sending the request until the price is read.
+ */
+public class HttpStats {
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong reusedConnections = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private volatile long lastLatencyMillis;
+
+    void record(long latencyMillis, boolean success, boolean connectionReused, boolean wasNotModified) {
+        requests.incrementAndGet();
+        if (!success) {
+            failures.incrementAndGet();
+        }
+        if (connectionReused) {
+            reusedConnections.incrementAndGet();
+        }
+        if (wasNotModified) {
+            notModified.incrementAndGet();
+        }
+        totalLatencyMillis.addAndGet(latencyMillis);
+        lastLatencyMillis = latencyMillis;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * answered with 304, the cached price was used without downloading it again
+     */
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    /**
+     * requests sent over a pooled connection, without a new TCP and TLS handshake
+     */
+    public long getReusedConnections() {
+        return reusedConnections.get();
+    }
+
+    public long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    public long getAverageLatencyMillis() {
+        long count = requests.get();
+        return count == 0 ? 0 : totalLatencyMillis.get() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpStats{" +
+                "requests=" + getRequests() +
+                ", failures=" + getFailures() +
+                ", notModified=" + getNotModified() +
+                ", reusedConnections=" + getReusedConnections() +
+                ", lastLatencyMillis=" + getLastLatencyMillis() +
+                ", averageLatencyMillis=" + getAverageLatencyMillis() +
+                '}';
+    }
+}
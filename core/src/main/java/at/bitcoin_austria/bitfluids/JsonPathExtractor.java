@@ -0,0 +1,331 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * pulls a single number out of a JSON document while it is being read, e.g. "return.avg.value" of a ticker.
+ * keys are compared as raw UTF-8 bytes and everything off the path is skipped without being decoded,
+ * reading stops as soon as the value is found. the number may be quoted, as mtgox does.
+ * one instance can be shared between threads.
+ */
+public final class JsonPathExtractor {
+    private static final int BUFFER_SIZE = 1024;
+    private static final int MAX_NUMBER_LENGTH = 64;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final String pathString;
+    private final byte[][] path;
+
+    public JsonPathExtractor(String path) {
+        pathString = path;
+        String[] keys = path.split("\\.");
+        this.path = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            this.path[i] = utf8(keys[i]);
+        }
+    }
+
+    /**
+     * reads until the value at the path is found, the rest of the stream is left unread.
+     *
+     * @throws JSONException if the document is malformed, the path is missing or does not lead to a number
+     */
+    public double extractDouble(InputStream in) throws IOException, JSONException {
+        Cursor cursor = new Cursor(in);
+        expect(cursor, '{');
+        int depth = 0;
+        while (true) {
+            int c = cursor.nextNonWhitespace();
+            if (c == '}') {
+                throw new JSONException("no value at " + pathString);
+            }
+            if (c != '"') {
+                throw syntaxError(c);
+            }
+            boolean onPath = readKeyMatching(cursor, path[depth]);
+            expect(cursor, ':');
+            if (onPath) {
+                if (depth == path.length - 1) {
+                    return readNumber(cursor);
+                }
+                expect(cursor, '{');
+                depth++;
+                continue;
+            }
+            skipValue(cursor);
+            c = cursor.nextNonWhitespace();
+            if (c == '}') {
+                throw new JSONException("no value at " + pathString);
+            }
+            if (c != ',') {
+                throw syntaxError(c);
+            }
+        }
+    }
+
+    /**
+     * consumes the rest of a key after the opening quote
+     *
+     * @return true if the key equals the expected one
+     */
+    private static boolean readKeyMatching(Cursor cursor, byte[] expected) throws IOException, JSONException {
+        int i = 0;
+        boolean matching = true;
+        while (true) {
+            int c = cursor.next();
+            if (c == '"') {
+                return matching && i == expected.length;
+            }
+            if (c == '\\') {
+                c = unescape(cursor.next());
+            }
+            if (c < 0) {
+                //unicode escape or end of stream, neither is part of a key we look for
+                if (c == -1) {
+                    throw new JSONException("unterminated string");
+                }
+                matching = false;
+                continue;
+            }
+            matching = matching && i < expected.length && expected[i] == (byte) c;
+            i++;
+        }
+    }
+
+    /**
+     * @return the unescaped byte, or -2 for a unicode escape
+     */
+    private static int unescape(int c) throws JSONException {
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                return -2; //the four hex digits are read as regular bytes and will not match either
+            default:
+                throw new JSONException("bad escape " + (char) c);
+        }
+    }
+
+    private static void skipValue(Cursor cursor) throws IOException, JSONException {
+        int nesting = 0;
+        do {
+            int c = cursor.nextNonWhitespace();
+            switch (c) {
+                case '{':
+                case '[':
+                    nesting++;
+                    break;
+                case '}':
+                case ']':
+                    nesting--;
+                    break;
+                case '"':
+                    skipString(cursor);
+                    break;
+                case ',':
+                case ':':
+                    break;
+                case -1:
+                    throw new JSONException("unexpected end of document");
+                default:
+                    //number or literal, runs until the next delimiter
+                    while (c != -1 && !isDelimiter(c)) {
+                        c = cursor.next();
+                    }
+                    cursor.pushBack(c);
+            }
+        } while (nesting > 0);
+    }
+
+    private static void skipString(Cursor cursor) throws IOException, JSONException {
+        while (true) {
+            int c = cursor.next();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                cursor.next();
+            } else if (c == -1) {
+                throw new JSONException("unterminated string");
+            }
+        }
+    }
+
+    private static double readNumber(Cursor cursor) throws IOException, JSONException {
+        int c = cursor.nextNonWhitespace();
+        boolean quoted = c == '"';
+        if (quoted) {
+            c = cursor.next();
+        }
+        byte[] text = cursor.scratch;
+        int length = 0;
+        boolean negative = false;
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean exact = true;
+        if (c == '-') {
+            negative = true;
+            text[length++] = (byte) c;
+            c = cursor.next();
+        }
+        boolean fraction = false;
+        while ((c >= '0' && c <= '9') || (c == '.' && !fraction)) {
+            if (length == MAX_NUMBER_LENGTH) {
+                throw new JSONException("number too long");
+            }
+            text[length++] = (byte) c;
+            if (c == '.') {
+                fraction = true;
+            } else {
+                digits++;
+                if (mantissa < MAX_EXACT_MANTISSA / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                } else {
+                    exact = false;
+                }
+                if (fraction) {
+                    exponent--;
+                }
+            }
+            c = cursor.next();
+        }
+        if (digits == 0) {
+            throw new JSONException("not a number");
+        }
+        if (c == 'e' || c == 'E') {
+            exact = false;
+            do {
+                if (length == MAX_NUMBER_LENGTH) {
+                    throw new JSONException("number too long");
+                }
+                text[length++] = (byte) c;
+                c = cursor.next();
+            } while ((c >= '0' && c <= '9') || c == '+' || c == '-');
+        }
+        if (quoted ? c != '"' : (c != -1 && !isDelimiter(c))) {
+            throw new JSONException("not a number");
+        }
+        if (exact && -exponent < POWERS_OF_TEN.length) {
+            //both operands are exact doubles, so the single division is correctly rounded like parseDouble
+            double value = mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(text, 0, length, "US-ASCII"));
+        } catch (NumberFormatException e) {
+            throw new JSONException("not a number");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pathString;
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static void expect(Cursor cursor, char expected) throws IOException, JSONException {
+        int c = cursor.nextNonWhitespace();
+        if (c != expected) {
+            throw syntaxError(c);
+        }
+    }
+
+    private static JSONException syntaxError(int c) {
+        return new JSONException(c == -1 ? "unexpected end of document" : "unexpected character " + (char) c);
+    }
+
+    private static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * the read state of one document
+     */
+    private static final class Cursor {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final byte[] scratch = new byte[MAX_NUMBER_LENGTH];
+        private int position;
+        private int limit;
+        private int pushedBack = -1;
+        private boolean hasPushedBack;
+
+        private Cursor(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * @return the next byte, or -1 at the end of the stream
+         */
+        int next() throws IOException {
+            if (hasPushedBack) {
+                hasPushedBack = false;
+                return pushedBack;
+            }
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        int nextNonWhitespace() throws IOException {
+            int c;
+            do {
+                c = next();
+            } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+            return c;
+        }
+
+        void pushBack(int c) {
+            pushedBack = c;
+            hasPushedBack = true;
+        }
+    }
+}
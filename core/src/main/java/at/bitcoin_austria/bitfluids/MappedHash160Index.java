@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.AddressFormatException;
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * watched address set for large numbers of addresses (thousands up to millions).
+ * the table lives in a memory mapped file, so it costs no heap and is loaded lazily by the OS.
+ * <p/>
+ * layout: a 16 byte header (magic, capacity, size, reserved) followed by capacity slots of 20 bytes each.
+ * it is an open addressing table with linear probing, the first 4 bytes of the hash160 are used as hash
+ * since they are already uniformly distributed. an all-zero slot is empty.
+ * lookups only use absolute reads on the buffer, so they are thread safe and do not allocate.
+ * <p/>
+ * usage: MappedHash160Index [PROD|TEST] addresses index
+ * <p/>
+ * writes the index for a text file with one address per line. placed in the data directory as
+ * {@link BitcoinTransactionListener#ADDRESS_INDEX_FILE} it is watched by the headless watcher and the app.
+ */
+public final class MappedHash160Index implements WatchedAddresses {
+    private static final int MAGIC = 0x42464831; // "BFH1"
+    private static final int HEADER_SIZE = 16;
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private final ByteBuffer buffer;
+    private final int mask;
+    private final int size;
+
+    private MappedHash160Index(ByteBuffer buffer, int capacity, int size) {
+        this.buffer = buffer;
+        this.mask = capacity - 1;
+        this.size = size;
+    }
+
+    /**
+     * opens an index file previously written by {@link #create(File, Iterable)}, read-only.
+     */
+    public static MappedHash160Index open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException("not a hash160 index: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int capacity = mapped.getInt(4);
+            if (mapped.getInt(0) != MAGIC || Integer.bitCount(capacity) != 1
+                    || length != HEADER_SIZE + (long) capacity * HASH160_LENGTH) {
+                throw new IOException("not a hash160 index: " + file);
+            }
+            return new MappedHash160Index(mapped, capacity, mapped.getInt(8));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * writes a new index file containing the given hash160s, overwriting an existing file,
+     * and returns it opened. the table is sized to be at most half full.
+     */
+    public static MappedHash160Index create(File file, Iterable<byte[]> hash160s) throws IOException {
+        int count = 0;
+        for (byte[] hash : hash160s) {
+            Preconditions.checkArgument(hash.length == HASH160_LENGTH, "hash160 must be 20 bytes, was %s", hash.length);
+            count++;
+        }
+        int capacity = capacityFor(count);
+        long length = HEADER_SIZE + (long) capacity * HASH160_LENGTH;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            raf.setLength(length);
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            MappedHash160Index index = new MappedHash160Index(mapped, capacity, 0);
+            int size = 0;
+            for (byte[] hash : hash160s) {
+                if (index.insert(hash)) {
+                    size++;
+                }
+            }
+            mapped.putInt(0, MAGIC);
+            mapped.putInt(4, capacity);
+            mapped.putInt(8, size);
+            mapped.force();
+            return new MappedHash160Index(mapped, capacity, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int capacityFor(int count) {
+        int capacity = 16;
+        while (capacity < count * 2) {
+            capacity <<= 1;
+            Preconditions.checkArgument(capacity <= MAX_CAPACITY, "too many addresses for one index: %s", count);
+        }
+        return capacity;
+    }
+
+    private boolean insert(byte[] hash) {
+        Preconditions.checkArgument(!isZero(hash), "the all-zero hash160 can not be stored");
+        int key = readInt(hash, 0);
+        int slot = key & mask;
+        while (true) {
+            int pos = HEADER_SIZE + slot * HASH160_LENGTH;
+            if (isEmptySlot(pos)) {
+                for (int i = 0; i < HASH160_LENGTH; i++) {
+                    buffer.put(pos + i, hash[i]);
+                }
+                return true;
+            }
+            if (buffer.getInt(pos) == key && restEquals(hash, 0, pos)) {
+                return false; //duplicate
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public boolean contains(byte[] hash160, int offset) {
+        int key = readInt(hash160, offset);
+        int slot = key & mask;
+        //the table is never more than half full, so this terminates at an empty slot
+        while (true) {
+            int pos = HEADER_SIZE + slot * HASH160_LENGTH;
+            int stored = buffer.getInt(pos);
+            if (stored == 0 && isEmptySlot(pos)) {
+                return false;
+            }
+            if (stored == key && restEquals(hash160, offset, pos)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private boolean isEmptySlot(int pos) {
+        return buffer.getInt(pos) == 0 && buffer.getLong(pos + 4) == 0 && buffer.getLong(pos + 12) == 0;
+    }
+
+    private boolean restEquals(byte[] hash, int offset, int pos) {
+        return buffer.getLong(pos + 4) == readLong(hash, offset + 4)
+                && buffer.getLong(pos + 12) == readLong(hash, offset + 12);
+    }
+
+    private static boolean isZero(byte[] hash) {
+        for (byte b : hash) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24)
+                | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8)
+                | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return ((long) readInt(bytes, offset) << 32) | (readInt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    public static void main(String[] args) throws IOException, AddressFormatException {
+        if (args.length != 3) {
+            System.err.println("usage: MappedHash160Index [PROD|TEST] addresses index");
+            System.exit(1);
+        }
+        Environment env = Environment.valueOf(args[0].toUpperCase());
+        List<byte[]> hashes = new ArrayList<byte[]>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(args[1]), "US-ASCII"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0) {
+                    hashes.add(new Address(env.getNetworkParams(), line).getHash160());
+                }
+            }
+        } finally {
+            in.close();
+        }
+        MappedHash160Index index = create(new File(args[2]), hashes);
+        System.out.println(index.size() + " addresses written to " + args[2]);
+    }
+}
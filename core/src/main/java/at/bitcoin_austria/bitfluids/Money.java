@@ -0,0 +1,239 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.common.base.Preconditions;
+
+import java.math.RoundingMode;
+
+/**
+ * fixed point money arithmetic on longs. amounts are satoshis or euro cents, prices are euros per
+ * bitcoin scaled by 10^8, see {@link #scaledPrice(double)}. products are taken 128 bits wide,
+ * so they cannot overflow, and nothing allocates. only non-negative amounts and prices are supported.
+ */
+public final class Money {
+    public static final int PRICE_SCALE = 8;
+    /**
+     * returned for doubles which have no exact fixed point value
+     */
+    public static final long INEXACT = -1;
+    /**
+     * the most a drink may cost for {@link #drinks(long, long, long)}, 922.33 euros
+     */
+    public static final long MAX_DRINK_CENTS = Long.MAX_VALUE / 100000000000000L;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private static final long SATOSHIS_PER_BITCOIN = POWERS_OF_TEN[8];
+    private static final long PRICE_ONE = POWERS_OF_TEN[PRICE_SCALE];
+    //satoshis * scaled price / this = cents
+    private static final long CENTS_DIVISOR = SATOSHIS_PER_BITCOIN * PRICE_ONE / 100;
+    //Double.toString prints these as plain decimals, see drinks()
+    private static final double MIN_PRICE = 1e-3;
+    private static final double MAX_PRICE = 1e7;
+    private static final double MAX_CENTS = 1e13;
+    private static final long LOW_32 = 0xFFFFFFFFL;
+
+    private Money() {
+    }
+
+    /**
+     * @return the price in 10^-8 euros per bitcoin, {@link #INEXACT} if it has more decimals
+     *         or is not between 0.001 and 10 million euros
+     */
+    public static long scaledPrice(double eurPerBitcoin) {
+        if (!(eurPerBitcoin >= MIN_PRICE && eurPerBitcoin < MAX_PRICE)) {
+            return INEXACT;
+        }
+        long scaled = Math.round(eurPerBitcoin * PRICE_ONE);
+        //the division is exactly rounded, so this holds only if the decimal is the double
+        return scaled / (double) PRICE_ONE == eurPerBitcoin ? scaled : INEXACT;
+    }
+
+    /**
+     * @return whole cents, {@link #INEXACT} for fractions of a cent, negative or huge amounts
+     */
+    public static long cents(double euros) {
+        if (!(euros >= 0 && euros < MAX_CENTS)) {
+            return INEXACT;
+        }
+        long cents = Math.round(euros * 100);
+        return cents / 100.0 == euros ? cents : INEXACT;
+    }
+
+    /**
+     * @return what the satoshis are worth at the price, in cents
+     */
+    public static long centsFor(long satoshis, long scaledPrice, RoundingMode mode) {
+        return multiplyDivide(satoshis, scaledPrice, CENTS_DIVISOR, mode);
+    }
+
+    /**
+     * @return what the cents cost at the price, in satoshis
+     */
+    public static long satoshisFor(long cents, long scaledPrice, RoundingMode mode) {
+        Preconditions.checkArgument(scaledPrice > 0, "price must be positive, but was %s", scaledPrice);
+        return multiplyDivide(cents, CENTS_DIVISOR, scaledPrice, mode);
+    }
+
+    /**
+     * how many drinks the satoshis pay for, exactly like the BigDecimal calculation this replaced:
+     * the euros are divided by the drink price rounding HALF_UP to the scale of the euros, which
+     * depends on how many decimals Double.toString prints for the price. that is then rounded
+     * HALF_UP to whole drinks. so quotients just below x.5 may already count as x + 1.
+     */
+    public static int drinks(long satoshis, long scaledPrice, long drinkCents) {
+        Preconditions.checkArgument(drinkCents > 0 && drinkCents <= MAX_DRINK_CENTS,
+                "drink price out of range: %s", drinkCents);
+        long divisor = drinkCents * CENTS_DIVISOR;
+        long high = multiplyHigh(satoshis, scaledPrice);
+        long low = satoshis * scaledPrice;
+        long whole = divide(high, low, divisor);
+        //fits, it is less than the divisor
+        long rest = low - whole * divisor;
+        long scale = POWERS_OF_TEN[euroScale(scaledPrice)];
+        long fraction = multiplyDivide(rest, scale, divisor, RoundingMode.HALF_UP);
+        return (int) (fraction >= scale - fraction ? whole + 1 : whole);
+    }
+
+    /**
+     * the scale of BigDecimal.valueOf(price).divide(10^8): the decimals of Double.toString(price)
+     * (at least one) plus 8, but trailing zeros are only stripped down to the price's own scale
+     */
+    static int euroScale(long scaledPrice) {
+        int zeros = 0;
+        while (zeros < PRICE_SCALE && scaledPrice % POWERS_OF_TEN[zeros + 1] == 0) {
+            zeros++;
+        }
+        if (zeros < PRICE_SCALE) {
+            return PRICE_SCALE - zeros + 8;
+        }
+        //a whole price is printed as "x.0", the zero counts as well
+        long whole = scaledPrice / PRICE_ONE;
+        int wholeZeros = 1;
+        while (wholeZeros < 8 && whole % POWERS_OF_TEN[wholeZeros] == 0) {
+            wholeZeros++;
+        }
+        return 9 - wholeZeros;
+    }
+
+    /**
+     * @param figures how many leading digits to keep, at least one
+     * @return the value with all other digits zero
+     */
+    public static long roundToSignificantFigures(long value, int figures, RoundingMode mode) {
+        Preconditions.checkArgument(value >= 0, "value must not be negative, but was %s", value);
+        Preconditions.checkArgument(figures > 0, "need at least one significant figure, but was %s", figures);
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        if (digits <= figures) {
+            return value;
+        }
+        long unit = POWERS_OF_TEN[digits - figures];
+        return round(value / unit, value % unit, unit, mode) * unit;
+    }
+
+    /**
+     * @return a * b / divisor, the product is not truncated
+     * @throws ArithmeticException if the result does not fit, or for {@link RoundingMode#UNNECESSARY} if it is inexact
+     */
+    public static long multiplyDivide(long a, long b, long divisor, RoundingMode mode) {
+        Preconditions.checkArgument(a >= 0 && b >= 0, "factors must not be negative: %s, %s", a, b);
+        Preconditions.checkArgument(divisor > 0, "divisor must be positive, but was %s", divisor);
+        long high = multiplyHigh(a, b);
+        long low = a * b;
+        long quotient;
+        if (high == 0 && low >= 0) {
+            quotient = low / divisor;
+        } else {
+            quotient = divide(high, low, divisor);
+        }
+        return round(quotient, low - quotient * divisor, divisor, mode);
+    }
+
+    /**
+     * @return the upper 64 bits of the 128 bit product of two non-negative longs
+     */
+    private static long multiplyHigh(long a, long b) {
+        long a1 = a >>> 32;
+        long a0 = a & LOW_32;
+        long b1 = b >>> 32;
+        long b0 = b & LOW_32;
+        long middle1 = a1 * b0 + ((a0 * b0) >>> 32);
+        long middle2 = a0 * b1 + (middle1 & LOW_32);
+        return a1 * b1 + (middle1 >>> 32) + (middle2 >>> 32);
+    }
+
+    /**
+     * shift and subtract division of high:low, rounded down
+     */
+    private static long divide(long high, long low, long divisor) {
+        if (high >= divisor) {
+            throw new ArithmeticException("quotient does not fit into a long");
+        }
+        long rest = high;
+        long quotient = 0;
+        for (int bit = 63; bit >= 0; bit--) {
+            //rest < divisor < 2^63 before the shift, a negative rest is above 2^63
+            rest = (rest << 1) | ((low >>> bit) & 1);
+            quotient <<= 1;
+            if (rest < 0 || rest >= divisor) {
+                rest -= divisor;
+                quotient |= 1;
+            }
+        }
+        if (quotient < 0) {
+            throw new ArithmeticException("quotient does not fit into a long");
+        }
+        return quotient;
+    }
+
+    /**
+     * @param rest what is left of the division, 0 <= rest < divisor
+     */
+    private static long round(long quotient, long rest, long divisor, RoundingMode mode) {
+        if (rest == 0) {
+            return quotient;
+        }
+        switch (mode) {
+            case DOWN:
+            case FLOOR:
+                return quotient;
+            case UP:
+            case CEILING:
+                return quotient + 1;
+            case HALF_UP:
+                return rest >= divisor - rest ? quotient + 1 : quotient;
+            case HALF_DOWN:
+                return rest > divisor - rest ? quotient + 1 : quotient;
+            case HALF_EVEN:
+                long other = divisor - rest;
+                return rest > other || (rest == other && (quotient & 1) == 1) ? quotient + 1 : quotient;
+            default:
+                throw new ArithmeticException("rounding necessary");
+        }
+    }
+}
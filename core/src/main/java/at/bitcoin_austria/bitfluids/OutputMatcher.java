@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import javax.annotation.Nullable;
+
+/**
+ * decides whether an output script pays to one of our addresses or pubkeys.
+ * works directly on the scriptPubKey bytes and only allocates for a match.
+ * note the watched set does not know address types, so a P2SH or witness output
+ * matches if its hash160 equals a watched one.
+ */
+public final class OutputMatcher {
+    private final WatchedAddresses addresses;
+    private final WatchedPubKeys pubKeys;
+
+    public OutputMatcher(WatchedAddresses addresses, WatchedPubKeys pubKeys) {
+        this.addresses = addresses;
+        this.pubKeys = pubKeys;
+    }
+
+    public boolean matches(byte[] script, int offset, int length) {
+        ScriptTemplate template = ScriptTemplate.match(script, offset, length);
+        if (template.hasHash160()) {
+            return addresses.contains(script, offset + template.payloadOffset);
+        } else if (template == ScriptTemplate.PAY_TO_PUBKEY) {
+            return pubKeys.hash160Of(script, offset + 1, length - 2) != null;
+        }
+        return false;
+    }
+
+    /**
+     * @return a copy of the watched hash160 the script pays to, or null if it is not ours
+     */
+    @Nullable
+    public byte[] matchedHash160(byte[] script, int offset, int length) {
+        ScriptTemplate template = ScriptTemplate.match(script, offset, length);
+        if (template.hasHash160()) {
+            int hashOffset = offset + template.payloadOffset;
+            if (addresses.contains(script, hashOffset)) {
+                byte[] ret = new byte[WatchedAddresses.HASH160_LENGTH];
+                System.arraycopy(script, hashOffset, ret, 0, ret.length);
+                return ret;
+            }
+        } else if (template == ScriptTemplate.PAY_TO_PUBKEY) {
+            byte[] hash160 = pubKeys.hash160Of(script, offset + 1, length - 2);
+            if (hash160 != null) {
+                return hash160.clone();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * an HttpClient for use outside of android which keeps connections alive between requests,
+ * like AndroidHttpClient does. TLS sessions are resumed through the default SSLContext's session cache.
+ * several threads may use it at once, e.g. for hedged price requests.
+ * written against httpclient 4.2, where HttpParams are still the way to configure a client
+ * (RequestConfig only came with 4.3).
+ */
+public final class PooledHttpClient {
+    private static final int TIMEOUT_MILLIS = 20 * 1000;
+    private static final int MAX_CONNECTIONS = 8;
+    /**
+     * one spare for a hedged request
+     */
+    private static final int MAX_CONNECTIONS_PER_HOST = 2;
+
+    private PooledHttpClient() {
+    }
+
+    public static DefaultHttpClient newInstance(String userAgent) {
+        HttpParams params = new BasicHttpParams();
+        HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+        HttpProtocolParams.setUserAgent(params, userAgent);
+        HttpConnectionParams.setConnectionTimeout(params, TIMEOUT_MILLIS);
+        HttpConnectionParams.setSoTimeout(params, TIMEOUT_MILLIS);
+        HttpConnectionParams.setStaleCheckingEnabled(params, true);
+
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+        schemeRegistry.register(new Scheme("https", 443, SSLSocketFactory.getSocketFactory()));
+        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager(schemeRegistry);
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_HOST);
+        DefaultHttpClient client = new DefaultHttpClient(connectionManager, params);
+        client.setReuseStrategy(new BodilessKeepAliveStrategy());
+        return client;
+    }
+
+    /**
+     * httpcore closes the connection after a 304 or 204 without Content-Length, which is how most servers send them.
+     * these responses never have a body, so the connection can stay open unless the server says otherwise.
+     */
+    static final class BodilessKeepAliveStrategy extends DefaultConnectionReuseStrategy {
+        @Override
+        public boolean keepAlive(HttpResponse response, HttpContext context) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status != HttpStatus.SC_NOT_MODIFIED && status != HttpStatus.SC_NO_CONTENT) {
+                return super.keepAlive(response, context);
+            }
+            Header connection = response.getFirstHeader(HTTP.CONN_DIRECTIVE);
+            if (connection != null) {
+                return HTTP.CONN_KEEP_ALIVE.equalsIgnoreCase(connection.getValue().trim());
+            }
+            return !response.getProtocolVersion().lessEquals(HttpVersion.HTTP_1_0);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import at.bitcoin_austria.bitfluids.trafficSignal.Status;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * asks several price sources at once and combines their answers, so a single exchange
+ * being down or off does not stop us from selling.
+ * <ul>
+ * <li>all sources are queried in parallel, answers later than the timeout are ignored</li>
+ * <li>sources that did not answer after the hedge delay get a second request, the first answer wins</li>
+ * <li>prices further than maxDeviation from the median are dropped as outliers,
+ * the result is the median of the remaining ones</li>
+ * </ul>
+ */
+public class PriceAggregator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PriceAggregator.class);
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10 * 1000;
+    public static final long DEFAULT_HEDGE_MILLIS = 2 * 1000;
+    public static final double DEFAULT_MAX_DEVIATION = 0.05;
+
+    private final List<PriceSource> sources;
+    private final long timeoutMillis;
+    private final long hedgeMillis;
+    private final double maxDeviation;
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "price source");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public PriceAggregator(List<PriceSource> sources) {
+        this(sources, DEFAULT_TIMEOUT_MILLIS, DEFAULT_HEDGE_MILLIS, DEFAULT_MAX_DEVIATION);
+    }
+
+    public PriceAggregator(List<PriceSource> sources, long timeoutMillis, long hedgeMillis, double maxDeviation) {
+        Preconditions.checkArgument(!sources.isEmpty(), "need at least one price source");
+        this.sources = new ArrayList<PriceSource>(sources);
+        this.timeoutMillis = timeoutMillis;
+        this.hedgeMillis = hedgeMillis;
+        this.maxDeviation = maxDeviation;
+    }
+
+    public static class Result {
+        public final double eurPerBitcoin;
+        /**
+         * sources which answered in time and agreed with the others
+         */
+        public final int healthySources;
+        public final int totalSources;
+
+        Result(double eurPerBitcoin, int healthySources, int totalSources) {
+            this.eurPerBitcoin = eurPerBitcoin;
+            this.healthySources = healthySources;
+            this.totalSources = totalSources;
+        }
+
+        public Status getStatus() {
+            if (healthySources == totalSources) {
+                return Status.GREEN;
+            }
+            return healthySources > 0 ? Status.YELLOW : Status.RED;
+        }
+    }
+
+    /**
+     * blocks for at most the timeout
+     *
+     * @throws RemoteSystemFail if no source answered or they all disagree
+     */
+    public Result fetch() throws RemoteSystemFail {
+        int count = sources.size();
+        CompletionService<Double> completion = new ExecutorCompletionService<Double>(executor);
+        Map<Future<Double>, Integer> sourceOf = new HashMap<Future<Double>, Integer>();
+        int[] outstanding = new int[count];
+        double[] prices = new double[count];
+        boolean[] finished = new boolean[count];
+        boolean[] answered = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            sourceOf.put(completion.submit(fetchFrom(sources.get(i))), i);
+            outstanding[i]++;
+        }
+        long start = System.currentTimeMillis();
+        long deadline = start + timeoutMillis;
+        long hedgeAt = start + hedgeMillis;
+        boolean hedged = false;
+        int pending = count;
+        try {
+            while (pending > 0) {
+                long now = System.currentTimeMillis();
+                if (now >= deadline) {
+                    break;
+                }
+                if (!hedged && now >= hedgeAt) {
+                    hedged = true;
+                    for (int i = 0; i < count; i++) {
+                        if (!finished[i]) {
+                            LOGGER.info("hedging slow price source " + sources.get(i).getName());
+                            sourceOf.put(completion.submit(fetchFrom(sources.get(i))), i);
+                            outstanding[i]++;
+                        }
+                    }
+                }
+                long waitUntil = hedged ? deadline : Math.min(hedgeAt, deadline);
+                Future<Double> done = completion.poll(waitUntil - now, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    continue;
+                }
+                int source = sourceOf.get(done);
+                outstanding[source]--;
+                if (finished[source]) {
+                    continue; //the other request of a hedged pair was faster
+                }
+                try {
+                    prices[source] = done.get();
+                    answered[source] = true;
+                    finished[source] = true;
+                    pending--;
+                } catch (ExecutionException e) {
+                    LOGGER.warn("price source " + sources.get(source).getName() + " failed", e.getCause());
+                    if (outstanding[source] == 0) {
+                        finished[source] = true;
+                        pending--;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteSystemFail(e);
+        } finally {
+            for (Future<Double> future : sourceOf.keySet()) {
+                future.cancel(true);
+            }
+        }
+        return combine(prices, answered);
+    }
+
+    private Result combine(double[] prices, boolean[] answered) throws RemoteSystemFail {
+        double[] valid = new double[prices.length];
+        int n = 0;
+        for (int i = 0; i < prices.length; i++) {
+            if (answered[i] && prices[i] > 0) {
+                valid[n++] = prices[i];
+            }
+        }
+        if (n == 0) {
+            throw new RemoteSystemFail("no price source answered");
+        }
+        double median = median(valid, n);
+        double[] agreeing = new double[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (Math.abs(valid[i] - median) <= median * maxDeviation) {
+                agreeing[m++] = valid[i];
+            }
+        }
+        if (m == 0) {
+            throw new RemoteSystemFail("price sources disagree");
+        }
+        return new Result(median(agreeing, m), m, prices.length);
+    }
+
+    static double median(double[] values, int n) {
+        double[] sorted = new double[n];
+        System.arraycopy(values, 0, sorted, 0, n);
+        Arrays.sort(sorted);
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+    }
+
+    private static Callable<Double> fetchFrom(final PriceSource source) {
+        return new Callable<Double>() {
+            @Override
+            public Double call() throws RemoteSystemFail {
+                return source.fetchEurPerBitcoin();
+            }
+        };
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * the rounded bitcoin amounts a customer may be asked to pay after the next price move.
+ * for every item the current amount and its neighbouring steps (e.g. 0.151 and 0.153 around 0.152)
+ * are ranked by how far, in standard deviations, the price has to move until the step is shown.
+ */
+public class PriceLadder {
+    private static final long SATOSHIS_PER_BITCOIN = 100 * 1000 * 1000;
+
+    private final List<Item> items;
+    private final int significantFigures;
+    private final int stepsPerSide;
+
+    public static class Item {
+        public final FluidType type;
+        public final int quantity;
+
+        public Item(FluidType type, int quantity) {
+            this.type = type;
+            this.quantity = quantity;
+        }
+
+        public double getEuroPrice() {
+            return type.getEuroPrice() * quantity;
+        }
+
+        @Override
+        public String toString() {
+            return quantity + "x " + type;
+        }
+    }
+
+    public static class Step {
+        public final Item item;
+        public final Bitcoins amount;
+        /**
+         * price move needed until this step is shown, in standard deviations. 0 for the current amount
+         */
+        public final double sigmas;
+
+        Step(Item item, Bitcoins amount, double sigmas) {
+            this.item = item;
+            this.amount = amount;
+            this.sigmas = sigmas;
+        }
+
+        @Override
+        public String toString() {
+            return item + " " + amount + " (" + sigmas + " sigma)";
+        }
+    }
+
+    public PriceLadder(List<Item> items, int significantFigures, int stepsPerSide) {
+        this.items = new ArrayList<Item>(items);
+        this.significantFigures = significantFigures;
+        this.stepsPerSide = stepsPerSide;
+    }
+
+    /**
+     * @return the amount shown for the item at this price, rounded like the display
+     */
+    public Bitcoins currentAmount(Item item, double eurPerBitcoin) {
+        return Bitcoins.nearestValue(item.getEuroPrice() / eurPerBitcoin).roundToSignificantFigures(significantFigures);
+    }
+
+    /**
+     * @param relativeStdDev expected relative price move, see {@link VolatilityEstimator}
+     * @param maxSteps       how many steps to return at most
+     * @return the most likely steps of all items, most likely first. the current amounts come first
+     */
+    public List<Step> plan(double eurPerBitcoin, double relativeStdDev, int maxSteps) {
+        List<Step> steps = new ArrayList<Step>();
+        for (Item item : items) {
+            double exact = item.getEuroPrice() / eurPerBitcoin * SATOSHIS_PER_BITCOIN;
+            long current = currentAmount(item, eurPerBitcoin).toBigInteger().longValue();
+            steps.add(new Step(item, Bitcoins.valueOf(current), 0));
+            long previous = current;
+            for (int i = 0; i < stepsPerSide; i++) {
+                long next = round(previous + stepUnit(previous));
+                double edge = (previous + next) / 2.0;
+                steps.add(new Step(item, Bitcoins.valueOf(next), Math.abs(exact / edge - 1) / relativeStdDev));
+                previous = next;
+            }
+            previous = current;
+            for (int i = 0; i < stepsPerSide && previous > 1; i++) {
+                long next = round(previous - stepUnit(previous - 1));
+                if (next <= 0 || next >= previous) {
+                    break;
+                }
+                double edge = (previous + next) / 2.0;
+                steps.add(new Step(item, Bitcoins.valueOf(next), Math.abs(exact / edge - 1) / relativeStdDev));
+                previous = next;
+            }
+        }
+        Collections.sort(steps, new Comparator<Step>() {
+            @Override
+            public int compare(Step a, Step b) {
+                return Double.compare(a.sigmas, b.sigmas);
+            }
+        });
+        return steps.size() > maxSteps ? new ArrayList<Step>(steps.subList(0, maxSteps)) : steps;
+    }
+
+    private long round(long satoshis) {
+        return Bitcoins.valueOf(satoshis).roundToSignificantFigures(significantFigures).toBigInteger().longValue();
+    }
+
+    /**
+     * @return one unit in the last shown digit of the amount
+     */
+    private long stepUnit(long satoshis) {
+        int digits = Long.toString(satoshis).length();
+        long unit = 1;
+        for (int i = significantFigures; i < digits; i++) {
+            unit *= 10;
+        }
+        return unit;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import at.bitcoin_austria.bitfluids.trafficSignal.Status;
+import org.apache.http.client.HttpClient;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * the current BTC/EUR price. readers get the last known price immediately, fetching happens
+ * in the background (stale-while-revalidate). concurrent refreshes are collapsed into one request.
+ * the price itself comes from a {@link PriceAggregator}, the status turns yellow if only some of its sources answer.
+ *
+ * @author apetersson
+ */
+public class PriceService {
+    /**
+     * after this a price is refreshed in the background, but still used
+     */
+    private static final long FRESH_MILLIS = Utils.TEN_MINUTES_IN_MILLIS;
+    /**
+     * older prices are not used for selling anymore
+     */
+    private static final long MAX_AGE_MILLIS = 6 * Utils.TEN_MINUTES_IN_MILLIS;
+
+    private final AtomicReference<PriceSnapshot> lastSnapshot = new AtomicReference<PriceSnapshot>();
+    private final AtomicReference<FutureTask<PriceSnapshot>> inFlight = new AtomicReference<FutureTask<PriceSnapshot>>();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "price refresher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final PriceAggregator aggregator;
+    private final EventDispatcher events;
+    private final Clock clock;
+
+    /**
+     * asks the {@link TickerSource#defaults}
+     */
+    public PriceService(HttpClient httpClient, EventDispatcher events) {
+        this(new PriceAggregator(TickerSource.defaults(httpClient)), events);
+    }
+
+    /**
+     * @param events gets the {@link Events#PRICE_STATUS} after every refresh
+     */
+    public PriceService(PriceAggregator aggregator, EventDispatcher events) {
+        this(aggregator, events, Clock.SYSTEM);
+    }
+
+    /**
+     * @param clock ages the prices
+     */
+    public PriceService(PriceAggregator aggregator, EventDispatcher events, Clock clock) {
+        this.aggregator = aggregator;
+        this.events = events;
+        this.clock = clock;
+    }
+
+    /**
+     * never blocks. returns the last price and starts a background refresh if it is getting old.
+     *
+     * @throws RemoteSystemFail if there is no price yet or the last one is too old to sell with
+     */
+    public Double getEurQuote() throws RemoteSystemFail {
+        PriceSnapshot snapshot = lastSnapshot.get();
+        long now = clock.currentTimeMillis();
+        if (snapshot == null || snapshot.ageMillis(now) > FRESH_MILLIS) {
+            refresh();
+        }
+        if (snapshot == null || snapshot.ageMillis(now) > MAX_AGE_MILLIS) {
+            throw new RemoteSystemFail("no current exchange rate");
+        }
+        return snapshot.eurPerBitcoin;
+    }
+
+    /**
+     * blocks until a fresh price is there, for background tasks only.
+     * joins a refresh which is already running instead of starting another one.
+     */
+    public Double fetchEurQuote() throws RemoteSystemFail {
+        PriceSnapshot snapshot = lastSnapshot.get();
+        if (snapshot != null && snapshot.ageMillis(clock.currentTimeMillis()) <= FRESH_MILLIS) {
+            return snapshot.eurPerBitcoin;
+        }
+        try {
+            return refresh().get().eurPerBitcoin;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RemoteSystemFail) {
+                throw (RemoteSystemFail) e.getCause();
+            }
+            throw new RemoteSystemFail(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteSystemFail(e);
+        }
+    }
+
+    /**
+     * @return the last price, or null if there was none yet. O(1), never blocks
+     */
+    @Nullable
+    public PriceSnapshot getLastSnapshot() {
+        return lastSnapshot.get();
+    }
+
+    /**
+     * @throws RemoteSystemFail after {@link #shutdown()}
+     */
+    private Future<PriceSnapshot> refresh() throws RemoteSystemFail {
+        while (true) {
+            FutureTask<PriceSnapshot> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            FutureTask<PriceSnapshot> task = new FutureTask<PriceSnapshot>(new Callable<PriceSnapshot>() {
+                @Override
+                public PriceSnapshot call() throws RemoteSystemFail {
+                    return fetch();
+                }
+            }) {
+                @Override
+                protected void done() {
+                    inFlight.compareAndSet(this, null);
+                }
+            };
+            if (inFlight.compareAndSet(null, task)) {
+                try {
+                    refresher.execute(task);
+                } catch (RejectedExecutionException e) {
+                    //else everyone after us would wait for a task that never runs
+                    inFlight.compareAndSet(task, null);
+                    throw new RemoteSystemFail("price service is shut down");
+                }
+                return task;
+            }
+        }
+    }
+
+    private PriceSnapshot fetch() throws RemoteSystemFail {
+        PriceAggregator.Result result;
+        try {
+            result = aggregator.fetch();
+        } catch (RemoteSystemFail e) {
+            events.publish(Events.PRICE_STATUS, Status.RED);
+            throw e;
+        }
+        PriceSnapshot snapshot = new PriceSnapshot(result.eurPerBitcoin, clock.currentTimeMillis());
+        lastSnapshot.set(snapshot);
+        events.publish(Events.PRICE_STATUS, result.getStatus());
+        return snapshot;
+    }
+
+    public void shutdown() {
+        refresher.shutdownNow();
+        aggregator.shutdown();
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+/**
+ * an exchange rate and when we got it. immutable, so it can be handed between threads freely.
+ */
+public final class PriceSnapshot {
+    public final double eurPerBitcoin;
+    public final long timestamp;
+
+    public PriceSnapshot(double eurPerBitcoin, long timestamp) {
+        this.eurPerBitcoin = eurPerBitcoin;
+        this.timestamp = timestamp;
+    }
+
+    public long ageMillis(long now) {
+        return now - timestamp;
+    }
+}
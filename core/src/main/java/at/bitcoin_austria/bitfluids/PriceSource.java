@@ -17,8 +17,16 @@
 package at.bitcoin_austria.bitfluids;
 
 /**
- * @author apetersson
+ * somewhere to get a BTC/EUR price from, typically an exchange's ticker.
  */
-public interface Stats {
-    public void update(double tpm);
+public interface PriceSource {
+    String getName();
+
+    /**
+     * blocking
+     *
+     * @return euros per bitcoin
+     * @throws RemoteSystemFail if the source could not deliver a price
+     */
+    double fetchEurPerBitcoin() throws RemoteSystemFail;
 }
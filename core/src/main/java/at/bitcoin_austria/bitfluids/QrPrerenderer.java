@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * renders QR codes for payment URIs which will probably be needed soon, so switching to them is a cache lookup.
+ * rendering happens on a few low priority threads, the most likely URI first.
+ * a new plan replaces the previous one, codes of the old plan which were not started yet are dropped.
+ *
+ * @param <B> the rendered image, a Bitmap on android
+ */
+public class QrPrerenderer<B> {
+    public interface Renderer<B> {
+        @Nullable
+        B render(String uri);
+    }
+
+    private final LruCache<String, B> cache;
+    private final Renderer<B> renderer;
+    private final AtomicLong plan = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+
+    public QrPrerenderer(Renderer<B> renderer, int cacheSize, int threads) {
+        this.renderer = renderer;
+        cache = new LruCache<String, B>(cacheSize);
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "qr prerenderer");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * returns the prerendered code, renders it on the calling thread if it is not there yet
+     */
+    @Nullable
+    public B get(String uri) {
+        B ret = cache.get(uri);
+        if (ret == null) {
+            ret = renderer.render(uri);
+            if (ret != null) {
+                cache.put(uri, ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param uris most likely first
+     */
+    public void prerender(List<String> uris) {
+        long current = plan.incrementAndGet();
+        executor.getQueue().clear();
+        for (int i = 0; i < uris.size(); i++) {
+            executor.execute(new RenderTask(uris.get(i), current, i));
+        }
+    }
+
+    public LruCache<String, B> getCache() {
+        return cache;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private final class RenderTask implements Runnable, Comparable<RenderTask> {
+        private final String uri;
+        private final long plan;
+        private final int rank;
+
+        private RenderTask(String uri, long plan, int rank) {
+            this.uri = uri;
+            this.plan = plan;
+            this.rank = rank;
+        }
+
+        @Override
+        public void run() {
+            if (plan != QrPrerenderer.this.plan.get() || cache.containsKey(uri)) {
+                return;
+            }
+            B rendered = renderer.render(uri);
+            if (rendered != null) {
+                cache.put(uri, rendered);
+            }
+        }
+
+        @Override
+        public int compareTo(RenderTask other) {
+            if (plan != other.plan) {
+                return plan > other.plan ? -1 : 1;
+            }
+            return rank < other.rank ? -1 : (rank == other.rank ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.common.base.Preconditions;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+
+import java.util.Arrays;
+
+/**
+ * turns a QR code into ARGB pixels, laid out exactly like QRCodeWriter does
+ * (4 modules quiet zone, integer scaling, centered).
+ * the code is encoded at one pixel per module, each module row becomes one scanline built
+ * from runs of equal modules, which is then copied for the remaining lines of the module's height.
+ * QRCodeWriter instead builds a size*size BitMatrix which has to be read back pixel by pixel.
+ */
+public final class QrRasterizer {
+    private static final int QUIET_ZONE_SIZE = 4;
+
+    private final int dark;
+    private final int light;
+
+    /**
+     * @param dark  ARGB color of set modules
+     * @param light ARGB color of the background
+     */
+    public QrRasterizer(int dark, int light) {
+        this.dark = dark;
+        this.light = light;
+    }
+
+    /**
+     * @return the modules without quiet zone, 1 is dark
+     */
+    public static ByteMatrix encode(String contents, ErrorCorrectionLevel level) throws WriterException {
+        QRCode code = new QRCode();
+        Encoder.encode(contents, level, code);
+        return code.getMatrix();
+    }
+
+    /**
+     * @return width and height of the image for the requested size, larger if the code does not fit
+     */
+    public static int outputSize(ByteMatrix modules, int size) {
+        return Math.max(size, Math.max(modules.getWidth(), modules.getHeight()) + 2 * QUIET_ZONE_SIZE);
+    }
+
+    public int[] rasterize(ByteMatrix modules, int size) {
+        int outputSize = outputSize(modules, size);
+        int[] pixels = new int[outputSize * outputSize];
+        rasterize(modules, size, pixels);
+        return pixels;
+    }
+
+    /**
+     * fills the first outputSize * outputSize entries of pixels, row by row
+     */
+    public void rasterize(ByteMatrix modules, int size, int[] pixels) {
+        byte[][] rows = modules.getArray();
+        int inputWidth = modules.getWidth();
+        int inputHeight = modules.getHeight();
+        int qrWidth = inputWidth + 2 * QUIET_ZONE_SIZE;
+        int qrHeight = inputHeight + 2 * QUIET_ZONE_SIZE;
+        int width = Math.max(size, qrWidth);
+        int height = Math.max(size, qrHeight);
+        Preconditions.checkArgument(pixels.length >= width * height, "pixel buffer too small");
+        int multiple = Math.min(width / qrWidth, height / qrHeight);
+        int leftPadding = (width - inputWidth * multiple) / 2;
+        int topPadding = (height - inputHeight * multiple) / 2;
+
+        int offset = topPadding * width;
+        Arrays.fill(pixels, 0, offset, light);
+        for (int y = 0; y < inputHeight; y++) {
+            int lineStart = offset;
+            byte[] row = rows[y];
+            Arrays.fill(pixels, lineStart, lineStart + leftPadding, light);
+            int x = lineStart + leftPadding;
+            int m = 0;
+            while (m < inputWidth) {
+                byte module = row[m];
+                int runEnd = m + 1;
+                while (runEnd < inputWidth && row[runEnd] == module) {
+                    runEnd++;
+                }
+                int runPixels = (runEnd - m) * multiple;
+                Arrays.fill(pixels, x, x + runPixels, module == 1 ? dark : light);
+                x += runPixels;
+                m = runEnd;
+            }
+            Arrays.fill(pixels, x, lineStart + width, light);
+            offset += width;
+            for (int i = 1; i < multiple; i++) {
+                System.arraycopy(pixels, lineStart, pixels, offset, width);
+                offset += width;
+            }
+        }
+        Arrays.fill(pixels, offset, width * height, light);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.Utils;
+import com.google.common.base.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the sale addresses handed out last, with the drink each one sells, so they are watched again after a restart.
+ * the {@link ExpiringAddressIndex} only lives in memory, a customer paying to the code on the screen
+ * while the tablet restarts would go unnoticed without this.
+ * a ring of fixed size records in a file, written through on every append, rotations are rare.
+ * layout: magic (4), capacity (4), records appended so far (4), then per record the compressed
+ * public key (33) and the fluid type ordinal (1).
+ */
+public class SaleAddressLog {
+    static final int PUBLIC_KEY_SIZE = 33;
+    static final int RECORD_SIZE = PUBLIC_KEY_SIZE + 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int MAGIC = 0x42465331;
+    private static final FluidType[] FLUID_TYPES = FluidType.values();
+
+    private final RandomAccessFile file;
+    private final int capacity;
+    private int appended;
+
+    /**
+     * an address logged with its drink
+     */
+    public static final class Entry {
+        public final byte[] publicKey;
+        public final FluidType type;
+
+        Entry(byte[] publicKey, FluidType type) {
+            this.publicKey = publicKey;
+            this.type = type;
+        }
+    }
+
+    /**
+     * @param capacity the newest addresses kept, a file of another capacity is started over
+     */
+    public SaleAddressLog(File file, int capacity) throws IOException {
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
+        this.capacity = capacity;
+        this.file = new RandomAccessFile(file, "rwd");
+        if (this.file.length() >= HEADER_SIZE && this.file.readInt() == MAGIC && this.file.readInt() == capacity) {
+            appended = this.file.readInt();
+            if (appended < 0) {
+                throw new IOException(file + " holds a negative count " + appended);
+            }
+        } else {
+            this.file.setLength(0);
+            this.file.writeInt(MAGIC);
+            this.file.writeInt(capacity);
+            this.file.writeInt(0);
+        }
+    }
+
+    public synchronized void append(byte[] publicKey, FluidType type) throws IOException {
+        Preconditions.checkArgument(publicKey.length == PUBLIC_KEY_SIZE, "not a compressed public key: %s bytes", publicKey.length);
+        file.seek(HEADER_SIZE + (long) (appended % capacity) * RECORD_SIZE);
+        file.write(publicKey);
+        file.writeByte(type.ordinal());
+        //the record is complete before it is counted
+        appended++;
+        file.seek(8);
+        file.writeInt(appended);
+    }
+
+    /**
+     * @return up to capacity of the newest addresses, oldest first
+     */
+    public synchronized List<Entry> read() throws IOException {
+        int count = Math.min(appended, capacity);
+        List<Entry> ret = new ArrayList<Entry>(count);
+        for (int i = appended - count; i < appended; i++) {
+            file.seek(HEADER_SIZE + (long) (i % capacity) * RECORD_SIZE);
+            byte[] publicKey = new byte[PUBLIC_KEY_SIZE];
+            file.readFully(publicKey);
+            int type = file.readUnsignedByte();
+            if (type >= FLUID_TYPES.length) {
+                throw new IOException("unknown fluid type " + type);
+            }
+            ret.add(new Entry(publicKey, FLUID_TYPES[type]));
+        }
+        return ret;
+    }
+
+    /**
+     * watches the logged addresses for another ttl of the index and adds their keys, call it before any new address is shown
+     *
+     * @return the number of addresses watched again
+     */
+    public int restore(ExpiringAddressIndex<FluidType> watched, WatchedPubKeys saleKeys, NetworkParameters params)
+            throws IOException {
+        List<Entry> entries = read();
+        for (Entry entry : entries) {
+            watched.watch(new Address(params, Utils.sha256hash160(entry.publicKey)), entry.type);
+            saleKeys.add(entry.publicKey);
+        }
+        return entries.size();
+    }
+
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * durable append-only log of sold items, in memory mapped segment files of fixed size records.
+ * <ul>
+ * <li>appends only write to the mapped segment, a background task forces all appends of the last
+ * commit interval to disk at once (group commit). {@link #flush()} forces immediately</li>
+ * <li>a full segment is forced and the next one started, only the newest segments are kept</li>
+ * <li>every record carries a CRC32, a torn record at the end of the log is dropped when opening</li>
+ * <li>records have a fixed size, so the newest items are read from the end without touching the rest</li>
+ * </ul>
+ * record layout: codec version (1), the item in {@link BinaryCodec} layout (53), CRC32 of the preceding bytes (4).
+ */
+public class SalesJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SalesJournal.class);
+
+    static final int RECORD_SIZE = 1 + BinaryCodec.TRANSACTION_ITEM_SIZE + 4;
+    private static final int PAYLOAD_SIZE = RECORD_SIZE - 4;
+    private static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x42464a31;
+    private static final String SUFFIX = ".journal";
+
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 16 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+    public static final long DEFAULT_COMMIT_MILLIS = 200;
+
+    private final File directory;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+    private final List<Long> segments;
+    private final ScheduledExecutorService committer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "journal commit");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final CRC32 crc = new CRC32();
+
+    private MappedByteBuffer current;
+    private int currentRecords;
+    private boolean dirty;
+
+    public static SalesJournal open(File directory) throws IOException {
+        return new SalesJournal(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_MAX_SEGMENTS, DEFAULT_COMMIT_MILLIS);
+    }
+
+    public SalesJournal(File directory, int recordsPerSegment, int maxSegments, long commitMillis) throws IOException {
+        Preconditions.checkArgument(recordsPerSegment > 0 && maxSegments > 0);
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxSegments = maxSegments;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            startSegment(1);
+        } else {
+            long last = segments.get(segments.size() - 1);
+            current = map(segmentFile(last));
+            currentRecords = recoverEnd(current);
+        }
+        committer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                commit();
+            }
+        }, commitMillis, commitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * the item is durable after the next group commit, or after {@link #flush()}
+     */
+    public synchronized void append(TransactionItem item) throws IOException {
+        if (currentRecords == recordsPerSegment) {
+            current.force();
+            startSegment(segments.get(segments.size() - 1) + 1);
+            deleteOldSegments();
+        }
+        encode(item);
+        current.position(HEADER_SIZE + currentRecords * RECORD_SIZE);
+        current.put(record);
+        currentRecords++;
+        dirty = true;
+    }
+
+    /**
+     * @return up to n of the newest items, oldest first
+     */
+    public synchronized List<TransactionItem> readRecent(int n) throws IOException {
+        List<TransactionItem> ret = new ArrayList<TransactionItem>(n);
+        ByteBuffer segment = current.duplicate();
+        int records = currentRecords;
+        int segmentIndex = segments.size() - 1;
+        while (ret.size() < n) {
+            for (int i = records - 1; i >= 0 && ret.size() < n; i--) {
+                segment.position(HEADER_SIZE + i * RECORD_SIZE);
+                segment.get(record);
+                TransactionItem item = checksumMatches() ? decode() : null;
+                if (item != null) {
+                    ret.add(item);
+                } else {
+                    LOGGER.warn("skipping corrupt journal record " + i + " in segment " + segments.get(segmentIndex));
+                }
+            }
+            if (--segmentIndex < 0) {
+                break;
+            }
+            //older segments are complete, otherwise the next one would not have been started
+            segment = map(segmentFile(segments.get(segmentIndex)));
+            records = recordsPerSegment;
+        }
+        Collections.reverse(ret);
+        return ret;
+    }
+
+    /**
+     * forces everything appended so far to disk
+     */
+    public void flush() {
+        commit();
+    }
+
+    public void close() {
+        committer.shutdown();
+        commit();
+    }
+
+    private void commit() {
+        MappedByteBuffer toForce;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            toForce = current;
+        }
+        //outside the lock, appends continue while the disk is busy
+        toForce.force();
+    }
+
+    private void encode(TransactionItem item) {
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        buf.put(BinaryCodec.VERSION);
+        BinaryCodec.writeTransactionItem(buf, item);
+        crc.reset();
+        crc.update(record, 0, PAYLOAD_SIZE);
+        buf.putInt((int) crc.getValue());
+    }
+
+    @Nullable
+    private TransactionItem decode() {
+        ByteBuffer buf = ByteBuffer.wrap(record, 1, BinaryCodec.TRANSACTION_ITEM_SIZE);
+        try {
+            return BinaryCodec.readTransactionItem(buf);
+        } catch (IOException e) {
+            LOGGER.warn(e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean checksumMatches() {
+        if (record[0] != BinaryCodec.VERSION) {
+            return false;
+        }
+        crc.reset();
+        crc.update(record, 0, PAYLOAD_SIZE);
+        return ByteBuffer.wrap(record, PAYLOAD_SIZE, 4).getInt() == (int) crc.getValue();
+    }
+
+    /**
+     * finds the number of intact records, a torn last record is zeroed so it gets overwritten
+     */
+    private int recoverEnd(MappedByteBuffer segment) {
+        //the written records are a prefix, the first unused slot is found by bisection on the version byte
+        int low = 0;
+        int high = recordsPerSegment;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segment.get(HEADER_SIZE + mid * RECORD_SIZE) == 0) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        int end = low;
+        ByteBuffer view = segment.duplicate();
+        while (end > 0) {
+            view.position(HEADER_SIZE + (end - 1) * RECORD_SIZE);
+            view.get(record);
+            if (checksumMatches()) {
+                break;
+            }
+            LOGGER.warn("dropping torn journal record " + (end - 1));
+            view.position(HEADER_SIZE + (end - 1) * RECORD_SIZE);
+            view.put(new byte[RECORD_SIZE]);
+            end--;
+        }
+        return end;
+    }
+
+    private void startSegment(long number) throws IOException {
+        File file = segmentFile(number);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.writeInt(MAGIC);
+            raf.writeInt(RECORD_SIZE);
+            raf.writeInt(recordsPerSegment);
+            raf.setLength(HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE);
+        } finally {
+            raf.close();
+        }
+        current = map(file);
+        currentRecords = 0;
+        segments.add(number);
+    }
+
+    private void deleteOldSegments() {
+        while (segments.size() > maxSegments) {
+            File oldest = segmentFile(segments.remove(0));
+            if (!oldest.delete()) {
+                LOGGER.warn("could not delete " + oldest);
+            }
+        }
+    }
+
+    private MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer ret = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (ret.getInt(0) != MAGIC || ret.getInt(4) != RECORD_SIZE || ret.getInt(8) != recordsPerSegment) {
+                throw new IOException(file + " is not a journal segment of this layout");
+            }
+            return ret;
+        } finally {
+            //the mapping stays valid after closing the file
+            raf.close();
+        }
+    }
+
+    private File segmentFile(long number) {
+        StringBuilder name = new StringBuilder(Long.toString(number));
+        while (name.length() < 12) {
+            name.insert(0, '0');
+        }
+        return new File(directory, name.append(SUFFIX).toString());
+    }
+
+    private static List<Long> listSegments(File directory) {
+        String[] names = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        List<Long> ret = new ArrayList<Long>();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                ret.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+/**
+ * the standard output script (scriptPubKey) forms we know how to pay to.
+ * matching works on the raw bytes and never throws, everything unknown is {@link #NONSTANDARD}.
+ */
+public enum ScriptTemplate {
+    /**
+     * OP_DUP OP_HASH160 [20] OP_EQUALVERIFY OP_CHECKSIG
+     */
+    PAY_TO_PUBKEY_HASH(3, 20),
+    /**
+     * OP_HASH160 [20] OP_EQUAL
+     */
+    PAY_TO_SCRIPT_HASH(2, 20),
+    /**
+     * OP_0 [20]
+     */
+    PAY_TO_WITNESS_PUBKEY_HASH(2, 20),
+    /**
+     * [33 or 65 byte pubkey] OP_CHECKSIG, the payload length depends on the key
+     */
+    PAY_TO_PUBKEY(1, -1),
+    NONSTANDARD(-1, -1);
+
+    private static final byte OP_0 = 0x00;
+    private static final byte OP_DUP = 0x76;
+    private static final byte OP_HASH160 = (byte) 0xa9;
+    private static final byte OP_EQUAL = (byte) 0x87;
+    private static final byte OP_EQUALVERIFY = (byte) 0x88;
+    private static final byte OP_CHECKSIG = (byte) 0xac;
+    private static final byte PUSH_20 = 0x14;
+
+    /**
+     * where the hash160 or pubkey starts in the script
+     */
+    public final int payloadOffset;
+    private final int payloadLength;
+
+    ScriptTemplate(int payloadOffset, int payloadLength) {
+        this.payloadOffset = payloadOffset;
+        this.payloadLength = payloadLength;
+    }
+
+    /**
+     * @return true if the payload is a hash160 that can be looked up in the {@link WatchedAddresses}
+     */
+    public boolean hasHash160() {
+        return payloadLength == WatchedAddresses.HASH160_LENGTH;
+    }
+
+    public static ScriptTemplate match(byte[] script, int offset, int length) {
+        switch (length) {
+            case 25:
+                if (script[offset] == OP_DUP && script[offset + 1] == OP_HASH160 && script[offset + 2] == PUSH_20
+                        && script[offset + 23] == OP_EQUALVERIFY && script[offset + 24] == OP_CHECKSIG) {
+                    return PAY_TO_PUBKEY_HASH;
+                }
+                break;
+            case 23:
+                if (script[offset] == OP_HASH160 && script[offset + 1] == PUSH_20 && script[offset + 22] == OP_EQUAL) {
+                    return PAY_TO_SCRIPT_HASH;
+                }
+                break;
+            case 22:
+                if (script[offset] == OP_0 && script[offset + 1] == PUSH_20) {
+                    return PAY_TO_WITNESS_PUBKEY_HASH;
+                }
+                break;
+            case 35:
+                if (script[offset] == 33 && (script[offset + 1] == 0x02 || script[offset + 1] == 0x03)
+                        && script[offset + 34] == OP_CHECKSIG) {
+                    return PAY_TO_PUBKEY;
+                }
+                break;
+            case 67:
+                if (script[offset] == 65 && script[offset + 1] == 0x04 && script[offset + 66] == OP_CHECKSIG) {
+                    return PAY_TO_PUBKEY;
+                }
+                break;
+            default:
+                break;
+        }
+        return NONSTANDARD;
+    }
+}
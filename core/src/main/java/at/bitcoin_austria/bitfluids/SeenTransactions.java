@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * bounded "have we seen this transaction already" set, used to suppress the duplicates
+ * every connected peer sends us.
+ * <p/>
+ * keys are the first 16 bytes of the transaction hash, stored as two longs in plain arrays,
+ * so memory use is fixed at construction time and does not depend on the GC.
+ * the set is split into stripes by hash, each with its own lock, so peer threads
+ * rarely wait for each other. every stripe keeps two generations: when the current one is full
+ * the previous one is dropped, so a stripe always remembers at least the last
+ * capacity/stripes hashes that fell into it.
+ */
+public final class SeenTransactions {
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes;
+
+    /**
+     * @param capacity roughly the number of most recent transactions that are remembered for sure.
+     *                 up to twice as many are kept.
+     */
+    public SeenTransactions(int capacity) {
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive, was %s", capacity);
+        int perStripe = (capacity + STRIPES - 1) / STRIPES;
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * @return true if the hash was not seen before. only one of several concurrent callers
+     *         with the same hash gets true.
+     */
+    public boolean add(Sha256Hash hash) {
+        return add(hash.getBytes(), 0);
+    }
+
+    public boolean add(byte[] hash, int offset) {
+        long k0 = readLong(hash, offset);
+        long k1 = readLong(hash, offset + 8);
+        if (k0 == 0 && k1 == 0) {
+            k1 = 1; //zero is the empty marker
+        }
+        return stripeFor(k0).add(k0, k1);
+    }
+
+    public boolean contains(Sha256Hash hash) {
+        byte[] bytes = hash.getBytes();
+        long k0 = readLong(bytes, 0);
+        long k1 = readLong(bytes, 8);
+        if (k0 == 0 && k1 == 0) {
+            k1 = 1;
+        }
+        return stripeFor(k0).contains(k0, k1);
+    }
+
+    private Stripe stripeFor(long k0) {
+        return stripes[(int) (k0 >>> 60)];
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long ret = 0;
+        for (int i = 0; i < 8; i++) {
+            ret = (ret << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return ret;
+    }
+
+    private static final class Stripe {
+        private final int generationSize;
+        private final int mask;
+        private long[] current;
+        private long[] previous;
+        private int currentCount;
+
+        Stripe(int generationSize) {
+            this.generationSize = generationSize;
+            int slots = 4;
+            while (slots < generationSize * 2) {
+                slots <<= 1;
+            }
+            mask = slots - 1;
+            current = new long[slots * 2];
+            previous = new long[slots * 2];
+        }
+
+        synchronized boolean add(long k0, long k1) {
+            if (find(current, k0, k1) >= 0 || find(previous, k0, k1) >= 0) {
+                return false;
+            }
+            if (currentCount == generationSize) {
+                long[] recycled = previous;
+                Arrays.fill(recycled, 0);
+                previous = current;
+                current = recycled;
+                currentCount = 0;
+            }
+            int slot = -find(current, k0, k1) - 1;
+            current[slot * 2] = k0;
+            current[slot * 2 + 1] = k1;
+            currentCount++;
+            return true;
+        }
+
+        synchronized boolean contains(long k0, long k1) {
+            return find(current, k0, k1) >= 0 || find(previous, k0, k1) >= 0;
+        }
+
+        /**
+         * @return the slot of the key, or (-slot - 1) of the empty slot where it would go
+         */
+        private int find(long[] table, long k0, long k1) {
+            //the top bits select the stripe, so take the slot from the low bits
+            int slot = (int) k1 & mask;
+            while (true) {
+                long s0 = table[slot * 2];
+                long s1 = table[slot * 2 + 1];
+                if (s0 == k0 && s1 == k1) {
+                    return slot;
+                }
+                if (s0 == 0 && s1 == 0) {
+                    return -slot - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+/**
+ * network throughput at one point in time, all rates in transactions per minute.
+ */
+public final class StatsSnapshot {
+    public final double perMinute1;
+    public final double perMinute5;
+    public final double perMinute60;
+    /**
+     * most transactions seen within one minute so far
+     */
+    public final long peakPerMinute;
+    /**
+     * most transactions seen within one second so far
+     */
+    public final int peakPerSecond;
+
+    public StatsSnapshot(double perMinute1, double perMinute5, double perMinute60, long peakPerMinute, int peakPerSecond) {
+        this.perMinute1 = perMinute1;
+        this.perMinute5 = perMinute5;
+        this.perMinute60 = perMinute60;
+        this.peakPerMinute = peakPerMinute;
+        this.peakPerSecond = peakPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "tpm 1m=" + perMinute1 + " 5m=" + perMinute5 + " 1h=" + perMinute60
+                + " peak/min=" + peakPerMinute + " peak/s=" + peakPerSecond;
+    }
+}
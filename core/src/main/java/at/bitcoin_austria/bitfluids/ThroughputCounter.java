@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import java.util.Arrays;
+
+/**
+ * counts events (transactions) in a ring of one-second buckets covering the last hour,
+ * with running sums for the 1 minute, 5 minute and 1 hour windows.
+ * recording is O(1) and does not allocate, old buckets are cleared as the clock moves on.
+ */
+public final class ThroughputCounter {
+    private static final int SECONDS = 60 * 60;
+    private static final int ONE_MINUTE = 60;
+    private static final int FIVE_MINUTES = 5 * 60;
+
+    private final int[] buckets = new int[SECONDS];
+    private final long startSecond;
+    private long currentSecond;
+    private long sum1;
+    private long sum5;
+    private long sum60;
+    private long peakPerMinute;
+    private int peakPerSecond;
+
+    public ThroughputCounter(long startMillis) {
+        startSecond = startMillis / 1000;
+        currentSecond = startSecond;
+    }
+
+    /**
+     * @return true if this was the first event in a new second, a good moment to publish a {@link #snapshot(long)}
+     */
+    public synchronized boolean record(long nowMillis) {
+        boolean newSecond = advanceTo(nowMillis / 1000);
+        //if the clock went backwards the event is counted for the current second
+        int index = index(currentSecond);
+        buckets[index]++;
+        sum1++;
+        sum5++;
+        sum60++;
+        peakPerSecond = Math.max(peakPerSecond, buckets[index]);
+        peakPerMinute = Math.max(peakPerMinute, sum1);
+        return newSecond;
+    }
+
+    public synchronized StatsSnapshot snapshot(long nowMillis) {
+        advanceTo(nowMillis / 1000);
+        return new StatsSnapshot(perMinute(sum1, ONE_MINUTE), perMinute(sum5, FIVE_MINUTES),
+                perMinute(sum60, SECONDS), peakPerMinute, peakPerSecond);
+    }
+
+    /**
+     * while the counter is younger than a window, the rate is taken over the time it ran
+     */
+    private double perMinute(long sum, int windowSeconds) {
+        long elapsed = Math.min(windowSeconds, currentSecond - startSecond + 1);
+        return sum * 60.0 / elapsed;
+    }
+
+    private boolean advanceTo(long second) {
+        if (second <= currentSecond) {
+            return false;
+        }
+        if (second - currentSecond >= SECONDS) {
+            Arrays.fill(buckets, 0);
+            sum1 = 0;
+            sum5 = 0;
+            sum60 = 0;
+            currentSecond = second;
+            return true;
+        }
+        while (currentSecond < second) {
+            currentSecond++;
+            //drop the buckets that just fell out of each window
+            sum1 -= buckets[index(currentSecond - ONE_MINUTE)];
+            sum5 -= buckets[index(currentSecond - FIVE_MINUTES)];
+            int recycled = index(currentSecond);
+            sum60 -= buckets[recycled];
+            buckets[recycled] = 0;
+        }
+        return true;
+    }
+
+    /**
+     * the second before a window can be negative, e.g. for a replay clock starting at 0
+     */
+    private static int index(long second) {
+        return (int) (((second % SECONDS) + SECONDS) % SECONDS);
+    }
+}
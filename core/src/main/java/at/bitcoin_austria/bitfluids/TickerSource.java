@@ -0,0 +1,232 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.apache.http.Header;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ExecutionContext;
+import org.json.JSONException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * reads the price from a JSON ticker over HTTP(S).
+ * the path names the nested keys leading to the price, e.g. "return.avg.value" for mtgox.
+ * the response is parsed while it streams in, see {@link JsonPathExtractor}.
+ * requests are conditional on the ETag / Last-Modified of the last answer, a 304 reuses the last price.
+ * pass a pooling client (AndroidHttpClient or {@link PooledHttpClient}) so connections are kept alive.
+ * the {@link HttpStats} are logged after every request, they show whether both pay off.
+ * the sources in use come from {@link #CONFIG_FILE} in the data directory, or {@link #defaults} without it.
+ */
+public class TickerSource implements PriceSource {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TickerSource.class);
+    public static final String MTGOX_PATH = "return.avg.value";
+    /**
+     * one source per line, "name url path", blank lines and lines starting with # are skipped
+     */
+    public static final String CONFIG_FILE = "tickers";
+
+    private final String name;
+    private final HttpClient httpClient;
+    private final String url;
+    private final JsonPathExtractor extractor;
+    private final AtomicReference<CachedQuote> lastQuote = new AtomicReference<CachedQuote>();
+    private final HttpStats stats = new HttpStats();
+
+    public TickerSource(String name, HttpClient httpClient, String url, String path) {
+        this.name = name;
+        this.httpClient = httpClient;
+        this.url = url;
+        extractor = new JsonPathExtractor(path);
+    }
+
+    public static TickerSource mtgox(HttpClient httpClient) {
+        return new TickerSource("mtgox", httpClient, Utils.MTGOX_BTCEUR, MTGOX_PATH);
+    }
+
+    /**
+     * independent exchanges, so the {@link PriceAggregator} has a median to work with
+     */
+    public static List<PriceSource> defaults(HttpClient httpClient) {
+        List<PriceSource> ret = new ArrayList<PriceSource>();
+        ret.add(new TickerSource("bitstamp", httpClient, Utils.BITSTAMP_BTCEUR, "last"));
+        ret.add(new TickerSource("coinbase", httpClient, Utils.COINBASE_BTCEUR, "data.amount"));
+        ret.add(new TickerSource("blockchain.info", httpClient, Utils.BLOCKCHAIN_INFO_TICKER, "EUR.last"));
+        return ret;
+    }
+
+    /**
+     * the sources listed in {@link #CONFIG_FILE} in the data directory, the {@link #defaults} if there is none
+     */
+    public static List<PriceSource> configured(File dataDir, HttpClient httpClient) throws IOException {
+        File file = new File(dataDir, CONFIG_FILE);
+        if (!file.isFile()) {
+            return defaults(httpClient);
+        }
+        List<PriceSource> ret = new ArrayList<PriceSource>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    String[] parts = line.split("\\s+");
+                    if (parts.length != 3) {
+                        throw new IOException(file + ": not \"name url path\": " + line);
+                    }
+                    ret.add(new TickerSource(parts[0], httpClient, parts[1], parts[2]));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (ret.isEmpty()) {
+            throw new IOException(file + " lists no price source");
+        }
+        return ret;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public double fetchEurPerBitcoin() throws RemoteSystemFail {
+        HttpGet httpGet = new HttpGet(url);
+        CachedQuote cached = lastQuote.get();
+        if (cached != null) {
+            if (cached.etag != null) {
+                httpGet.setHeader("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified != null) {
+                httpGet.setHeader("If-Modified-Since", cached.lastModified);
+            }
+        }
+        ReuseTrackingContext context = new ReuseTrackingContext();
+        long start = System.currentTimeMillis();
+        boolean success = false;
+        boolean notModified = false;
+        try {
+            HttpResponse httpResponse = httpClient.execute(httpGet, context);
+            StatusLine statusLine = httpResponse.getStatusLine();
+            if (statusLine.getStatusCode() == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+                success = true;
+                notModified = true;
+                return cached.eurPerBitcoin;
+            } else if (statusLine.getStatusCode() == HttpStatus.SC_OK) {
+                InputStream content = httpResponse.getEntity().getContent();
+                double price;
+                try {
+                    price = extractor.extractDouble(content);
+                } finally {
+                    //drains the small rest of the response, so the connection can be reused
+                    content.close();
+                }
+                lastQuote.set(new CachedQuote(price, header(httpResponse, "ETag"), header(httpResponse, "Last-Modified")));
+                success = true;
+                return price;
+            } else {
+                HttpEntity entity = httpResponse.getEntity();
+                if (entity != null) {
+                    entity.getContent().close();
+                }
+                throw new RemoteSystemFail(name + " ERROR: " + statusLine.getReasonPhrase());
+            }
+        } catch (ClientProtocolException e) {
+            throw new RemoteSystemFail(e);
+        } catch (IOException e) {
+            throw new RemoteSystemFail(e);
+        } catch (JSONException e) {
+            throw new RemoteSystemFail(e);
+        } finally {
+            stats.record(System.currentTimeMillis() - start, success, context.connectionReused, notModified);
+            LOGGER.info(name + " " + stats);
+        }
+    }
+
+    public HttpStats getStats() {
+        return stats;
+    }
+
+    @Nullable
+    private static String header(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + url;
+    }
+
+    private static final class CachedQuote {
+        private final double eurPerBitcoin;
+        @Nullable
+        private final String etag;
+        @Nullable
+        private final String lastModified;
+
+        private CachedQuote(double eurPerBitcoin, @Nullable String etag, @Nullable String lastModified) {
+            this.eurPerBitcoin = eurPerBitcoin;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * notes whether the connection handed out for the request had served requests before.
+     * it has to be checked when the client puts it into the context, a response without body
+     * (like a 304) releases the connection before execute returns.
+     */
+    private static final class ReuseTrackingContext extends BasicHttpContext {
+        private volatile boolean connectionReused;
+
+        @Override
+        public void setAttribute(String id, Object obj) {
+            super.setAttribute(id, obj);
+            if (ExecutionContext.HTTP_CONNECTION.equals(id) && obj instanceof HttpConnection) {
+                HttpConnection connection = (HttpConnection) obj;
+                try {
+                    connectionReused = connection.isOpen() && connection.getMetrics().getRequestCount() > 0;
+                } catch (RuntimeException e) {
+                    //connection not usable yet, it cannot have been reused either
+                    connectionReused = false;
+                }
+            }
+        }
+    }
+}
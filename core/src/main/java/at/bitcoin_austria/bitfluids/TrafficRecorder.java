@@ -0,0 +1,227 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Block;
+import com.google.bitcoin.core.Message;
+import com.google.bitcoin.core.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * writes the transaction and block messages reaching the listener to a file, for {@link TrafficReplayer}.
+ * <p/>
+ * the file starts with a magic number, a version byte and the time of the first record.
+ * each record is the type byte, the milliseconds since the previous record and the payload length as
+ * unsigned varints, followed by the raw message payload. the same transaction from four peers
+ * is recorded four times, just like it reaches us.
+ * a recording cut short by a crash is read up to the last complete record.
+ */
+public class TrafficRecorder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    public static final int MAGIC = 0x42465452; //"BFTR"
+    public static final byte VERSION = 1;
+    public static final int TYPE_TRANSACTION = 1;
+    public static final int TYPE_BLOCK = 2;
+    /**
+     * larger than any block, a longer record means the file is broken
+     */
+    static final int MAX_PAYLOAD = 32 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final Clock clock;
+    private long lastMillis = -1;
+    private boolean failed;
+
+    public TrafficRecorder(File file, Clock clock) throws IOException {
+        this.clock = clock;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    /**
+     * records transactions and blocks, ignores all other messages. called from the peer threads
+     */
+    public void record(Message message) {
+        if (message instanceof Transaction) {
+            record(TYPE_TRANSACTION, message.bitcoinSerialize());
+        } else if (message instanceof Block) {
+            record(TYPE_BLOCK, message.bitcoinSerialize());
+        }
+    }
+
+    public synchronized void record(int type, byte[] payload) {
+        if (failed) {
+            return;
+        }
+        try {
+            long now = clock.currentTimeMillis();
+            if (lastMillis < 0) {
+                out.writeLong(now);
+                lastMillis = now;
+            }
+            out.writeByte(type);
+            //the clock may be set back, the replay then just does not wait
+            writeVarInt(out, Math.max(0, now - lastMillis));
+            writeVarInt(out, payload.length);
+            out.write(payload);
+            lastMillis = Math.max(lastMillis, now);
+        } catch (IOException e) {
+            //the peers must not notice, recording just stops
+            LOGGER.error("could not record, recording stopped", e);
+            failed = true;
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            LOGGER.error("could not finish the recording", e);
+        }
+    }
+
+    public static Reader open(File file) throws IOException {
+        return new Reader(file);
+    }
+
+    /**
+     * reads one record after the other, the payload buffer is reused
+     */
+    public static final class Reader {
+        private final DataInputStream in;
+        private long timeMillis = -1;
+        private int type;
+        private byte[] payload = new byte[BUFFER_SIZE];
+        private int length;
+
+        private Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(file + " is not a traffic recording");
+                }
+                byte version = in.readByte();
+                if (version != VERSION) {
+                    throw new IOException("unknown recording version " + version + " in " + file);
+                }
+            } catch (EOFException e) {
+                in.close();
+                throw new IOException(file + " is not a traffic recording");
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return false at the end, also if the last record was cut short
+         */
+        public boolean next() throws IOException {
+            try {
+                if (timeMillis < 0) {
+                    timeMillis = in.readLong();
+                }
+                int nextType = in.read();
+                if (nextType < 0) {
+                    return false;
+                }
+                long delta = readVarInt(in, in.readUnsignedByte());
+                int nextLength = (int) readVarInt(in, in.readUnsignedByte());
+                if (nextLength < 0 || nextLength > MAX_PAYLOAD) {
+                    throw new IOException("broken recording, record of " + nextLength + " bytes");
+                }
+                if (nextLength > payload.length) {
+                    payload = new byte[Math.max(nextLength, 2 * payload.length)];
+                }
+                in.readFully(payload, 0, nextLength);
+                type = nextType;
+                timeMillis += delta;
+                length = nextLength;
+                return true;
+            } catch (EOFException e) {
+                LOGGER.warn("recording ends with an incomplete record");
+                return false;
+            }
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * @return when the message was received
+         */
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        /**
+         * @return the message, in the first {@link #getLength()} bytes. only valid until the next record
+         */
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * @param first the first byte, already read
+     */
+    private static long readVarInt(DataInputStream in, int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            if (shift > 63) {
+                throw new IOException("broken recording, varint too long");
+            }
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Block;
+import com.google.bitcoin.core.ProtocolException;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.Transaction;
+import com.google.bitcoin.store.BlockStoreException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * feeds a {@link TrafficRecorder} file through the listener, with the recorded timing or faster,
+ * and reports how much traffic the listener keeps up with and where the time goes.
+ * nothing is sent to the network, the price is fixed and the listener sees the recorded time.
+ * <p/>
+ * usage: TrafficReplayer recording [1|10|max] [PROD|TEST] [eur per bitcoin]
+ */
+public class TrafficReplayer {
+    private static final String USAGE = "usage: TrafficReplayer recording [1|10|max] [PROD|TEST] [eur per bitcoin]";
+
+    private final Environment env;
+    private final double speed;
+    private final double eurPerBitcoin;
+    private final ReplayClock clock = new ReplayClock();
+
+    private final Samples[] lag = {new Samples(), new Samples()};
+    private final Samples[] parse = {new Samples(), new Samples()};
+    private final Samples[] process = {new Samples(), new Samples()};
+    private int payments;
+    private int failed;
+
+    /**
+     * @param speed how much faster than recorded, {@link Double#POSITIVE_INFINITY} for as fast as possible
+     */
+    public TrafficReplayer(Environment env, double speed, double eurPerBitcoin) {
+        this.env = env;
+        this.speed = speed;
+        this.eurPerBitcoin = eurPerBitcoin;
+    }
+
+    public void replay(File recording, File dataDir) throws IOException, BlockStoreException {
+        EventDispatcher events = new EventDispatcher();
+        PriceSource fixedPrice = new PriceSource() {
+            @Override
+            public String getName() {
+                return "fixed";
+            }
+
+            @Override
+            public double fetchEurPerBitcoin() {
+                return eurPerBitcoin;
+            }
+        };
+        PriceService priceService = new PriceService(
+                new PriceAggregator(Collections.singletonList(fixedPrice)), events, clock);
+        WatchedAddresses fixedKeys = BitcoinTransactionListener.fixedKeys(env);
+        BitcoinTransactionListener listener = new BitcoinTransactionListener(env, dataDir, events,
+                fixedKeys, WatchedPubKeys.hashing(fixedKeys), clock);
+        TxNotifier notifier = new Tx2FluidsAdapter(priceService, env).convert(new FluidsNotifier() {
+            @Override
+            public void onFluidPaid(TransactionItem transactionItem) {
+                payments++;
+            }
+
+            @Override
+            public void onError(String message, FluidType type, Bitcoins bitcoins, Sha256Hash hash) {
+                failed++;
+            }
+        });
+        TrafficRecorder.Reader reader = TrafficRecorder.open(recording);
+        try {
+            listener.openChain();
+            replay(reader, listener, priceService, notifier);
+        } finally {
+            reader.close();
+            listener.shutdown();
+            priceService.shutdown();
+            events.shutdown();
+        }
+    }
+
+    private void replay(TrafficRecorder.Reader reader, BitcoinTransactionListener listener, PriceService priceService,
+                        TxNotifier notifier) throws IOException {
+        long firstMillis = -1;
+        long lastMillis = -1;
+        long startNanos = System.nanoTime();
+        while (reader.next()) {
+            long recorded = reader.getTimeMillis();
+            if (firstMillis < 0) {
+                firstMillis = recorded;
+                //the quote never blocks, so the first payment needs a price from the recorded time
+                clock.now = recorded;
+                try {
+                    priceService.fetchEurQuote();
+                } catch (RemoteSystemFail e) {
+                    throw new IllegalStateException(e);
+                }
+                startNanos = System.nanoTime();
+            }
+            lastMillis = recorded;
+            long dueNanos = startNanos + (long) ((recorded - firstMillis) * 1000000 / speed);
+            long now = System.nanoTime();
+            while (now < dueNanos) {
+                LockSupport.parkNanos(dueNanos - now);
+                now = System.nanoTime();
+            }
+            clock.now = recorded;
+            byte[] payload = new byte[reader.getLength()];
+            System.arraycopy(reader.getPayload(), 0, payload, 0, payload.length);
+            int stage = reader.getType() == TrafficRecorder.TYPE_BLOCK ? 1 : 0;
+            try {
+                long parsed;
+                if (stage == 1) {
+                    Block block = new Block(env.getNetworkParams(), payload);
+                    parsed = System.nanoTime();
+                    listener.processBlock(block, notifier);
+                } else {
+                    Transaction transaction = new Transaction(env.getNetworkParams(), payload);
+                    parsed = System.nanoTime();
+                    listener.processTransaction(transaction, notifier);
+                }
+                lag[stage].add(now - dueNanos);
+                parse[stage].add(parsed - now);
+                process[stage].add(System.nanoTime() - parsed);
+            } catch (ProtocolException e) {
+                System.err.println("skipping unparseable message: " + e.getMessage());
+            }
+        }
+        report(System.nanoTime() - startNanos, lastMillis - firstMillis);
+    }
+
+    private void report(long wallNanos, long recordedMillis) {
+        int transactions = parse[0].size;
+        int blocks = parse[1].size;
+        double wallSeconds = wallNanos / 1e9;
+        System.out.println("messages:     " + (transactions + blocks) + " (" + transactions + " transactions, "
+                + blocks + " blocks)");
+        System.out.println("payments:     " + payments + (failed > 0 ? ", " + failed + " without price" : ""));
+        System.out.println("recorded:     " + recordedMillis / 1000.0 + " s, replayed in " + wallSeconds + " s");
+        System.out.println("sustained:    " + (long) ((transactions + blocks) / wallSeconds) + " msg/s, "
+                + (long) (transactions / wallSeconds) + " tx/s");
+        String[] types = {"tx", "block"};
+        for (int i = 0; i < types.length; i++) {
+            if (parse[i].size > 0) {
+                System.out.println(types[i] + " lag:     " + lag[i].summary());
+                System.out.println(types[i] + " parse:   " + parse[i].summary());
+                System.out.println(types[i] + " process: " + process[i].summary());
+            }
+        }
+    }
+
+    /**
+     * the recorded time of the message being replayed
+     */
+    private static final class ReplayClock implements Clock {
+        private volatile long now;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    /**
+     * nanosecond durations, sorted only for the report
+     */
+    private static final class Samples {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                long[] grown = new long[size * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = nanos;
+        }
+
+        String summary() {
+            Arrays.sort(values, 0, size);
+            return "p50 " + micros(0.5) + " us, p90 " + micros(0.9) + " us, p99 " + micros(0.99)
+                    + " us, max " + values[size - 1] / 1000 + " us";
+        }
+
+        private long micros(double quantile) {
+            return values[(int) Math.min(size - 1, Math.floor(quantile * size))] / 1000;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, BlockStoreException {
+        if (args.length < 1 || args.length > 4) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        File recording = new File(args[0]);
+        double speed = 1;
+        if (args.length > 1) {
+            speed = args[1].equalsIgnoreCase("max") ? Double.POSITIVE_INFINITY : Double.parseDouble(args[1]);
+        }
+        Environment env = args.length > 2 ? Environment.valueOf(args[2].toUpperCase()) : Environment.PROD;
+        double eurPerBitcoin = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+        //a fresh header store, the recorded blocks must not end up in the real one
+        File dataDir = File.createTempFile("replay", "");
+        if (!dataDir.delete() || !dataDir.mkdir()) {
+            throw new IOException("cannot create " + dataDir);
+        }
+        try {
+            new TrafficReplayer(env, speed, eurPerBitcoin).replay(recording, dataDir);
+        } finally {
+            File[] files = dataDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dataDir.delete();
+        }
+    }
+}
@@ -18,12 +18,16 @@ package at.bitcoin_austria.bitfluids;
 
 import com.google.bitcoin.core.Sha256Hash;
 
-import java.io.Serializable;
+import javax.annotation.Nullable;
 
 /**
  * @author apetersson
  */
-public class TransactionItem implements Serializable {
+public class TransactionItem {
+    /**
+     * the count of a payment which arrived while there was no price, see {@link #unpriced}
+     */
+    public static final int UNPRICED = -1;
 
     public final Bitcoins paid;
     public final int count;
@@ -39,6 +43,17 @@ public class TransactionItem implements Serializable {
         this.hash = hash;
     }
 
+    /**
+     * journaled and shown like a sale, with its real hash so it is not reported again after a restart
+     */
+    public static TransactionItem unpriced(@Nullable FluidType fluidType, Bitcoins paid, Sha256Hash hash) {
+        return new TransactionItem(fluidType, paid, UNPRICED, Double.NaN, hash);
+    }
+
+    public boolean isPriced() {
+        return count != UNPRICED;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -58,10 +73,16 @@ public class TransactionItem implements Serializable {
 
     @Override
     public String toString() {
+        if (!isPriced()) {
+            return paid + " BTC ohne Kurs " + fluidType + " tx " + hash.toString().substring(0, 4);
+        }
         return count + " Stück " + fluidType + " tx " + hash.toString().substring(0, 4);
     }
 
     public String buildSentence() {
+        if (!isPriced()) {
+            return "Ihre " + paid.toString() + " Bitcoins sind angekommen, aber der Kurs fehlt gerade. Bitte beim Personal melden.";
+        }
         if (count == 0) {
             return "Sie Geizkragen, das waren nur " + paid.toString() + " Bitcoins " + fluidType.getDescription() + " kostet mehr!";
         }
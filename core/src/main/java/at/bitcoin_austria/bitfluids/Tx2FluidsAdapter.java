@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.Sha256Hash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * this is an Adapter between a transaction notifier
+ * which is easily providable from bitcoinj and a FluidsNotifier which is needed in the UI code.
+ * does some custom rounding (within 2%) for clearer display for the user..
+ *
+ * @author apetersson
+ */
+public class Tx2FluidsAdapter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Tx2FluidsAdapter.class);
+
+    private final PriceService priceService;
+
+    private final ExpiringAddressIndex<FluidType> lookup;
+
+    public Tx2FluidsAdapter(PriceService priceService, Environment environment) {
+        //nothing expires in there, so the ttl does not matter
+        this(priceService, fixedKeys(environment, 1, Clock.SYSTEM));
+    }
+
+    /**
+     * @param lookup what each watched address sells, the same index the listener watches
+     */
+    public Tx2FluidsAdapter(PriceService priceService, ExpiringAddressIndex<FluidType> lookup) {
+        this.priceService = priceService;
+        this.lookup = lookup;
+    }
+
+    /**
+     * @return an index watching the two fixed addresses of the environment forever,
+     *         per sale addresses are added with the given ttl
+     */
+    public static ExpiringAddressIndex<FluidType> fixedKeys(Environment environment, long ttlMillis, Clock clock) {
+        ExpiringAddressIndex<FluidType> ret = new ExpiringAddressIndex<FluidType>(ttlMillis, clock);
+        ret.watchForever(environment.getKey200(), FluidType.MATE);
+        ret.watchForever(environment.getKey150(), FluidType.COLA);
+        return ret;
+    }
+
+
+    public TxNotifier convert(final FluidsNotifier fluidsNotifier) {
+        return new TxNotifier() {
+            @Override
+            public void onValue(Bitcoins bitcoins, Address key, Sha256Hash hash) {
+                FluidType type = lookup.get(key);
+                if (type == null) {
+                    //it expired between the listener matching it and here, the money arrived all the same
+                    LOGGER.warn("payment to " + key + " which is not watched anymore, " + bitcoins + " in " + hash);
+                    fluidsNotifier.onError("payment to " + key + " which is not watched anymore", null, bitcoins, hash);
+                    return;
+                }
+                try {
+                    double price = priceService.getEurQuote();
+                    fluidsNotifier.onFluidPaid(new TransactionItem(type, bitcoins, count(bitcoins, price, type), price, hash));
+                } catch (RemoteSystemFail remoteSystemFail) {
+                    fluidsNotifier.onError(remoteSystemFail.getMessage(), type, bitcoins, hash);
+                }
+
+            }
+        };
+    }
+
+    /**
+     * fixed point if the price has at most 8 decimals, which is what the tickers deliver
+     */
+    static int count(Bitcoins bitcoins, double price, FluidType type) {
+        long scaledPrice = Money.scaledPrice(price);
+        long drinkCents = Money.cents(type.getEuroPrice());
+        if (scaledPrice != Money.INEXACT && drinkCents > 0 && drinkCents <= Money.MAX_DRINK_CENTS) {
+            return Money.drinks(bitcoins.getSatoshis(), scaledPrice, drinkCents);
+        }
+        BigDecimal eurPerBitcoin = BigDecimal.valueOf(price);
+        BigDecimal euros = bitcoins.multiply(eurPerBitcoin);
+        BigDecimal euroPrice = BigDecimal.valueOf(type.getEuroPrice());
+        BigDecimal anzahl = euros.divide(euroPrice, RoundingMode.HALF_UP);
+        return BigDecimal.valueOf(anzahl.add(BigDecimal.valueOf(0.5)).longValue()).intValue();
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import java.text.DecimalFormat;
+
+public class Utils {
+    public static final String MTGOX_BTCEUR = "https://mtgox.com/api/1/BTCEUR/public/ticker";
+    public static final String BITSTAMP_BTCEUR = "https://www.bitstamp.net/api/v2/ticker/btceur/";
+    public static final String COINBASE_BTCEUR = "https://api.coinbase.com/v2/prices/BTC-EUR/spot";
+    public static final String BLOCKCHAIN_INFO_TICKER = "https://blockchain.info/ticker";
+    //not threadsafe, use Formats.appendEuros
+    public static final DecimalFormat eurDF = new DecimalFormat("0.00 €");
+    public static final int TEN_MINUTES_IN_MILLIS = 10 * 60 * 1000;
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+/**
+ * estimates how much the price moves from one observation to the next,
+ * as an exponentially weighted standard deviation of the relative changes.
+ * never goes below a floor, so at least the neighbouring price steps are always considered likely.
+ */
+public class VolatilityEstimator {
+    public static final double DEFAULT_FLOOR = 0.005;
+    private static final double WEIGHT = 0.2;
+
+    private final double floor;
+    private double variance;
+    private double lastPrice;
+
+    public VolatilityEstimator() {
+        this(DEFAULT_FLOOR);
+    }
+
+    public VolatilityEstimator(double floor) {
+        this.floor = floor;
+        variance = floor * floor;
+    }
+
+    public synchronized void update(double price) {
+        if (price <= 0) {
+            return;
+        }
+        if (lastPrice > 0) {
+            double change = price / lastPrice - 1;
+            variance = (1 - WEIGHT) * variance + WEIGHT * change * change;
+        }
+        lastPrice = price;
+    }
+
+    /**
+     * @return the expected relative price change until the next observation, e.g. 0.01 for 1%
+     */
+    public synchronized double getRelativeStdDev() {
+        return Math.max(floor, Math.sqrt(variance));
+    }
+}
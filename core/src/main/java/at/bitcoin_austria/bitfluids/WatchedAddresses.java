@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+/**
+ * the set of addresses the {@link BitcoinTransactionListener} is looking for.
+ * lookups are done on the raw 20 byte hash160, so implementations can answer
+ * straight from a script or a buffer without building an {@link com.google.bitcoin.core.Address} first.
+ * implementations must be safe for concurrent lookups from several peer threads.
+ */
+public interface WatchedAddresses {
+    int HASH160_LENGTH = 20;
+
+    /**
+     * @param hash160 array holding the hash160 to look for
+     * @param offset  where the 20 bytes start in the array
+     * @return true if the hash160 belongs to a watched address
+     */
+    boolean contains(byte[] hash160, int offset);
+
+    int size();
+}
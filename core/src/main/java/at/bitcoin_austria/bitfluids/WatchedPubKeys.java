@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Utils;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * public keys we want to detect in pay-to-pubkey outputs.
+ * their hash160 is computed once up front, so incoming scripts are compared byte by byte
+ * instead of hashing every pubkey that comes along.
+ * the keys of the sale addresses are known when they are derived, they are added to a {@link #growing} set.
+ * where only the addresses are known, e.g. the fixed ones of the environment, {@link #hashing(WatchedAddresses)} does hash them.
+ */
+public final class WatchedPubKeys {
+    public static final WatchedPubKeys NONE = new WatchedPubKeys(Collections.<byte[]>emptyList());
+
+    private volatile Keys keys;
+    //added keys only count while their address is in here, null if they always count
+    @Nullable
+    private final WatchedAddresses live;
+    @Nullable
+    private final WatchedAddresses byHash160;
+
+    /**
+     * replaced as a whole on add, so lookups need no lock
+     */
+    private static final class Keys {
+        final byte[][] pubKeys;
+        final byte[][] hash160s;
+
+        Keys(List<byte[]> pubKeys, List<byte[]> hash160s) {
+            this.pubKeys = pubKeys.toArray(new byte[pubKeys.size()][]);
+            this.hash160s = hash160s.toArray(new byte[hash160s.size()][]);
+        }
+    }
+
+    public WatchedPubKeys(List<byte[]> pubKeys) {
+        this(pubKeys, null, null);
+    }
+
+    private WatchedPubKeys(List<byte[]> pubKeys, @Nullable WatchedAddresses live, @Nullable WatchedAddresses byHash160) {
+        this.live = live;
+        this.byHash160 = byHash160;
+        List<byte[]> keyCopies = new ArrayList<byte[]>(pubKeys.size());
+        List<byte[]> hash160s = new ArrayList<byte[]>(pubKeys.size());
+        for (byte[] pubKey : pubKeys) {
+            keyCopies.add(pubKey.clone());
+            hash160s.add(Utils.sha256hash160(pubKey));
+        }
+        keys = new Keys(keyCopies, hash160s);
+    }
+
+    /**
+     * any pubkey whose hash160 is one of the addresses. each pay-to-pubkey output is hashed,
+     * which is what it takes to find payments to the environment keys, their pubkeys are not known.
+     */
+    public static WatchedPubKeys hashing(WatchedAddresses addresses) {
+        return new WatchedPubKeys(Collections.<byte[]>emptyList(), null, addresses);
+    }
+
+    /**
+     * starts without keys, {@link #add(byte[])} the key of each sale address handed out.
+     * a key is matched as long as its address is in live, expired ones drop out by themselves.
+     *
+     * @param fixed addresses whose keys are not known, pay-to-pubkey outputs are hashed for these only
+     */
+    public static WatchedPubKeys growing(WatchedAddresses live, WatchedAddresses fixed) {
+        return new WatchedPubKeys(Collections.<byte[]>emptyList(), live, fixed);
+    }
+
+    /**
+     * adds a key to a {@link #growing} set, call it after its address is watched.
+     * keys whose address expired are dropped meanwhile. this copies the set, which is small.
+     */
+    public synchronized void add(byte[] pubKey) {
+        Preconditions.checkState(live != null, "only a growing set takes keys");
+        Keys current = keys;
+        List<byte[]> pubKeys = new ArrayList<byte[]>(current.pubKeys.length + 1);
+        List<byte[]> hash160s = new ArrayList<byte[]>(current.pubKeys.length + 1);
+        for (int i = 0; i < current.pubKeys.length; i++) {
+            if (equalsAt(current.pubKeys[i], pubKey, 0, pubKey.length)) {
+                return;
+            }
+            if (live.contains(current.hash160s[i], 0)) {
+                pubKeys.add(current.pubKeys[i]);
+                hash160s.add(current.hash160s[i]);
+            }
+        }
+        pubKeys.add(pubKey.clone());
+        hash160s.add(Utils.sha256hash160(pubKey));
+        keys = new Keys(pubKeys, hash160s);
+    }
+
+    /**
+     * @return the hash160 of the matching watched pubkey, or null. the array is shared, do not modify it.
+     */
+    @Nullable
+    public byte[] hash160Of(byte[] pubKey, int offset, int length) {
+        Keys current = keys;
+        for (int i = 0; i < current.pubKeys.length; i++) {
+            if (equalsAt(current.pubKeys[i], pubKey, offset, length)) {
+                byte[] hash160 = current.hash160s[i];
+                if (live == null || live.contains(hash160, 0)) {
+                    return hash160;
+                }
+                break;
+            }
+        }
+        if (byHash160 != null) {
+            byte[] key = new byte[length];
+            System.arraycopy(pubKey, offset, key, 0, length);
+            byte[] hash160 = Utils.sha256hash160(key);
+            if (byHash160.contains(hash160, 0)) {
+                return hash160;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return keys.pubKeys.length;
+    }
+
+    private static boolean equalsAt(byte[] key, byte[] candidate, int offset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != candidate[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
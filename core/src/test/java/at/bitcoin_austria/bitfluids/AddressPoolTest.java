@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.AddressFormatException;
+import com.google.bitcoin.core.NetworkParameters;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static junit.framework.Assert.assertEquals;
+
+public class AddressPoolTest {
+    //m of BIP32 test vector 2
+    static final String MASTER = "xpub661MyMwAqRbcFW31YEwpkMuc5THy2PSt5bDMsktWQcFF8syAmRUapSCGu8ED9W6oDMSgv6Zz8idoc4a6mr8BDzTJY47LJhkJ8UB7WEGuduB";
+    private static final NetworkParameters PARAMS = NetworkParameters.prodNet();
+
+    private File state;
+
+    @Before
+    public void setUp() throws IOException {
+        state = File.createTempFile("sale-index", ".bin");
+        state.delete();
+    }
+
+    @After
+    public void tearDown() {
+        state.delete();
+    }
+
+    @Test
+    public void testNeverHandsOutTwice() throws IOException, AddressFormatException {
+        ExtendedPublicKey master = ExtendedPublicKey.parse(MASTER);
+        AddressPool pool = new AddressPool(master, PARAMS, state, 2, 1);
+        assertEquals(master.derive(0).toAddress(PARAMS), pool.next());
+        assertEquals(master.derive(1).toAddress(PARAMS), pool.next());
+        assertEquals(master.derive(2).toAddress(PARAMS), pool.next());
+        pool.shutdown();
+
+        //the derived but unused ones are not lost either, the restart goes on with them
+        AddressPool restarted = new AddressPool(master, PARAMS, state, 2, 1);
+        assertEquals(3, restarted.getNextIndex());
+        assertEquals(master.derive(3).toAddress(PARAMS), restarted.next());
+        restarted.shutdown();
+    }
+}
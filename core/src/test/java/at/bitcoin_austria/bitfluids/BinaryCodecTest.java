@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Sha256Hash;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+
+public class BinaryCodecTest {
+
+    @Test
+    public void testTransactionItemRoundTrip() throws IOException {
+        TransactionItem item = new TransactionItem(FluidType.COLA, Bitcoins.valueOf(123456789L), 3, 7.95, hash(42));
+        ByteBuffer buf = ByteBuffer.allocate(BinaryCodec.TRANSACTION_ITEM_SIZE);
+        BinaryCodec.writeTransactionItem(buf, item);
+        assertEquals(0, buf.remaining());
+        buf.flip();
+        TransactionItem read = BinaryCodec.readTransactionItem(buf);
+        assertEquals(FluidType.COLA, read.fluidType);
+        assertEquals(Bitcoins.valueOf(123456789L), read.paid);
+        assertEquals(3, read.count);
+        assertEquals(7.95, read.euroPerBitcoin);
+        assertEquals(hash(42), read.hash);
+    }
+
+    @Test
+    public void testErrorItemRoundTrip() throws IOException {
+        //an item for a payment we could not price has neither type nor amount
+        TransactionItem item = new TransactionItem(null, null, 0, 0, null);
+        ByteBuffer buf = ByteBuffer.allocate(BinaryCodec.TRANSACTION_ITEM_SIZE);
+        BinaryCodec.writeTransactionItem(buf, item);
+        buf.flip();
+        TransactionItem read = BinaryCodec.readTransactionItem(buf);
+        assertNull(read.fluidType);
+        assertNull(read.paid);
+        assertEquals(Sha256Hash.ZERO_HASH, read.hash);
+    }
+
+    @Test
+    public void testUnpricedItemRoundTrip() throws IOException {
+        TransactionItem item = TransactionItem.unpriced(FluidType.MATE, Bitcoins.valueOf(5000000L), hash(7));
+        ByteBuffer buf = ByteBuffer.allocate(BinaryCodec.TRANSACTION_ITEM_SIZE);
+        BinaryCodec.writeTransactionItem(buf, item);
+        buf.flip();
+        TransactionItem read = BinaryCodec.readTransactionItem(buf);
+        assertFalse(read.isPriced());
+        assertEquals(FluidType.MATE, read.fluidType);
+        assertEquals(Bitcoins.valueOf(5000000L), read.paid);
+        assertEquals(hash(7), read.hash);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsUnknownFluidType() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BinaryCodec.TRANSACTION_ITEM_SIZE);
+        BinaryCodec.writeTransactionItem(buf, new TransactionItem(FluidType.MATE, Bitcoins.valueOf(1), 1, 1, hash(1)));
+        buf.put(0, (byte) FluidType.values().length);
+        buf.flip();
+        BinaryCodec.readTransactionItem(buf);
+    }
+
+    static Sha256Hash hash(int seed) {
+        byte[] bytes = new byte[32];
+        bytes[0] = (byte) seed;
+        bytes[31] = (byte) (seed * 7);
+        return new Sha256Hash(bytes);
+    }
+}
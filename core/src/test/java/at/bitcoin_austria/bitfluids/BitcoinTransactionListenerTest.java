@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.Transaction;
+import com.google.bitcoin.core.TransactionOutput;
+import com.google.bitcoin.store.BlockStoreException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class BitcoinTransactionListenerTest {
+
+    /**
+     * a cold start begins at the newest checkpoint. without one it would download every header
+     * since the genesis block, so there is no chain then
+     */
+    @Test
+    public void testChainStartsAtCheckpoint() throws IOException, BlockStoreException {
+        for (Environment env : Environment.values()) {
+            List<Checkpoint> checkpoints = env.getCheckpoints();
+            File dataDir = File.createTempFile("listener", "");
+            dataDir.delete();
+            dataDir.mkdirs();
+            BitcoinTransactionListener listener = new BitcoinTransactionListener(env, dataDir, new EventDispatcher());
+            listener.openChain();
+            File store = new File(dataDir, env.getBlockChainFilename());
+            if (checkpoints.isEmpty()) {
+                assertEquals(-1, listener.getChainHeight());
+                assertFalse(store.exists());
+            } else {
+                assertEquals(checkpoints.get(checkpoints.size() - 1).height, listener.getChainHeight());
+            }
+            listener.shutdown();
+            store.delete();
+            dataDir.delete();
+        }
+    }
+
+    @Test
+    public void testChainStartsAtCheckpointFile() throws IOException, BlockStoreException {
+        File dataDir = File.createTempFile("listener", "");
+        dataDir.delete();
+        dataDir.mkdirs();
+        File checkpoints = new File(dataDir, BitcoinTransactionListener.CHECKPOINT_FILE);
+        FileWriter out = new FileWriter(checkpoints);
+        out.write("# the genesis block is a retarget block as well\n" + HeaderStoreTest.GENESIS_CHECKPOINT + "\n");
+        out.close();
+        BitcoinTransactionListener listener = new BitcoinTransactionListener(Environment.PROD, dataDir, new EventDispatcher());
+        listener.openChain();
+        File store = new File(dataDir, Environment.PROD.getBlockChainFilename());
+        assertTrue(store.exists());
+        assertEquals(0, listener.getChainHeight());
+        listener.shutdown();
+        store.delete();
+        checkpoints.delete();
+        dataDir.delete();
+    }
+
+    @Test
+    public void testDoesNotTrackWithoutChain() throws IOException, BlockStoreException {
+        Environment env = Environment.PROD;
+        File dataDir = File.createTempFile("listener", "");
+        dataDir.delete();
+        dataDir.mkdirs();
+        BitcoinTransactionListener listener = new BitcoinTransactionListener(env, dataDir, new EventDispatcher());
+        listener.openChain();
+        NetworkParameters params = env.getNetworkParams();
+        Transaction tx = new Transaction(params);
+        tx.addOutput(new TransactionOutput(params, tx, BigInteger.valueOf(1000000),
+                OutputMatcherTest.payToPubKeyHash(env.getKey150().getHash160())));
+        final List<Address> paid = new ArrayList<Address>();
+        listener.processTransaction(tx, new TxNotifier() {
+            @Override
+            public void onValue(Bitcoins bitcoins, Address key, Sha256Hash hash) {
+                paid.add(key);
+            }
+        });
+        assertEquals(1, paid.size());
+        //nothing would ever confirm it
+        assertEquals(0, listener.trackedCount());
+        listener.shutdown();
+        dataDir.delete();
+    }
+
+    @Test
+    public void testWatchesAddressIndexInDataDir() throws IOException {
+        File dataDir = File.createTempFile("listener", "");
+        dataDir.delete();
+        dataDir.mkdirs();
+        WatchedAddresses fixedKeys = BitcoinTransactionListener.fixedKeys(Environment.PROD);
+        assertSame(fixedKeys, BitcoinTransactionListener.withAddressIndex(fixedKeys, dataDir));
+
+        byte[] indexed = new byte[WatchedAddresses.HASH160_LENGTH];
+        new Random(1).nextBytes(indexed);
+        File file = new File(dataDir, BitcoinTransactionListener.ADDRESS_INDEX_FILE);
+        MappedHash160Index.create(file, Collections.singletonList(indexed));
+        WatchedAddresses watched = BitcoinTransactionListener.withAddressIndex(fixedKeys, dataDir);
+        assertTrue(watched.contains(indexed, 0));
+        assertTrue(watched.contains(Environment.PROD.getKey150().getHash160(), 0));
+        assertFalse(watched.contains(new byte[WatchedAddresses.HASH160_LENGTH], 0));
+        file.delete();
+        dataDir.delete();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.ProtocolException;
+import com.google.bitcoin.core.Utils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+public class BlockScannerTest {
+    private final Environment env = Environment.TEST;
+    private final OutputMatcher watched = new OutputMatcher(
+            new AddressListIndex(Arrays.asList(env.getKey200(), env.getKey150())), WatchedPubKeys.NONE);
+
+    @Test
+    public void testFindsMatchingTransactions() throws ProtocolException {
+        byte[] other = new byte[20];
+        other[5] = 7;
+        byte[] tx1 = transaction(false, other);
+        byte[] tx2 = transaction(false, other, env.getKey150().getHash160());
+        byte[] tx3 = transaction(true, env.getKey200().getHash160());
+        byte[] tx4 = transaction(true, other);
+        byte[] block = block(tx1, tx2, tx3, tx4);
+
+        final List<byte[]> found = new ArrayList<byte[]>();
+        int count = new BlockScanner(watched).scan(ByteBuffer.wrap(block), new BlockScanner.MatchHandler() {
+            @Override
+            public void onMatch(ByteBuffer raw, int offset, int length) {
+                byte[] tx = new byte[length];
+                System.arraycopy(raw.array(), offset, tx, 0, length);
+                found.add(tx);
+            }
+        });
+        assertEquals(4, count);
+        assertEquals(2, found.size());
+        assertEquals(Arrays.toString(tx2), Arrays.toString(found.get(0)));
+        assertEquals(Arrays.toString(tx3), Arrays.toString(found.get(1)));
+    }
+
+    @Test
+    public void testHashesTransactionIds() throws ProtocolException {
+        byte[] plain = transaction(false, env.getKey200().getHash160());
+        //the same transaction with witness data, which is not part of the id
+        byte[] witness = transaction(true, env.getKey200().getHash160());
+        byte[] other = transaction(false, env.getKey150().getHash160());
+        final List<byte[]> ids = new ArrayList<byte[]>();
+        new BlockScanner(watched).scan(ByteBuffer.wrap(block(plain, witness, other)), new BlockScanner.MatchHandler() {
+            @Override
+            public void onMatch(ByteBuffer raw, int offset, int length) {
+            }
+        }, new BlockScanner.TxIdHandler() {
+            @Override
+            public void onTxId(byte[] id) {
+                ids.add(id);
+            }
+        });
+        assertEquals(3, ids.size());
+        assertEquals(Arrays.toString(Utils.doubleDigest(plain)), Arrays.toString(ids.get(0)));
+        assertEquals(Arrays.toString(Utils.doubleDigest(plain)), Arrays.toString(ids.get(1)));
+        assertEquals(Arrays.toString(Utils.doubleDigest(other)), Arrays.toString(ids.get(2)));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void testTruncatedBlock() throws ProtocolException {
+        byte[] block = block(transaction(false, env.getKey200().getHash160()));
+        ByteBuffer truncated = ByteBuffer.wrap(block, 0, block.length - 3).slice();
+        new BlockScanner(watched).scan(truncated, new BlockScanner.MatchHandler() {
+            @Override
+            public void onMatch(ByteBuffer raw, int offset, int length) {
+            }
+        });
+    }
+
+    static byte[] block(byte[]... transactions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[80], 0, 80);
+        out.write(transactions.length);
+        for (byte[] tx : transactions) {
+            out.write(tx, 0, tx.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * a transaction with one input and one pay-to-pubkey-hash output per hash
+     */
+    static byte[] transaction(boolean witness, byte[]... hash160s) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, 1, 0, 0, 0); //version
+        if (witness) {
+            write(out, 0, 1);
+        }
+        out.write(1); //inputs
+        out.write(new byte[36], 0, 36);
+        out.write(3); //scriptSig
+        write(out, 1, 2, 3);
+        write(out, 0xff, 0xff, 0xff, 0xff);
+        out.write(hash160s.length);
+        for (byte[] hash160 : hash160s) {
+            write(out, 0x40, 0x42, 0x0f, 0, 0, 0, 0, 0); //0.01 BTC
+            out.write(25);
+            write(out, 0x76, 0xa9, 0x14);
+            out.write(hash160, 0, 20);
+            write(out, 0x88, 0xac);
+        }
+        if (witness) {
+            out.write(2); //two witness items
+            write(out, 2, 9, 9);
+            write(out, 1, 9);
+        }
+        write(out, 0, 0, 0, 0); //lock time
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, int... bytes) {
+        for (int b : bytes) {
+            out.write(b);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Block;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.StoredBlock;
+import com.google.bitcoin.core.Utils;
+import com.google.bitcoin.store.BlockStoreException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+public class ConfirmationTrackerTest {
+    private final NetworkParameters params = NetworkParameters.prodNet();
+    private final List<String> events = new ArrayList<String>();
+    private File file;
+    private HeaderStore store;
+    private ConfirmationTracker tracker;
+
+    @Before
+    public void setUp() throws IOException, BlockStoreException {
+        file = File.createTempFile("headers", ".blocks");
+        file.delete();
+        store = new HeaderStore(params, file, 64, Collections.<Checkpoint>emptyList());
+        tracker = listened(new ConfirmationTracker(3));
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testMerkleRoot() {
+        byte[] a = id(1);
+        byte[] b = id(2);
+        byte[] c = id(3);
+        byte[] expected = Utils.doubleDigest(concat(Utils.doubleDigest(concat(a, b)), Utils.doubleDigest(concat(c, c))));
+        assertEquals(Arrays.toString(expected), Arrays.toString(ConfirmationTracker.merkleRoot(concat(a, b, c), 3)));
+        assertEquals(Arrays.toString(a), Arrays.toString(ConfirmationTracker.merkleRoot(a, 1)));
+    }
+
+    @Test
+    public void testReportsDepthUntilMaxDepth() throws BlockStoreException {
+        tracker.track(hash(id(0x11)));
+        StoredBlock head = connect(store.getChainHead(), 1, id(0x22), id(0x11), id(0x33));
+        head = connect(head, 2);
+        assertEquals(Arrays.asList("1100:1", "1100:2"), events);
+        connect(head, 3);
+        assertEquals(Arrays.asList("1100:1", "1100:2", "1100:3"), events);
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void testIgnoresBlockWithWrongMerkleRoot() throws BlockStoreException {
+        tracker.track(hash(id(0x11)));
+        ConfirmationTracker.BlockIds ids = ids(id(0x11), id(0x33));
+        StoredBlock block = build(store.getChainHead(), 1, id(0x44));
+        tracker.onBlock(block.getHeader().getHash(), block.getHeader().getMerkleRoot(), ids);
+        moveHead(block);
+        assertEquals(0, events.size());
+    }
+
+    @Test
+    public void testManyPendingOnlyMatchesIncluded() throws BlockStoreException {
+        for (int i = 0; i < 500; i++) {
+            tracker.track(hash(id(i)));
+        }
+        connect(store.getChainHead(), 1, id(1000), id(7), id(1001));
+        assertEquals(Arrays.asList("0700:1"), events);
+        assertEquals(500, tracker.size());
+    }
+
+    @Test
+    public void testReorg() throws BlockStoreException {
+        tracker.track(hash(id(0x11)));
+        StoredBlock fork = store.getChainHead();
+        connect(fork, 1, id(0x11));
+        //a longer branch without the payment takes over
+        StoredBlock other = connect(fork, 2);
+        other = connect(other, 3);
+        assertEquals(Arrays.asList("1100:1", "1100:0"), events);
+        //and includes it later
+        connect(other, 4, id(0x11));
+        assertEquals(Arrays.asList("1100:1", "1100:0", "1100:1"), events);
+    }
+
+    @Test
+    public void testForgetsNeverIncluded() throws BlockStoreException {
+        tracker = listened(new ConfirmationTracker(6, 3, ConfirmationTracker.DEFAULT_MAX_PENDING));
+        tracker.track(hash(id(0x11)));
+        tracker.track(hash(id(0x22)));
+        StoredBlock head = connect(store.getChainHead(), 1, id(0x22));
+        head = connect(head, 2);
+        head = connect(head, 3);
+        assertEquals(2, tracker.size());
+        //0x11 was double spent or dropped, 0x22 is confirmed but not deep enough yet
+        connect(head, 4);
+        assertEquals(1, tracker.size());
+        assertEquals(Arrays.asList("2200:1", "2200:2", "2200:3", "2200:4"), events);
+    }
+
+    @Test
+    public void testForgetsOldestBeyondMaxPending() throws BlockStoreException {
+        tracker = listened(new ConfirmationTracker(3, ConfirmationTracker.DEFAULT_MAX_UNCONFIRMED_BLOCKS, 4));
+        for (int i = 0; i < 40; i++) {
+            tracker.track(hash(id(i)));
+        }
+        assertEquals(4, tracker.size());
+        connect(store.getChainHead(), 1, id(35), id(36), id(39));
+        assertEquals(Arrays.asList("2400:1", "2700:1"), events);
+    }
+
+    private ConfirmationTracker listened(ConfirmationTracker ret) {
+        ret.addListener(new Consumer<ConfirmationTracker.Confirmation>() {
+            @Override
+            public void consume(ConfirmationTracker.Confirmation confirmation) {
+                events.add(confirmation.hash.toString().substring(0, 4) + ":" + confirmation.depth);
+            }
+        });
+        return ret;
+    }
+
+    private StoredBlock connect(StoredBlock prev, int nonce, byte[]... txIds) throws BlockStoreException {
+        StoredBlock block = build(prev, nonce, txIds);
+        tracker.onBlock(block.getHeader().getHash(), block.getHeader().getMerkleRoot(), ids(txIds));
+        store.put(block);
+        if (block.moreWorkThan(store.getChainHead())) {
+            moveHead(block);
+        }
+        return block;
+    }
+
+    private void moveHead(StoredBlock block) throws BlockStoreException {
+        store.setChainHead(block);
+        tracker.onChainHead(block, store);
+    }
+
+    private StoredBlock build(StoredBlock prev, int nonce, byte[]... txIds) throws BlockStoreException {
+        byte[] header = new byte[80];
+        Utils.uint32ToByteArrayLE(1, header, 0);
+        System.arraycopy(Utils.reverseBytes(prev.getHeader().getHash().getBytes()), 0, header, 4, 32);
+        byte[] root = txIds.length == 0 ? new byte[32] : ConfirmationTracker.merkleRoot(concat(txIds), txIds.length);
+        System.arraycopy(root, 0, header, 36, 32);
+        Utils.uint32ToByteArrayLE(0x207fffffL, header, 72);
+        Utils.uint32ToByteArrayLE(nonce, header, 76);
+        try {
+            return prev.build(new Block(params, header));
+        } catch (Exception e) {
+            throw new BlockStoreException(e);
+        }
+    }
+
+    private static ConfirmationTracker.BlockIds ids(byte[]... txIds) {
+        ConfirmationTracker.BlockIds ret = new ConfirmationTracker.BlockIds();
+        for (byte[] id : txIds) {
+            ret.onTxId(id);
+        }
+        return ret;
+    }
+
+    /**
+     * an id in internal byte order, the displayed hash starts with the seed
+     */
+    private static byte[] id(int seed) {
+        byte[] ret = new byte[32];
+        ret[31] = (byte) seed;
+        ret[30] = (byte) (seed >> 8);
+        ret[0] = (byte) (seed * 31 + 7);
+        return ret;
+    }
+
+    private static Sha256Hash hash(byte[] id) {
+        return new Sha256Hash(Utils.reverseBytes(id));
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        byte[] ret = new byte[parts.length * 32];
+        for (int i = 0; i < parts.length; i++) {
+            System.arraycopy(parts[i], 0, ret, i * 32, 32);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class EventDispatcherTest {
+    private static final EventDispatcher.Topic<Integer> NUMBERS = new EventDispatcher.Topic<Integer>("numbers");
+
+    private final EventDispatcher dispatcher = new EventDispatcher();
+
+    @After
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testDeliversInOrder() throws InterruptedException {
+        Recorder recorder = new Recorder(1000);
+        dispatcher.subscribe(NUMBERS, recorder, EventDispatcher.Policy.BLOCK, 16);
+        for (int i = 0; i < 1000; i++) {
+            dispatcher.publish(NUMBERS, i);
+        }
+        recorder.await();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, (int) recorder.received.get(i));
+        }
+    }
+
+    @Test
+    public void testCoalescesWhileConsumerIsBusy() throws InterruptedException {
+        Recorder recorder = new Recorder(2);
+        recorder.blockFirst();
+        EventDispatcher.Subscription subscription = dispatcher.subscribe(NUMBERS, recorder, EventDispatcher.Policy.COALESCE, 1);
+        dispatcher.publish(NUMBERS, 0);
+        recorder.awaitBlocked();
+        for (int i = 1; i <= 100; i++) {
+            dispatcher.publish(NUMBERS, i);
+        }
+        recorder.release();
+        recorder.await();
+        assertEquals(Arrays.asList(0, 100), recorder.received);
+        assertEquals(99, subscription.getDropped());
+    }
+
+    @Test
+    public void testDropsWhenFullWithoutStallingTheProducer() throws InterruptedException {
+        Recorder recorder = new Recorder(3);
+        recorder.blockFirst();
+        EventDispatcher.Subscription subscription = dispatcher.subscribe(NUMBERS, recorder, EventDispatcher.Policy.DROP, 2);
+        dispatcher.publish(NUMBERS, 0);
+        recorder.awaitBlocked();
+        for (int i = 1; i <= 10; i++) {
+            dispatcher.publish(NUMBERS, i);
+        }
+        recorder.release();
+        recorder.await();
+        assertEquals(Arrays.asList(0, 1, 2), recorder.received);
+        assertEquals(8, subscription.getDropped());
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotDelayOthers() throws InterruptedException {
+        Recorder slow = new Recorder(1);
+        slow.blockFirst();
+        Recorder fast = new Recorder(1);
+        dispatcher.subscribe(NUMBERS, slow, EventDispatcher.Policy.COALESCE, 1);
+        dispatcher.subscribe(NUMBERS, fast, EventDispatcher.Policy.DROP, 4);
+        dispatcher.publish(NUMBERS, 7);
+        fast.await();
+        assertEquals(Collections.singletonList(7), fast.received);
+        slow.release();
+        slow.await();
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        Recorder cancelled = new Recorder(1);
+        Recorder other = new Recorder(1);
+        dispatcher.subscribe(NUMBERS, cancelled, EventDispatcher.Policy.DROP, 4).cancel();
+        dispatcher.subscribe(NUMBERS, other, EventDispatcher.Policy.DROP, 4);
+        dispatcher.publish(NUMBERS, 1);
+        other.await();
+        assertFalse(cancelled.done.await(50, TimeUnit.MILLISECONDS));
+    }
+
+    private static class Recorder implements Consumer<Integer> {
+        private final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        private final CountDownLatch done;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile boolean blockFirst;
+
+        private Recorder(int expected) {
+            done = new CountDownLatch(expected);
+        }
+
+        void blockFirst() {
+            blockFirst = true;
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public void consume(Integer number) {
+            if (blockFirst) {
+                blockFirst = false;
+                blocked.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            received.add(number);
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.NetworkParameters;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class ExpiringAddressIndexTest {
+    private static final long TTL = 1000;
+
+    private long now = 1000000;
+    private final Clock clock = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    };
+
+    @Test
+    public void testExpiry() {
+        ExpiringAddressIndex<FluidType> index = new ExpiringAddressIndex<FluidType>(TTL, clock);
+        List<Address> addresses = randomAddresses(new Random(1), 3);
+        index.watch(addresses.get(0), FluidType.MATE);
+        now += 500;
+        index.watch(addresses.get(1), FluidType.COLA);
+        assertEquals(FluidType.MATE, index.get(addresses.get(0)));
+        assertEquals(FluidType.COLA, index.get(addresses.get(1)));
+        assertNull(index.get(addresses.get(2)));
+
+        now += 500;
+        //not found anymore, but only dropped on the next write
+        assertNull(index.get(addresses.get(0)));
+        assertFalse(index.contains(addresses.get(0).getHash160(), 0));
+        assertEquals(2, index.size());
+        index.expire();
+        assertEquals(1, index.size());
+        assertTrue(index.contains(addresses.get(1).getHash160(), 0));
+    }
+
+    @Test
+    public void testRenewal() {
+        ExpiringAddressIndex<FluidType> index = new ExpiringAddressIndex<FluidType>(TTL, clock);
+        Address address = randomAddresses(new Random(2), 1).get(0);
+        index.watch(address, FluidType.MATE);
+        now += 900;
+        index.watch(address, FluidType.MATE);
+        now += 900;
+        //the first expiry passed, the renewed entry stays
+        index.expire();
+        assertEquals(1, index.size());
+        assertEquals(FluidType.MATE, index.get(address));
+        now += 100;
+        index.expire();
+        assertEquals(0, index.size());
+        assertNull(index.get(address));
+    }
+
+    @Test
+    public void testForever() {
+        ExpiringAddressIndex<FluidType> index = Tx2FluidsAdapter.fixedKeys(Environment.TEST, TTL, clock);
+        index.watch(Environment.TEST.getKey200(), FluidType.MATE);
+        now += 10 * TTL;
+        index.expire();
+        assertEquals(2, index.size());
+        assertEquals(FluidType.MATE, index.get(Environment.TEST.getKey200()));
+        assertEquals(FluidType.COLA, index.get(Environment.TEST.getKey150()));
+    }
+
+    @Test
+    public void testManyOutstanding() {
+        ExpiringAddressIndex<Integer> index = new ExpiringAddressIndex<Integer>(TTL, clock);
+        List<Address> addresses = randomAddresses(new Random(3), 5000);
+        for (int i = 0; i < addresses.size(); i++) {
+            index.watch(addresses.get(i), i);
+            if (i % 10 == 9) {
+                now++;
+            }
+        }
+        assertEquals(5000, index.size());
+        for (int i = 0; i < addresses.size(); i++) {
+            assertEquals(Integer.valueOf(i), index.get(addresses.get(i)));
+        }
+        byte[] script = new byte[25];
+        System.arraycopy(addresses.get(7).getHash160(), 0, script, 3, 20);
+        assertTrue(index.contains(script, 3));
+        assertFalse(index.contains(script, 2));
+
+        //the first half expires, the slots they leave are reused
+        now += TTL - 251;
+        index.expire();
+        assertEquals(2500, index.size());
+        assertNull(index.get(addresses.get(2499)));
+        assertEquals(Integer.valueOf(2500), index.get(addresses.get(2500)));
+        for (Address address : randomAddresses(new Random(4), 5000)) {
+            index.watch(address, -1);
+            now++;
+        }
+        for (int i = 0; i < addresses.size(); i++) {
+            assertFalse(index.contains(addresses.get(i).getHash160(), 0));
+        }
+        //the last second of them
+        assertEquals(1000, index.size());
+    }
+
+    static List<Address> randomAddresses(Random random, int count) {
+        List<Address> ret = new ArrayList<Address>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] hash160 = new byte[20];
+            random.nextBytes(hash160);
+            ret.add(new Address(NetworkParameters.testNet(), hash160));
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.AddressFormatException;
+import com.google.bitcoin.core.Base58;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.Utils;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * against the test vectors of BIP32
+ */
+public class ExtendedPublicKeyTest {
+    //vector 1: m, m/0H and m/0H/1
+    private static final String M1 = "xpub661MyMwAqRbcFtXgS5sYJABqqG9YLmC4Q1Rdap9gSE8NqtwybGhePY2gZ29ESFjqJoCu1Rupje8YtGqsefD265TMg7usUDFdp6W1EGMcet8";
+    private static final String M1_0H = "xpub68Gmy5EdvgibQVfPdqkBBCHxA5htiqg55crXYuXoQRKfDBFA1WEjWgP6LHhwBZeNK1VTsfTFUHCdrfp1bgwQ9xv5ski8PX9rL2dZXvgGDnw";
+    private static final String M1_0H_1 = "xpub6ASuArnXKPbfEwhqN6e3mwBcDTgzisQN1wXN9BJcM47sSikHjJf3UFHKkNAWbWMiGj7Wf5uMash7SyYq527Hqck2AxYysAA7xmALppuCkwQ";
+    //vector 2: m and m/0
+    private static final String M2 = "xpub661MyMwAqRbcFW31YEwpkMuc5THy2PSt5bDMsktWQcFF8syAmRUapSCGu8ED9W6oDMSgv6Zz8idoc4a6mr8BDzTJY47LJhkJ8UB7WEGuduB";
+    private static final String M2_0 = "xpub69H7F5d8KSRgmmdJg2KhpAK8SR3DjMwAdkxj3ZuxV27CprR9LgpeyGmXUbC6wb7ERfvrnKZjXoUmmDznezpbZb7ap6r1D3tgFxHmwMkQTPH";
+
+    @Test
+    public void testDerive() throws AddressFormatException {
+        assertDerives(M1_0H, 1, M1_0H_1);
+        assertDerives(M2, 0, M2_0);
+    }
+
+    @Test
+    public void testAddress() throws AddressFormatException {
+        ExtendedPublicKey master = ExtendedPublicKey.parse(M1);
+        assertEquals(0, master.getDepth());
+        assertEquals("15mKKb2eos1hWa6tisdPwwDC1a5J1y9nma", master.toAddress(NetworkParameters.prodNet()).toString());
+    }
+
+    @Test
+    public void testRejectsPrivateKey() throws AddressFormatException {
+        byte[] bytes = Base58.decodeChecked(M1);
+        //the version of an xprv
+        bytes[0] = 0x04;
+        bytes[1] = (byte) 0x88;
+        bytes[2] = (byte) 0xAD;
+        bytes[3] = (byte) 0xE4;
+        byte[] checked = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, checked, 0, bytes.length);
+        System.arraycopy(Utils.doubleDigest(bytes), 0, checked, bytes.length, 4);
+        try {
+            ExtendedPublicKey.parse(Base58.encode(checked));
+            fail("an xprv must not be taken");
+        } catch (AddressFormatException expected) {
+            assertTrue(expected.getMessage().contains("private"));
+        }
+    }
+
+    @Test(expected = AddressFormatException.class)
+    public void testRejectsBrokenChecksum() throws AddressFormatException {
+        ExtendedPublicKey.parse(M1.substring(0, M1.length() - 1) + "9");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoHardenedChildren() throws AddressFormatException {
+        ExtendedPublicKey.parse(M1).derive(0x80000000);
+    }
+
+    private static void assertDerives(String parent, int index, String child) throws AddressFormatException {
+        ExtendedPublicKey derived = ExtendedPublicKey.parse(parent).derive(index);
+        assertNotNull(derived);
+        ExtendedPublicKey expected = ExtendedPublicKey.parse(child);
+        assertTrue(Arrays.equals(expected.getPublicKey(), derived.getPublicKey()));
+        assertTrue(Arrays.equals(expected.getChainCode(), derived.getChainCode()));
+        assertEquals(expected.getDepth(), derived.getDepth());
+        assertEquals(index, derived.getChildNumber());
+    }
+}
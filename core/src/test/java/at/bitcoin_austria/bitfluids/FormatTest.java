@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * @author apetersson
+ */
+public class FormatTest {
+    @Test
+    public void testEuroFormat(){
+        //hmm this does not fail. in my emulator this does _not always_ work correctly.
+        // must be something with the compiler missing UTF-8 encoded .java files.
+        assertEquals("2,00 €",Utils.eurDF.format(2.0));
+    }
+
+    @Test
+    public void testBitcoinsLikeBigDecimal() {
+        Random random = new Random(42);
+        long[] fixed = {0, 1, 10, 100000000, 150000000, 37500000, 2099999999999999L, 2099999900000000L};
+        for (long satoshis : fixed) {
+            assertBitcoins(satoshis);
+        }
+        for (int i = 0; i < 100000; i++) {
+            long satoshis = (random.nextLong() >>> 1) % 2100000000000000L;
+            //also many trailing zeros
+            assertBitcoins(satoshis - satoshis % (long) Math.pow(10, random.nextInt(12)));
+        }
+        assertEquals("0.15 ฿", Bitcoins.valueOf(15000000).toCurrencyString());
+    }
+
+    private static void assertBitcoins(long satoshis) {
+        String expected = BigDecimal.valueOf(satoshis).divide(BigDecimal.valueOf(100000000)).toPlainString();
+        assertEquals(expected, Formats.appendBitcoins(new StringBuilder(), satoshis).toString());
+        assertEquals(expected, Bitcoins.valueOf(satoshis).toString());
+    }
+
+    @Test
+    public void testEurosLikeDecimalFormat() {
+        Random random = new Random(42);
+        double[] fixed = {0, -0.0, 2, 1.005, 1.015, 0.125, 0.135, -0.001, -1.5, 2.675, 1e-320, 999999.995,
+                1e15, -1e20, Double.NaN, Double.POSITIVE_INFINITY};
+        for (double euros : fixed) {
+            assertEuros(euros);
+        }
+        for (int i = 0; i < 100000; i++) {
+            //near the half cents, where rounding goes wrong
+            double cents = random.nextInt(1000000) + 0.5;
+            assertEuros(cents / 100);
+            assertEuros(random.nextDouble() * Math.pow(10, random.nextInt(14)));
+        }
+    }
+
+    private static void assertEuros(double euros) {
+        assertEquals(Utils.eurDF.format(euros), Formats.appendEuros(new StringBuilder(), euros).toString());
+    }
+
+    @Test
+    public void testTimeLikeSimpleDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss");
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long millis = (long) (random.nextDouble() * 4e12) - 100000000000L;
+            assertEquals(format.format(new Date(millis)), Formats.appendTime(new StringBuilder(), millis).toString());
+        }
+    }
+}
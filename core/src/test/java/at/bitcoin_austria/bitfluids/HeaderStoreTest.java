@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Block;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.Sha256Hash;
+import com.google.bitcoin.core.StoredBlock;
+import com.google.bitcoin.core.Utils;
+import com.google.bitcoin.store.BlockStoreException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.fail;
+
+public class HeaderStoreTest {
+    //the real genesis block, checked against its well known hash
+    static final String GENESIS_CHECKPOINT = "0 000000000019d6689c085ae165831e934ff763ae46a2a6c172b3f1b60a8ce26f 100010001 "
+            + "0100000000000000000000000000000000000000000000000000000000000000000000003ba3edfd7a7b12b27ac72c3e67768f617fc81bc3888a51323a9fb8aa4b1e5e4a29ab5f49ffff001d1dac2b7c";
+
+    private final NetworkParameters params = NetworkParameters.prodNet();
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("headers", ".blocks");
+        file.delete();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testCheckpointRoundTrip() throws BlockStoreException {
+        Checkpoint checkpoint = Checkpoint.parse(GENESIS_CHECKPOINT);
+        StoredBlock block = checkpoint.toStoredBlock(params);
+        assertEquals(0, block.getHeight());
+        assertEquals(checkpoint.hash, block.getHeader().getHash());
+        assertEquals(GENESIS_CHECKPOINT, Checkpoint.format(block));
+    }
+
+    @Test
+    public void testRejectsCheckpointWithWrongHash() {
+        Checkpoint checkpoint = Checkpoint.parse(GENESIS_CHECKPOINT.replace("0019d6", "0019d7"));
+        try {
+            checkpoint.toStoredBlock(params);
+            fail();
+        } catch (BlockStoreException expected) {
+        }
+    }
+
+    @Test
+    public void testStartsAtNewestCheckpoint() throws BlockStoreException {
+        List<Checkpoint> checkpoints = Arrays.asList(Checkpoint.parse(GENESIS_CHECKPOINT));
+        HeaderStore store = new HeaderStore(params, file, 16, checkpoints);
+        StoredBlock head = store.getChainHead();
+        assertEquals(checkpoints.get(0).hash, head.getHeader().getHash());
+        assertNotNull(store.get(head.getHeader().getHash()));
+    }
+
+    @Test
+    public void testKeepsChainAcrossReopen() throws BlockStoreException {
+        HeaderStore store = new HeaderStore(params, file, 16, Collections.<Checkpoint>emptyList());
+        StoredBlock head = extend(store, store.getChainHead(), 5);
+        store.close();
+
+        store = new HeaderStore(params, file, 16, Collections.<Checkpoint>emptyList());
+        assertEquals(5, store.getChainHead().getHeight());
+        assertEquals(head.getHeader().getHash(), store.getChainHead().getHeader().getHash());
+        assertEquals(head.getChainWork(), store.getChainHead().getChainWork());
+        StoredBlock prev = store.get(head.getHeader().getPrevBlockHash());
+        assertEquals(4, prev.getHeight());
+        assertEquals(6, store.size());
+    }
+
+    @Test
+    public void testForgetsHeadersOutsideTheWindow() throws BlockStoreException {
+        HeaderStore store = new HeaderStore(params, file, 8, Collections.<Checkpoint>emptyList());
+        Sha256Hash genesis = store.getChainHead().getHeader().getHash();
+        StoredBlock head = extend(store, store.getChainHead(), 20);
+        assertNull(store.get(genesis));
+        assertEquals(8, store.size());
+        //the newest 8 are still linked
+        StoredBlock cursor = head;
+        for (int i = 0; i < 7; i++) {
+            cursor = store.get(cursor.getHeader().getPrevBlockHash());
+            assertEquals(19 - i, cursor.getHeight());
+        }
+    }
+
+    @Test
+    public void testFallsBackToMostWorkWithoutHead() throws BlockStoreException {
+        HeaderStore store = new HeaderStore(params, file, 16, Collections.<Checkpoint>emptyList());
+        StoredBlock head = extend(store, store.getChainHead(), 3);
+        //as if we crashed after writing the header but before moving the head
+        store.setChainHead(synthetic(head, 99));
+        store.close();
+
+        store = new HeaderStore(params, file, 16, Collections.<Checkpoint>emptyList());
+        assertEquals(head.getHeader().getHash(), store.getChainHead().getHeader().getHash());
+    }
+
+    @Test
+    public void testKeepsChainWorkBeyond96Bits() throws BlockStoreException {
+        //mainnet has more work than fits in the 12 bytes older stores kept
+        BigInteger work = BigInteger.ONE.shiftLeft(100);
+        Checkpoint genesis = Checkpoint.parse(GENESIS_CHECKPOINT.replace(" 100010001 ", " " + work.toString(16) + " "));
+        List<Checkpoint> checkpoints = Arrays.asList(genesis);
+        HeaderStore store = new HeaderStore(params, file, 16, checkpoints);
+        StoredBlock head = extend(store, store.getChainHead(), 2);
+        store.close();
+
+        store = new HeaderStore(params, file, 16, checkpoints);
+        assertEquals(head.getChainWork(), store.getChainHead().getChainWork());
+        assertEquals(work, store.get(genesis.hash).getChainWork());
+    }
+
+    private StoredBlock extend(HeaderStore store, StoredBlock from, int count) throws BlockStoreException {
+        StoredBlock block = from;
+        for (int i = 0; i < count; i++) {
+            block = synthetic(block, i);
+            store.put(block);
+            store.setChainHead(block);
+        }
+        return block;
+    }
+
+    private StoredBlock synthetic(StoredBlock prev, int nonce) throws BlockStoreException {
+        byte[] header = new byte[80];
+        Utils.uint32ToByteArrayLE(1, header, 0);
+        System.arraycopy(Utils.reverseBytes(prev.getHeader().getHash().getBytes()), 0, header, 4, 32);
+        Utils.uint32ToByteArrayLE(prev.getHeader().getTimeSeconds() + 600, header, 68);
+        Utils.uint32ToByteArrayLE(0x207fffffL, header, 72);
+        Utils.uint32ToByteArrayLE(nonce, header, 76);
+        try {
+            return prev.build(new Block(params, header));
+        } catch (Exception e) {
+            throw new BlockStoreException(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class JsonPathExtractorTest {
+    static final String MTGOX_TICKER = "{\"result\":\"success\",\"return\":{" +
+            "\"high\":{\"value\":\"10.46000\",\"value_int\":\"1046000\",\"display\":\"10.46000\\u00a0\\u20ac\",\"currency\":\"EUR\"}," +
+            "\"low\":{\"value\":\"10.05001\",\"value_int\":\"1005001\",\"display\":\"10.05001\\u00a0\\u20ac\",\"currency\":\"EUR\"}," +
+            "\"avg\":{\"value\":\"10.25873\",\"value_int\":\"1025873\",\"display\":\"10.25873\\u00a0\\u20ac\",\"currency\":\"EUR\"}," +
+            "\"vwap\":{\"value\":\"10.25422\",\"value_int\":\"1025422\",\"display\":\"10.25422\\u00a0\\u20ac\",\"currency\":\"EUR\"}," +
+            "\"vol\":{\"value\":\"3371.66573853\",\"value_int\":\"337166573853\",\"display\":\"3,371.66573853\\u00a0BTC\",\"currency\":\"BTC\"}," +
+            "\"now\":\"1348431312434436\"}}";
+
+    @Test
+    public void testMtgoxTicker() throws Exception {
+        assertEquals(10.25873, extract(TickerSource.MTGOX_PATH, MTGOX_TICKER), 0.0);
+        assertEquals(3371.66573853, extract("return.vol.value", MTGOX_TICKER), 0.0);
+    }
+
+    @Test
+    public void testStopsAtValue() throws Exception {
+        //everything behind the value is garbage and must not be read
+        assertEquals(1.5, extract("a.b", "{\"a\":{\"b\":1.5,\"c\":[[[{{{"), 0.0);
+    }
+
+    @Test
+    public void testSkipsNestedValues() throws Exception {
+        String json = " { \"x\" : [1, {\"b\": 2}, \"}]\\\"\", true, null, -3e5] ,\n" +
+                "\"a\\u0062\":7, \"pre\\\"\":{}, \"a\" : { \"c\" : {\"b\":false}, \"b\" : \"-0.25\" } }";
+        assertEquals(-0.25, extract("a.b", json), 0.0);
+    }
+
+    @Test
+    public void testNumberFormats() throws Exception {
+        String[] numbers = {"0", "-0.5", "123456.789", "0.1", "1e3", "-2.5E-2", "12345678901234567890.5",
+                "0.30000000000000004", "9007199254740993", "4.35"};
+        for (String number : numbers) {
+            assertEquals(number, Double.parseDouble(number), extract("v", "{\"v\":" + number + "}"), 0.0);
+            assertEquals(number, Double.parseDouble(number), extract("v", "{\"v\":\"" + number + "\"}"), 0.0);
+        }
+    }
+
+    @Test
+    public void testMatchesJsonObject() throws Exception {
+        for (int i = 0; i < 10000; i += 7) {
+            String number = i / 100 + "." + (i % 100) + "1234";
+            String json = "{\"return\":{\"avg\":{\"value\":\"" + number + "\"}}}";
+            double expected = Double.parseDouble(new org.json.JSONObject(json)
+                    .getJSONObject("return").getJSONObject("avg").getString("value"));
+            assertEquals(expected, extract(TickerSource.MTGOX_PATH, json), 0.0);
+        }
+    }
+
+    @Test
+    public void testLongDocument() throws Exception {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < 1000; i++) {
+            json.append("\"key").append(i).append("\":\"some longer filler value\",");
+        }
+        json.append("\"value\":42}");
+        assertEquals(42.0, extract("value", json.toString()), 0.0);
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        assertFails("return.avg.value", "{\"return\":{\"avg\":{\"display\":\"1\"}}}");
+        assertFails("return.avg.value", "{\"return\":{\"avg\":{\"value\":\"abc\"}}}");
+        assertFails("return.avg.value", "{\"return\":{\"avg\":{\"value\":null}}}");
+        assertFails("return.avg.value", "{\"return\":{\"avg\":[1]}}");
+        assertFails("value", "[1,2]");
+        assertFails("value", "{\"other\":\"unterminated");
+        assertFails("value", "{\"value\":1x}");
+        assertFails("value", "");
+    }
+
+    private static void assertFails(String path, String json) throws IOException {
+        try {
+            extract(path, json);
+            fail("expected failure for " + json);
+        } catch (JSONException e) {
+            assertTrue(e.getMessage().length() > 0);
+        }
+    }
+
+    private static double extract(String path, String json) throws IOException, JSONException {
+        return new JsonPathExtractor(path).extractDouble(stream(json));
+    }
+
+    private static InputStream stream(String json) throws UnsupportedEncodingException {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class MappedHash160IndexTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("watched", ".idx");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        Random random = new Random(42);
+        List<byte[]> hashes = randomHashes(random, 1000);
+        hashes.add(hashes.get(0).clone()); //duplicates are stored once
+        MappedHash160Index index = MappedHash160Index.create(file, hashes);
+        assertEquals(1000, index.size());
+        for (byte[] hash : hashes) {
+            assertTrue(index.contains(hash, 0));
+        }
+        for (byte[] other : randomHashes(random, 1000)) {
+            assertFalse(index.contains(other, 0));
+        }
+        assertFalse(index.contains(new byte[20], 0));
+    }
+
+    @Test
+    public void testReopenAndOffset() throws IOException {
+        List<byte[]> hashes = randomHashes(new Random(7), 50);
+        MappedHash160Index.create(file, hashes);
+        MappedHash160Index reopened = MappedHash160Index.open(file);
+        assertEquals(50, reopened.size());
+        byte[] script = new byte[25];
+        System.arraycopy(hashes.get(3), 0, script, 3, 20);
+        assertTrue(reopened.contains(script, 3));
+        assertFalse(reopened.contains(script, 2));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsGarbage() throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[100]);
+        out.close();
+        MappedHash160Index.open(file);
+    }
+
+    private static List<byte[]> randomHashes(Random random, int count) {
+        List<byte[]> ret = new ArrayList<byte[]>();
+        for (int i = 0; i < count; i++) {
+            byte[] hash = new byte[20];
+            random.nextBytes(hash);
+            ret.add(hash);
+        }
+        return ret;
+    }
+}
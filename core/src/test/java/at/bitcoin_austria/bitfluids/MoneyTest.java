@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class MoneyTest {
+    private static final BigDecimal SATOSHIS_PER_BITCOIN = BigDecimal.valueOf(100000000);
+
+    @Test
+    public void testExactConversions() {
+        assertEquals(1025873000L, Money.scaledPrice(10.25873));
+        assertEquals(1000000000L, Money.scaledPrice(10.0));
+        assertEquals(1L, Money.scaledPrice(0.00000001 * 100000) / 100000);
+        assertEquals(Money.INEXACT, Money.scaledPrice(10.123456789));
+        assertEquals(Money.INEXACT, Money.scaledPrice(-1));
+        assertEquals(Money.INEXACT, Money.scaledPrice(Double.NaN));
+        assertEquals(200L, Money.cents(2.0));
+        assertEquals(150L, Money.cents(1.5));
+        assertEquals(Money.INEXACT, Money.cents(1.505));
+        assertEquals(Money.INEXACT, Money.cents(Double.POSITIVE_INFINITY));
+        //0.15 BTC at 10 EUR
+        assertEquals(150L, Money.centsFor(15000000, 1000000000L, RoundingMode.UNNECESSARY));
+        assertEquals(15000000L, Money.satoshisFor(150, 1000000000L, RoundingMode.UNNECESSARY));
+        assertEquals(14620268L, Money.satoshisFor(150, 1025973000L, RoundingMode.HALF_UP));
+        assertEquals(14620267L, Money.satoshisFor(150, 1025973000L, RoundingMode.DOWN));
+    }
+
+    @Test
+    public void testMultiplyDivideLikeBigDecimal() {
+        Random random = new Random(42);
+        RoundingMode[] modes = {RoundingMode.DOWN, RoundingMode.UP, RoundingMode.FLOOR, RoundingMode.CEILING,
+                RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN};
+        for (int i = 0; i < 100000; i++) {
+            long a = random.nextLong() >>> (1 + random.nextInt(63));
+            long b = random.nextLong() >>> (1 + random.nextInt(63));
+            long divisor = Math.max(1, random.nextLong() >>> (1 + random.nextInt(63)));
+            //also exact halves
+            if (i % 4 == 0) {
+                divisor = 2 * (divisor >>> 2) + 2;
+                a = (a >>> 2) / divisor * divisor + divisor / 2;
+                b = 1;
+            }
+            RoundingMode mode = modes[i % modes.length];
+            BigDecimal expected = new BigDecimal(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)))
+                    .divide(BigDecimal.valueOf(divisor), 0, mode);
+            if (expected.toBigInteger().bitLength() >= 64) {
+                try {
+                    Money.multiplyDivide(a, b, divisor, mode);
+                    fail();
+                } catch (ArithmeticException ignored) {
+                }
+            } else {
+                assertEquals(expected.longValue(), Money.multiplyDivide(a, b, divisor, mode));
+            }
+        }
+        try {
+            Money.multiplyDivide(3, 1, 2, RoundingMode.UNNECESSARY);
+            fail();
+        } catch (ArithmeticException ignored) {
+        }
+    }
+
+    @Test
+    public void testDrinksLikeBigDecimal() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            //ticker prices have up to 5 decimals, averaged ones more
+            int decimals = random.nextInt(9);
+            long unscaled = 1 + (random.nextLong() >>> 1) % (long) Math.pow(10, 2 + random.nextInt(5) + decimals);
+            double price = BigDecimal.valueOf(unscaled, decimals).doubleValue();
+            long cents = 50 + random.nextInt(1000);
+            long satoshis = (random.nextLong() >>> 1) % (long) Math.pow(10, 4 + random.nextInt(12));
+            assertDrinks(satoshis, price, cents);
+        }
+    }
+
+    /**
+     * the BigDecimal version rounds twice, so just below x.5 drinks it already counts x + 1
+     */
+    @Test
+    public void testDrinksNearHalf() {
+        double[] prices = {10, 4.1, 10.25873, 7, 1234567, 0.5, 100.00001};
+        long[] cents = {150, 200, 333};
+        for (double price : prices) {
+            for (long drinkCents : cents) {
+                for (int drinks = 0; drinks < 50; drinks++) {
+                    //satoshis for drinks + 0.5
+                    long tie = BigDecimal.valueOf(drinks * 2 + 1).multiply(BigDecimal.valueOf(drinkCents))
+                            .multiply(BigDecimal.valueOf(500000))
+                            .divide(BigDecimal.valueOf(price), 0, RoundingMode.FLOOR).longValue();
+                    for (long satoshis = Math.max(0, tie - 5); satoshis < tie + 5; satoshis++) {
+                        assertDrinks(satoshis, price, drinkCents);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertDrinks(long satoshis, double price, long drinkCents) {
+        //what Tx2FluidsAdapter did before
+        BigDecimal euros = BigDecimal.valueOf(price).divide(SATOSHIS_PER_BITCOIN).multiply(BigDecimal.valueOf(satoshis));
+        BigDecimal anzahl = euros.divide(BigDecimal.valueOf(drinkCents / 100.0), RoundingMode.HALF_UP);
+        int expected = BigDecimal.valueOf(anzahl.add(BigDecimal.valueOf(0.5)).longValue()).intValue();
+        long scaledPrice = Money.scaledPrice(price);
+        if (scaledPrice != Money.INEXACT) {
+            assertEquals(satoshis + " at " + price, expected, Money.drinks(satoshis, scaledPrice, drinkCents));
+        }
+        FluidType type = drinkCents == 150 ? FluidType.COLA : drinkCents == 200 ? FluidType.MATE : null;
+        if (type != null) {
+            assertEquals(expected, Tx2FluidsAdapter.count(Bitcoins.valueOf(satoshis), price, type));
+        }
+    }
+
+    @Test
+    public void testSignificantFigures() {
+        assertEquals(15300000L, Money.roundToSignificantFigures(15250000, 3, RoundingMode.HALF_UP));
+        assertEquals(15200000L, Money.roundToSignificantFigures(15250000, 3, RoundingMode.HALF_EVEN));
+        assertEquals(100000000L, Money.roundToSignificantFigures(99950000, 3, RoundingMode.HALF_UP));
+        assertEquals(999L, Money.roundToSignificantFigures(999, 3, RoundingMode.HALF_UP));
+        assertEquals(0L, Money.roundToSignificantFigures(0, 3, RoundingMode.HALF_UP));
+        assertEquals("0.153", Bitcoins.valueOf(15250001).roundToSignificantFigures(3).toString());
+    }
+
+    /**
+     * the double version agrees, except where it truncated x.99999 or rounded an exact half down
+     */
+    @Test
+    public void testSignificantFiguresLikeDoubles() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            long value = (random.nextLong() >>> 1) % (long) Math.pow(10, 1 + random.nextInt(15));
+            int figures = 1 + random.nextInt(8);
+            long rounded = Money.roundToSignificantFigures(value, figures, RoundingMode.HALF_UP);
+            long unit = rounded == 0 ? 1 : (long) Math.pow(10, Math.max(0, Long.toString(value).length() - figures));
+            assertTrue(Math.abs(rounded - value) * 2 <= unit);
+            assertEquals(0, rounded % unit);
+            long old = roundWithDoubles(value, figures);
+            boolean half = (value % unit) * 2 == unit;
+            assertTrue(value + " " + figures, old == rounded || old == rounded - 1 || half && old == rounded - unit);
+        }
+    }
+
+    //what Bitcoins did before
+    private static long roundWithDoubles(long num, int n) {
+        if (num == 0) {
+            return 0;
+        }
+        final double d = Math.ceil(Math.log10(num < 0 ? -num : num));
+        final int power = n - (int) d;
+        final double magnitude = Math.pow(10, power);
+        final long shifted = Math.round(num * magnitude);
+        return (long) (shifted / magnitude);
+    }
+}
@@ -21,7 +21,6 @@ import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +28,7 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import java.io.File;
+import java.io.IOException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 
@@ -64,42 +64,20 @@ public abstract class NetTest {
       ClientConnectionManager ccm = base.getConnectionManager();
       SchemeRegistry sr = ccm.getSchemeRegistry();
       sr.register(new Scheme("https", ssf, 443));
-      return new DefaultHttpClient(ccm, base.getParams());
+      return base;
     } catch (Exception ex) {
       throw new RuntimeException(ex);
     }
   }
 
   protected final void runTest() {
-    Environment thisEnv = getEnvironment();
-    File tempBlockStore = new File(thisEnv.getBlockChainFilename());
-    tempBlockStore.mkdirs();
-    Tx2FluidsAdapter adapter = new Tx2FluidsAdapter(new PriceService(wrapClient(new DefaultHttpClient())), thisEnv);
-    TxNotifier notifier = adapter.convert(new FluidsNotifier() {
-      @Override
-      public void onFluidPaid(TransactionItem transactionItem) {
-          LOGGER.info("someone paid for " + transactionItem);
-      }
-
-      @Override
-      public void onError(String message, FluidType type, Bitcoins bitcoins) {
-        LOGGER.warn("someone paid for " + bitcoins + " " + type + " ");
-      }
-    });
-      BitcoinTransactionListener listener = new BitcoinTransactionListener(thisEnv);
-      listener.init(notifier);
-      listener.setStatsNotifier(new Stats() {
-          @Override
-          public void update(double tpm) {
-              System.out.println("tpm = " + tpm);
-          }
-      });
-      while (true) {
-      try {
-          Thread.sleep(1000);
-      } catch (InterruptedException e) {
-        throw new RuntimeException(e);
-      }
+    File dataDir = new File(System.getProperty("java.io.tmpdir"));
+    try {
+      new HeadlessWatcher(getEnvironment(), dataDir, wrapClient(PooledHttpClient.newInstance("Bitfluids test"))).run();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
     }
   }
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.NetworkParameters;
+import com.google.bitcoin.core.Utils;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class OutputMatcherTest {
+    private final byte[] hash160 = Environment.TEST.getKey200().getHash160();
+    private final byte[] pubKey = compressedPubKey();
+    private final OutputMatcher matcher = new OutputMatcher(
+            new AddressListIndex(Arrays.asList(Environment.TEST.getKey200())),
+            new WatchedPubKeys(Collections.singletonList(pubKey)));
+
+    @Test
+    public void testTemplates() {
+        assertEquals(ScriptTemplate.PAY_TO_PUBKEY_HASH, match(payToPubKeyHash(hash160)));
+        assertEquals(ScriptTemplate.PAY_TO_SCRIPT_HASH, match(concat(bytes(0xa9, 0x14), hash160, bytes(0x87))));
+        assertEquals(ScriptTemplate.PAY_TO_WITNESS_PUBKEY_HASH, match(concat(bytes(0x00, 0x14), hash160)));
+        assertEquals(ScriptTemplate.PAY_TO_PUBKEY, match(concat(bytes(33), pubKey, bytes(0xac))));
+        assertEquals(ScriptTemplate.NONSTANDARD, match(new byte[0]));
+        assertEquals(ScriptTemplate.NONSTANDARD, match(bytes(0x6a, 0x04, 1, 2, 3, 4))); //OP_RETURN
+        byte[] broken = payToPubKeyHash(hash160);
+        broken[24] = 0;
+        assertEquals(ScriptTemplate.NONSTANDARD, match(broken));
+    }
+
+    @Test
+    public void testMatchedHash160() {
+        byte[] script = concat(bytes(1, 2, 3), payToPubKeyHash(hash160));
+        assertTrue(matcher.matches(script, 3, 25));
+        assertEquals(Arrays.toString(hash160), Arrays.toString(matcher.matchedHash160(script, 3, 25)));
+        assertFalse(matcher.matches(script, 0, 25));
+
+        byte[] witness = concat(bytes(0x00, 0x14), hash160);
+        assertTrue(matcher.matches(witness, 0, witness.length));
+
+        byte[] other = payToPubKeyHash(Environment.TEST.getKey150().getHash160());
+        assertNull(matcher.matchedHash160(other, 0, other.length));
+    }
+
+    @Test
+    public void testPayToPubKey() {
+        byte[] script = concat(bytes(33), pubKey, bytes(0xac));
+        assertEquals(Arrays.toString(Utils.sha256hash160(pubKey)),
+                Arrays.toString(matcher.matchedHash160(script, 0, script.length)));
+        byte[] otherKey = pubKey.clone();
+        otherKey[10] ^= 1;
+        byte[] other = concat(bytes(33), otherKey, bytes(0xac));
+        assertFalse(matcher.matches(other, 0, other.length));
+    }
+
+    /**
+     * the environment keys are addresses only, pay-to-pubkey outputs are found by hashing the pubkey
+     */
+    @Test
+    public void testPayToPubKeyByAddress() {
+        WatchedAddresses addresses = new AddressListIndex(Arrays.asList(
+                new Address(NetworkParameters.testNet(), Utils.sha256hash160(pubKey))));
+        OutputMatcher byAddress = new OutputMatcher(addresses, WatchedPubKeys.hashing(addresses));
+        byte[] script = concat(bytes(33), pubKey, bytes(0xac));
+        assertEquals(Arrays.toString(Utils.sha256hash160(pubKey)),
+                Arrays.toString(byAddress.matchedHash160(script, 0, script.length)));
+        byte[] otherKey = pubKey.clone();
+        otherKey[10] ^= 1;
+        byte[] other = concat(bytes(33), otherKey, bytes(0xac));
+        assertFalse(byAddress.matches(other, 0, other.length));
+        assertFalse(new OutputMatcher(addresses, WatchedPubKeys.NONE).matches(script, 0, script.length));
+    }
+
+    /**
+     * sale keys are compared as they are, they only count while their address is watched
+     */
+    @Test
+    public void testGrowingPubKeys() {
+        final long[] now = {0};
+        ExpiringAddressIndex<FluidType> live = new ExpiringAddressIndex<FluidType>(1000, new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return now[0];
+            }
+        });
+        WatchedPubKeys saleKeys = WatchedPubKeys.growing(live, new AddressListIndex(Collections.<Address>emptyList()));
+        OutputMatcher growing = new OutputMatcher(live, saleKeys);
+        byte[] script = concat(bytes(33), pubKey, bytes(0xac));
+        live.watch(new Address(NetworkParameters.testNet(), Utils.sha256hash160(pubKey)), FluidType.MATE);
+        //watched by address, but not a known key, so it is not hashed
+        assertFalse(growing.matches(script, 0, script.length));
+
+        saleKeys.add(pubKey);
+        assertEquals(1, saleKeys.size());
+        assertEquals(Arrays.toString(Utils.sha256hash160(pubKey)),
+                Arrays.toString(growing.matchedHash160(script, 0, script.length)));
+
+        now[0] = 1000;
+        assertFalse(growing.matches(script, 0, script.length));
+        //the next key drops the expired one
+        byte[] otherKey = pubKey.clone();
+        otherKey[10] ^= 1;
+        live.watch(new Address(NetworkParameters.testNet(), Utils.sha256hash160(otherKey)), FluidType.COLA);
+        saleKeys.add(otherKey);
+        assertEquals(1, saleKeys.size());
+    }
+
+    private static ScriptTemplate match(byte[] script) {
+        return ScriptTemplate.match(script, 0, script.length);
+    }
+
+    static byte[] payToPubKeyHash(byte[] hash160) {
+        return concat(bytes(0x76, 0xa9, 0x14), hash160, bytes(0x88, 0xac));
+    }
+
+    private static byte[] compressedPubKey() {
+        byte[] ret = new byte[33];
+        ret[0] = 0x02;
+        for (int i = 1; i < ret.length; i++) {
+            ret[i] = (byte) i;
+        }
+        return ret;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] ret = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ret[i] = (byte) values[i];
+        }
+        return ret;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] ret = new byte[length];
+        int pos = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, ret, pos, part.length);
+            pos += part.length;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import at.bitcoin_austria.bitfluids.trafficSignal.Status;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class PriceAggregatorTest {
+
+    @Test
+    public void testMedianWithoutOutlier() throws RemoteSystemFail {
+        PriceAggregator aggregator = new PriceAggregator(Arrays.<PriceSource>asList(
+                new FixedSource(10.0, 0), new FixedSource(10.2, 0), new FixedSource(10.4, 0), new FixedSource(50, 0)),
+                1000, 500, 0.05);
+        PriceAggregator.Result result = aggregator.fetch();
+        assertEquals(10.2, result.eurPerBitcoin, 0.0001);
+        assertEquals(3, result.healthySources);
+        assertEquals(Status.YELLOW, result.getStatus());
+        aggregator.shutdown();
+    }
+
+    @Test
+    public void testSlowSourceIsIgnored() throws RemoteSystemFail {
+        PriceAggregator aggregator = new PriceAggregator(Arrays.<PriceSource>asList(
+                new FixedSource(10.0, 0), new FixedSource(12.0, 0), new FixedSource(100, 5000)),
+                300, 1000, 0.5);
+        long start = System.currentTimeMillis();
+        PriceAggregator.Result result = aggregator.fetch();
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(11.0, result.eurPerBitcoin, 0.0001);
+        assertEquals(Status.YELLOW, result.getStatus());
+        aggregator.shutdown();
+    }
+
+    @Test
+    public void testAllAgree() throws RemoteSystemFail {
+        PriceAggregator aggregator = new PriceAggregator(Arrays.<PriceSource>asList(
+                new FixedSource(10.0, 0), new FixedSource(10.1, 10)));
+        PriceAggregator.Result result = aggregator.fetch();
+        assertEquals(10.05, result.eurPerBitcoin, 0.0001);
+        assertEquals(Status.GREEN, result.getStatus());
+        aggregator.shutdown();
+    }
+
+    @Test
+    public void testAllFailing() {
+        PriceAggregator aggregator = new PriceAggregator(Arrays.<PriceSource>asList(
+                new FailingSource(), new FailingSource()), 1000, 500, 0.05);
+        try {
+            aggregator.fetch();
+            fail("expected RemoteSystemFail");
+        } catch (RemoteSystemFail expected) {
+            //all sources failed
+        }
+        aggregator.shutdown();
+    }
+
+    @Test
+    public void testHedgedRequestWins() throws RemoteSystemFail {
+        //the first request hangs, the second one answers at once
+        final AtomicInteger calls = new AtomicInteger();
+        PriceSource flaky = new PriceSource() {
+            @Override
+            public String getName() {
+                return "flaky";
+            }
+
+            @Override
+            public double fetchEurPerBitcoin() throws RemoteSystemFail {
+                if (calls.getAndIncrement() == 0) {
+                    sleep(5000);
+                }
+                return 10.0;
+            }
+        };
+        PriceAggregator aggregator = new PriceAggregator(Arrays.asList(flaky), 3000, 100, 0.05);
+        long start = System.currentTimeMillis();
+        PriceAggregator.Result result = aggregator.fetch();
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(10.0, result.eurPerBitcoin, 0.0001);
+        assertEquals(Status.GREEN, result.getStatus());
+        assertEquals(2, calls.get());
+        aggregator.shutdown();
+    }
+
+    @Test
+    public void testMedian() {
+        assertEquals(2.0, PriceAggregator.median(new double[]{3, 1, 2, 99}, 3), 0.0);
+        assertEquals(2.5, PriceAggregator.median(new double[]{4, 1, 3, 2}, 4), 0.0);
+    }
+
+    private static class FixedSource implements PriceSource {
+        private final double price;
+        private final long delayMillis;
+
+        FixedSource(double price, long delayMillis) {
+            this.price = price;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public String getName() {
+            return "fixed " + price;
+        }
+
+        @Override
+        public double fetchEurPerBitcoin() throws RemoteSystemFail {
+            sleep(delayMillis);
+            return price;
+        }
+    }
+
+    private static class FailingSource implements PriceSource {
+        @Override
+        public String getName() {
+            return "failing";
+        }
+
+        @Override
+        public double fetchEurPerBitcoin() throws RemoteSystemFail {
+            throw new RemoteSystemFail("down");
+        }
+    }
+
+    private static void sleep(long millis) throws RemoteSystemFail {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RemoteSystemFail(e);
+        }
+    }
+}
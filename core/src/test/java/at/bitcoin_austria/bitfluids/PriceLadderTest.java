@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class PriceLadderTest {
+    private static final PriceLadder.Item MATE = new PriceLadder.Item(FluidType.MATE, 1);
+    private static final PriceLadder.Item COLA = new PriceLadder.Item(FluidType.COLA, 1);
+
+    @Test
+    public void testNeighbouringSteps() {
+        PriceLadder ladder = new PriceLadder(Arrays.asList(MATE), 3, 2);
+        //2 EUR at 13.16 EUR/BTC are 0.15197 BTC
+        List<PriceLadder.Step> steps = ladder.plan(13.16, 0.01, 10);
+        assertEquals(5, steps.size());
+        assertEquals(shown(0.152), steps.get(0).amount);
+        assertEquals(0.0, steps.get(0).sigmas);
+        //0.15197 is closer to the lower step
+        assertEquals(shown(0.151), steps.get(1).amount);
+        assertEquals(shown(0.153), steps.get(2).amount);
+        assertAmounts(steps, 0.150, 0.151, 0.152, 0.153, 0.154);
+        for (int i = 1; i < steps.size(); i++) {
+            assertTrue(steps.get(i - 1).sigmas <= steps.get(i).sigmas);
+        }
+    }
+
+    @Test
+    public void testCrossesDecade() {
+        PriceLadder ladder = new PriceLadder(Arrays.asList(MATE), 3, 2);
+        assertAmounts(ladder.plan(20.0, 0.01, 10), 0.0998, 0.0999, 0.1, 0.101, 0.102);
+    }
+
+    @Test
+    public void testMatchesDisplayedAmount() {
+        PriceLadder ladder = new PriceLadder(Arrays.asList(MATE, COLA), 3, 1);
+        for (double rate = 5; rate < 500; rate *= 1.013) {
+            List<PriceLadder.Step> steps = ladder.plan(rate, 0.01, 2);
+            assertEquals(shown(2.0 / rate), steps.get(0).amount);
+            assertEquals(shown(1.5 / rate), steps.get(1).amount);
+            //the neighbours are exactly what is shown after a move smaller than one step
+            Bitcoins up = ladder.currentAmount(MATE, rate * 0.9995);
+            Bitcoins down = ladder.currentAmount(MATE, rate * 1.0005);
+            List<PriceLadder.Step> all = ladder.plan(rate, 0.01, 10);
+            assertTrue(containsAmount(all, up) || up.equals(steps.get(0).amount));
+            assertTrue(containsAmount(all, down) || down.equals(steps.get(0).amount));
+        }
+    }
+
+    @Test
+    public void testVolatilityPrefersLikelySteps() {
+        PriceLadder ladder = new PriceLadder(Arrays.asList(MATE, COLA), 3, 3);
+        List<PriceLadder.Step> steps = ladder.plan(13.16, 0.01, 6);
+        assertEquals(6, steps.size());
+        //both current amounts come first, then the closest neighbours of either drink
+        assertEquals(0.0, steps.get(0).sigmas);
+        assertEquals(0.0, steps.get(1).sigmas);
+        for (int i = 2; i < steps.size(); i++) {
+            assertTrue(steps.get(i).sigmas < 3);
+        }
+    }
+
+    @Test
+    public void testMultipleItems() {
+        PriceLadder ladder = new PriceLadder(Arrays.asList(new PriceLadder.Item(FluidType.MATE, 3)), 3, 0);
+        assertEquals(shown(6.0 / 13.16), ladder.plan(13.16, 0.01, 1).get(0).amount);
+    }
+
+    @Test
+    public void testVolatilityEstimator() {
+        VolatilityEstimator estimator = new VolatilityEstimator(0.005);
+        assertEquals(0.005, estimator.getRelativeStdDev(), 1e-9);
+        estimator.update(10);
+        estimator.update(10);
+        assertEquals(0.005, estimator.getRelativeStdDev(), 1e-9);
+        for (int i = 0; i < 20; i++) {
+            estimator.update(i % 2 == 0 ? 11 : 10);
+        }
+        assertTrue(estimator.getRelativeStdDev() > 0.08);
+    }
+
+    private static boolean containsAmount(List<PriceLadder.Step> steps, Bitcoins amount) {
+        for (PriceLadder.Step step : steps) {
+            if (step.amount.equals(amount)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the amount as QueryBtcEur displays it
+     */
+    private static Bitcoins shown(double btc) {
+        return Bitcoins.nearestValue(btc).roundToSignificantFigures(3);
+    }
+
+    private static void assertAmounts(List<PriceLadder.Step> steps, double... expected) {
+        Set<Bitcoins> expectedAmounts = new HashSet<Bitcoins>();
+        for (double btc : expected) {
+            expectedAmounts.add(shown(btc));
+        }
+        Set<Bitcoins> actual = new HashSet<Bitcoins>();
+        for (PriceLadder.Step step : steps) {
+            actual.add(step.amount);
+        }
+        assertEquals(expectedAmounts, actual);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+public class PriceServiceTest {
+
+    @Test(timeout = 5000)
+    public void testFetch() throws RemoteSystemFail {
+        PriceService priceService = fixedPrice(10.0);
+        assertEquals(10.0, priceService.fetchEurQuote(), 0.0001);
+        assertEquals(10.0, priceService.getEurQuote(), 0.0001);
+        priceService.shutdown();
+    }
+
+    @Test(timeout = 5000)
+    public void testFetchAfterShutdown() {
+        PriceService priceService = fixedPrice(10.0);
+        priceService.shutdown();
+        for (int i = 0; i < 2; i++) {
+            try {
+                priceService.fetchEurQuote();
+                fail("expected RemoteSystemFail");
+            } catch (RemoteSystemFail expected) {
+                //the second time must not wait for the refresh which was rejected the first time
+            }
+        }
+    }
+
+    private static PriceService fixedPrice(final double eurPerBitcoin) {
+        return new PriceService(new PriceAggregator(Collections.<PriceSource>singletonList(new PriceSource() {
+            @Override
+            public String getName() {
+                return "fixed";
+            }
+
+            @Override
+            public double fetchEurPerBitcoin() {
+                return eurPerBitcoin;
+            }
+        })), new EventDispatcher());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class QrPrerendererTest {
+
+    @Test
+    public void testPrerenderedCodesAreCacheHits() throws InterruptedException {
+        final List<String> rendered = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(3);
+        QrPrerenderer<String> prerenderer = new QrPrerenderer<String>(new QrPrerenderer.Renderer<String>() {
+            @Override
+            public String render(String uri) {
+                rendered.add(uri);
+                done.countDown();
+                return "code " + uri;
+            }
+        }, 8, 2);
+        prerenderer.prerender(Arrays.asList("a", "b", "c"));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50); //the last put happens after the count down
+        assertEquals("code b", prerenderer.get("b"));
+        assertEquals("code d", prerenderer.get("d"));
+        assertEquals(4, rendered.size());
+        assertEquals(1, prerenderer.getCache().getHits());
+        assertEquals(1, prerenderer.getCache().getMisses());
+        prerenderer.shutdown();
+    }
+
+    @Test
+    public void testNewPlanReplacesOld() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> rendered = Collections.synchronizedList(new ArrayList<String>());
+        QrPrerenderer<String> prerenderer = new QrPrerenderer<String>(new QrPrerenderer.Renderer<String>() {
+            @Override
+            public String render(String uri) {
+                if (uri.equals("slow")) {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                rendered.add(uri);
+                return uri;
+            }
+        }, 8, 1);
+        prerenderer.prerender(Arrays.asList("slow", "old1", "old2"));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        prerenderer.prerender(Arrays.asList("new1", "new2"));
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!prerenderer.getCache().containsKey("new2") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.asList("slow", "new1", "new2"), rendered);
+        prerenderer.shutdown();
+    }
+}
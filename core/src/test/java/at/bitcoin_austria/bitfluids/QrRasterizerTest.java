@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import org.junit.Test;
+
+import java.util.Hashtable;
+
+import static junit.framework.Assert.assertEquals;
+
+public class QrRasterizerTest {
+    private static final int DARK = 0xFF000000;
+    private static final int LIGHT = 0xFFFFFFFF;
+    private static final String[] URIS = {
+            "bitcoin:184bebdTa792ueyzQxUseXTpvAP5wXNTq1?amount=0.152&label=Club%20Mate",
+            "bitcoin:1JLMzJuRZGFm4hzNuWRREZFbE1LhJtvFk?amount=0.114&label=Cola",
+            "bitcoin:1JLMzJuRZGFm4hzNuWRREZFbE1LhJtvFk"};
+
+    @Test
+    public void testSameAsQrCodeWriter() throws WriterException {
+        QrRasterizer rasterizer = new QrRasterizer(DARK, LIGHT);
+        for (String uri : URIS) {
+            for (int size : new int[]{1, 100, 256, 512, 777, 1024}) {
+                BitMatrix expected = writerResult(uri, size);
+                ByteMatrix modules = QrRasterizer.encode(uri, ErrorCorrectionLevel.M);
+                int outputSize = QrRasterizer.outputSize(modules, size);
+                assertEquals(expected.getWidth(), outputSize);
+                assertEquals(expected.getHeight(), outputSize);
+                int[] pixels = rasterizer.rasterize(modules, size);
+                assertEquals(outputSize * outputSize, pixels.length);
+                for (int y = 0; y < outputSize; y++) {
+                    for (int x = 0; x < outputSize; x++) {
+                        int want = expected.get(x, y) ? DARK : LIGHT;
+                        if (pixels[y * outputSize + x] != want) {
+                            assertEquals(uri + " size " + size + " at " + x + "," + y, want, pixels[y * outputSize + x]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReusesBuffer() throws WriterException {
+        QrRasterizer rasterizer = new QrRasterizer(DARK, LIGHT);
+        ByteMatrix first = QrRasterizer.encode(URIS[0], ErrorCorrectionLevel.M);
+        ByteMatrix second = QrRasterizer.encode(URIS[1], ErrorCorrectionLevel.M);
+        int[] buffer = new int[512 * 512];
+        rasterizer.rasterize(first, 512, buffer);
+        rasterizer.rasterize(second, 512, buffer);
+        int[] fresh = rasterizer.rasterize(second, 512);
+        for (int i = 0; i < fresh.length; i++) {
+            if (fresh[i] != buffer[i]) {
+                assertEquals("pixel " + i, fresh[i], buffer[i]);
+            }
+        }
+    }
+
+    private static BitMatrix writerResult(String uri, int size) throws WriterException {
+        Hashtable<EncodeHintType, Object> hints = new Hashtable<EncodeHintType, Object>();
+        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
+        return new QRCodeWriter().encode(uri, BarcodeFormat.QR_CODE, size, size, hints);
+    }
+}
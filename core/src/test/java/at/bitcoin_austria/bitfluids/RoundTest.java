@@ -17,6 +17,7 @@
 package at.bitcoin_austria.bitfluids;
 
 import com.google.bitcoin.core.Sha256Hash;
+import org.apache.http.client.HttpClient;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -44,7 +45,7 @@ public class RoundTest {
     }
 
     private void testRounding(final double expectedValue, Bitcoins bitcoins, final double epsilon) {
-        PriceService priceService = new PriceService(null) {
+        PriceService priceService = new PriceService((HttpClient) null, new EventDispatcher()) {
             @Override
             public synchronized Double getEurQuote() throws RemoteSystemFail {
                 return 4.1;
@@ -60,7 +61,7 @@ public class RoundTest {
             }
 
             @Override
-            public void onError(String message, FluidType type, Bitcoins bitcoins) {
+            public void onError(String message, FluidType type, Bitcoins bitcoins, Sha256Hash hash) {
 
             }
         });
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.AddressFormatException;
+import com.google.bitcoin.core.NetworkParameters;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class SaleAddressLogTest {
+    private static final NetworkParameters PARAMS = NetworkParameters.prodNet();
+
+    private File file;
+    private ExtendedPublicKey master;
+
+    @Before
+    public void setUp() throws IOException, AddressFormatException {
+        file = File.createTempFile("sale-addresses", ".bin");
+        file.delete();
+        master = ExtendedPublicKey.parse(AddressPoolTest.MASTER);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testKeepsTheNewest() throws IOException {
+        SaleAddressLog log = new SaleAddressLog(file, 3);
+        for (int i = 0; i < 5; i++) {
+            log.append(master.derive(i).getPublicKey(), i % 2 == 0 ? FluidType.MATE : FluidType.COLA);
+        }
+        log.close();
+
+        SaleAddressLog reopened = new SaleAddressLog(file, 3);
+        List<SaleAddressLog.Entry> entries = reopened.read();
+        assertEquals(3, entries.size());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(Arrays.equals(master.derive(i + 2).getPublicKey(), entries.get(i).publicKey));
+            assertEquals(i % 2 == 0 ? FluidType.MATE : FluidType.COLA, entries.get(i).type);
+        }
+        reopened.close();
+
+        //another capacity starts over
+        SaleAddressLog resized = new SaleAddressLog(file, 4);
+        assertEquals(0, resized.read().size());
+        resized.close();
+    }
+
+    @Test
+    public void testWatchedAgainAfterRestart() throws IOException {
+        ExtendedPublicKey shown = master.derive(7);
+        SaleAddressLog log = new SaleAddressLog(file, 8);
+        log.append(shown.getPublicKey(), FluidType.COLA);
+        log.close();
+
+        //what the tablet sets up on start, before any address is shown
+        ExpiringAddressIndex<FluidType> watched = new ExpiringAddressIndex<FluidType>(60000, Clock.SYSTEM);
+        WatchedPubKeys saleKeys = WatchedPubKeys.growing(watched, BitcoinTransactionListener.fixedKeys(Environment.PROD));
+        Address address = shown.toAddress(PARAMS);
+        assertNull(watched.get(address));
+
+        SaleAddressLog restarted = new SaleAddressLog(file, 8);
+        assertEquals(1, restarted.restore(watched, saleKeys, PARAMS));
+        restarted.close();
+        assertEquals(FluidType.COLA, watched.get(address));
+        byte[] publicKey = shown.getPublicKey();
+        assertTrue(Arrays.equals(address.getHash160(), saleKeys.hash160Of(publicKey, 0, publicKey.length)));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Sha256Hash;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+public class SalesJournalTest {
+    private File dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = File.createTempFile("journal", "");
+        dir.delete();
+    }
+
+    @After
+    public void deleteDir() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testRestoresAfterReopen() throws IOException {
+        SalesJournal journal = new SalesJournal(dir, 100, 4, 10);
+        for (int i = 0; i < 10; i++) {
+            journal.append(item(i));
+        }
+        journal.close();
+
+        journal = new SalesJournal(dir, 100, 4, 10);
+        List<TransactionItem> recent = journal.readRecent(3);
+        assertEquals(3, recent.size());
+        assertItem(7, recent.get(0));
+        assertItem(9, recent.get(2));
+        journal.append(item(10));
+        recent = journal.readRecent(100);
+        assertEquals(11, recent.size());
+        assertItem(0, recent.get(0));
+        assertItem(10, recent.get(10));
+        journal.close();
+    }
+
+    @Test
+    public void testErrorItem() throws IOException {
+        SalesJournal journal = new SalesJournal(dir, 100, 4, 10);
+        journal.append(new TransactionItem(null, null, 0, Double.NaN, Sha256Hash.ZERO_HASH));
+        TransactionItem restored = journal.readRecent(1).get(0);
+        assertNull(restored.fluidType);
+        assertNull(restored.paid);
+        assertEquals(Double.NaN, restored.euroPerBitcoin);
+        assertEquals(Sha256Hash.ZERO_HASH, restored.hash);
+        journal.close();
+    }
+
+    @Test
+    public void testRollsAndDropsOldSegments() throws IOException {
+        SalesJournal journal = new SalesJournal(dir, 5, 3, 10);
+        for (int i = 0; i < 23; i++) {
+            journal.append(item(i));
+        }
+        //segments of 5 records, 3 kept: 10..14, 15..19, 20..22
+        assertEquals(3, dir.list().length);
+        List<TransactionItem> recent = journal.readRecent(100);
+        assertEquals(13, recent.size());
+        assertItem(10, recent.get(0));
+        assertItem(22, recent.get(12));
+        recent = journal.readRecent(7);
+        assertItem(16, recent.get(0));
+        journal.close();
+
+        journal = new SalesJournal(dir, 5, 3, 10);
+        assertItem(22, journal.readRecent(1).get(0));
+        journal.close();
+    }
+
+    @Test
+    public void testDropsTornRecord() throws IOException {
+        SalesJournal journal = new SalesJournal(dir, 100, 4, 10);
+        for (int i = 0; i < 4; i++) {
+            journal.append(item(i));
+        }
+        journal.close();
+        //a crash in the middle of writing the last record
+        File segment = dir.listFiles()[0];
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        raf.seek(16 + 3 * SalesJournal.RECORD_SIZE + 20);
+        raf.write(new byte[10]);
+        raf.close();
+
+        journal = new SalesJournal(dir, 100, 4, 10);
+        List<TransactionItem> recent = journal.readRecent(10);
+        assertEquals(3, recent.size());
+        journal.append(item(4));
+        recent = journal.readRecent(10);
+        assertEquals(4, recent.size());
+        assertItem(4, recent.get(3));
+        journal.close();
+    }
+
+    private static TransactionItem item(int i) {
+        byte[] hash = new byte[32];
+        hash[0] = (byte) i;
+        hash[31] = 1;
+        return new TransactionItem(i % 2 == 0 ? FluidType.MATE : FluidType.COLA,
+                Bitcoins.valueOf(1000000L + i), i % 3 + 1, 10.5 + i, new Sha256Hash(hash));
+    }
+
+    private static void assertItem(int i, TransactionItem actual) {
+        TransactionItem expected = item(i);
+        assertEquals(expected.hash, actual.hash);
+        assertEquals(expected.fluidType, actual.fluidType);
+        assertEquals(expected.paid, actual.paid);
+        assertEquals(expected.count, actual.count);
+        assertEquals(expected.euroPerBitcoin, actual.euroPerBitcoin);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Sha256Hash;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class SeenTransactionsTest {
+
+    @Test
+    public void testAddOnce() {
+        SeenTransactions seen = new SeenTransactions(100);
+        Sha256Hash hash = randomHashes(1, 1)[0];
+        assertFalse(seen.contains(hash));
+        assertTrue(seen.add(hash));
+        assertFalse(seen.add(hash));
+        assertTrue(seen.contains(hash));
+        assertTrue(seen.add(Sha256Hash.ZERO_HASH));
+        assertFalse(seen.add(Sha256Hash.ZERO_HASH));
+    }
+
+    @Test
+    public void testEviction() {
+        SeenTransactions seen = new SeenTransactions(1000);
+        Sha256Hash[] hashes = randomHashes(2, 100000);
+        for (Sha256Hash hash : hashes) {
+            assertTrue(seen.add(hash));
+        }
+        int remembered = 0;
+        for (Sha256Hash hash : hashes) {
+            if (seen.contains(hash)) {
+                remembered++;
+            }
+        }
+        assertTrue("remembered " + remembered, remembered >= 1000 && remembered <= 2 * 1024);
+        for (int i = hashes.length - 500; i < hashes.length; i++) {
+            assertTrue(seen.contains(hashes[i]));
+        }
+    }
+
+    /**
+     * several "peers" relay the same transactions at the same time, every hash must win exactly once
+     */
+    @Test
+    public void testConcurrentPeers() throws InterruptedException {
+        final int peers = 8;
+        final Sha256Hash[] hashes = randomHashes(3, 50000);
+        final SeenTransactions seen = new SeenTransactions(hashes.length);
+        final AtomicInteger firstSeen = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(peers);
+        for (int p = 0; p < peers; p++) {
+            final int peer = p;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        //every peer starts somewhere else in the stream
+                        for (int i = 0; i < hashes.length; i++) {
+                            if (seen.add(hashes[(i + peer * 997) % hashes.length])) {
+                                firstSeen.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        assertEquals(hashes.length, firstSeen.get());
+    }
+
+    private static Sha256Hash[] randomHashes(long seed, int count) {
+        Random random = new Random(seed);
+        Sha256Hash[] ret = new Sha256Hash[count];
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[32];
+            random.nextBytes(bytes);
+            ret[i] = new Sha256Hash(bytes);
+        }
+        return ret;
+    }
+}
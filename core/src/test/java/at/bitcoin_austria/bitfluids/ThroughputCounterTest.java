@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class ThroughputCounterTest {
+    private static final long START = 1000000L * 1000;
+
+    @Test
+    public void testWindows() {
+        ThroughputCounter counter = new ThroughputCounter(START);
+        //one transaction per second for 10 minutes
+        for (int second = 0; second < 600; second++) {
+            counter.record(START + second * 1000L + 500);
+        }
+        StatsSnapshot snapshot = counter.snapshot(START + 599 * 1000L);
+        assertEquals(60.0, snapshot.perMinute1, 0.001);
+        assertEquals(60.0, snapshot.perMinute5, 0.001);
+        assertEquals(60.0, snapshot.perMinute60, 0.001); //only ran for 10 minutes
+        assertEquals(60, snapshot.peakPerMinute);
+        assertEquals(1, snapshot.peakPerSecond);
+
+        //quiet for two minutes: the 1 minute window is empty, the others still remember
+        snapshot = counter.snapshot(START + 720 * 1000L);
+        assertEquals(0.0, snapshot.perMinute1, 0.001);
+        assertEquals(179 * 60.0 / 300, snapshot.perMinute5, 0.001);
+        assertEquals(600 * 60.0 / 721, snapshot.perMinute60, 0.001);
+    }
+
+    @Test
+    public void testPeakAndPublishing() {
+        ThroughputCounter counter = new ThroughputCounter(START);
+        assertTrue(counter.record(START + 1000));
+        for (int i = 0; i < 99; i++) {
+            assertFalse(counter.record(START + 1500));
+        }
+        assertTrue(counter.record(START + 2000));
+        StatsSnapshot snapshot = counter.snapshot(START + 2000);
+        assertEquals(100, snapshot.peakPerSecond);
+        assertEquals(101, snapshot.peakPerMinute);
+        assertEquals(101 * 60.0 / 3, snapshot.perMinute1, 0.001);
+    }
+
+    @Test
+    public void testLongIdle() {
+        ThroughputCounter counter = new ThroughputCounter(START);
+        counter.record(START);
+        counter.record(START + 2 * 3600 * 1000L);
+        StatsSnapshot snapshot = counter.snapshot(START + 2 * 3600 * 1000L);
+        assertEquals(1.0, snapshot.perMinute1, 0.001);
+        assertEquals(1.0 / 60, snapshot.perMinute60, 0.001);
+    }
+
+    /**
+     * replays and tests start their clock at 0, the windows then reach before it
+     */
+    @Test
+    public void testStartsAtZero() {
+        ThroughputCounter counter = new ThroughputCounter(0);
+        for (int second = 0; second < 120; second++) {
+            counter.record(second * 1000L);
+        }
+        StatsSnapshot snapshot = counter.snapshot(119 * 1000L);
+        assertEquals(60.0, snapshot.perMinute1, 0.001);
+        assertEquals(60.0, snapshot.perMinute5, 0.001);
+        assertEquals(60, snapshot.peakPerMinute);
+    }
+}
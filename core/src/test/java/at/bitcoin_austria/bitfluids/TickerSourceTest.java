@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class TickerSourceTest {
+    private static final String ETAG = "\"v1\"";
+
+    private ServerSocket serverSocket;
+    private DefaultHttpClient httpClient;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger conditionalRequests = new AtomicInteger();
+    private volatile String status = "200 OK";
+
+    @Before
+    public void startServer() throws IOException {
+        serverSocket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = serverSocket.accept();
+                        connections.incrementAndGet();
+                        Thread handler = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                } catch (IOException e) {
+                    //server socket closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        httpClient = PooledHttpClient.newInstance("bitfluids test");
+    }
+
+    /**
+     * a minimal HTTP/1.1 ticker which keeps the connection open, like the exchanges do.
+     * answers 304 without Content-Length if the ETag matches.
+     */
+    private void serve(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            OutputStream out = socket.getOutputStream();
+            while (in.readLine() != null) {
+                boolean conditional = false;
+                String line;
+                while ((line = in.readLine()) != null && line.length() > 0) {
+                    if (line.equalsIgnoreCase("If-None-Match: " + ETAG)) {
+                        conditional = true;
+                    }
+                }
+                if (conditional) {
+                    conditionalRequests.incrementAndGet();
+                    out.write("HTTP/1.1 304 Not Modified\r\nETag: \"v1\"\r\n\r\n".getBytes("US-ASCII"));
+                } else {
+                    byte[] body = JsonPathExtractorTest.MTGOX_TICKER.getBytes("UTF-8");
+                    out.write(("HTTP/1.1 " + status + "\r\nETag: " + ETAG + "\r\nContent-Length: " + body.length + "\r\n\r\n")
+                            .getBytes("US-ASCII"));
+                    out.write(body);
+                    fullResponses.incrementAndGet();
+                }
+                out.flush();
+            }
+            socket.close();
+        } catch (IOException e) {
+            //client went away
+        }
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        httpClient.getConnectionManager().shutdown();
+        serverSocket.close();
+    }
+
+    @Test
+    public void testConditionalRequestsOnKeptAliveConnection() throws RemoteSystemFail {
+        TickerSource source = new TickerSource("stub", httpClient, url(), TickerSource.MTGOX_PATH);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(10.25873, source.fetchEurPerBitcoin(), 0.0);
+        }
+        assertEquals(1, fullResponses.get());
+        assertEquals(4, conditionalRequests.get());
+        assertEquals(1, connections.get());
+
+        HttpStats stats = source.getStats();
+        assertEquals(5, stats.getRequests());
+        assertEquals(0, stats.getFailures());
+        assertEquals(4, stats.getNotModified());
+        assertEquals(4, stats.getReusedConnections());
+    }
+
+    @Test
+    public void testErrorStatus() {
+        status = "503 Service Unavailable";
+        TickerSource source = new TickerSource("stub", httpClient, url(), TickerSource.MTGOX_PATH);
+        try {
+            source.fetchEurPerBitcoin();
+            fail("expected RemoteSystemFail");
+        } catch (RemoteSystemFail expected) {
+            //503
+        }
+        assertEquals(1, source.getStats().getRequests());
+        assertEquals(1, source.getStats().getFailures());
+    }
+
+    @Test
+    public void testConfiguredSources() throws IOException, RemoteSystemFail {
+        File dataDir = File.createTempFile("tickers", "");
+        dataDir.delete();
+        dataDir.mkdirs();
+        assertTrue(TickerSource.configured(dataDir, httpClient).size() >= 2);
+
+        File config = new File(dataDir, TickerSource.CONFIG_FILE);
+        FileWriter out = new FileWriter(config);
+        out.write("# a local ticker\n\nstub  " + url() + "  " + TickerSource.MTGOX_PATH + "\n");
+        out.close();
+        List<PriceSource> sources = TickerSource.configured(dataDir, httpClient);
+        assertEquals(1, sources.size());
+        assertEquals("stub", sources.get(0).getName());
+        assertEquals(10.25873, sources.get(0).fetchEurPerBitcoin(), 0.0);
+
+        out = new FileWriter(config);
+        out.write("stub " + url() + "\n");
+        out.close();
+        try {
+            TickerSource.configured(dataDir, httpClient);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            //no path
+        }
+        config.delete();
+        dataDir.delete();
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/ticker";
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class TrafficRecorderTest {
+    private File file;
+    private long now;
+    private final Clock clock = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    };
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("traffic", "");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        now = 1345000000000L;
+        TrafficRecorder recorder = new TrafficRecorder(file, clock);
+        recorder.record(TrafficRecorder.TYPE_TRANSACTION, new byte[]{1, 2, 3});
+        now += 200;
+        recorder.record(TrafficRecorder.TYPE_BLOCK, new byte[100000]);
+        now -= 50;
+        recorder.record(TrafficRecorder.TYPE_TRANSACTION, new byte[0]);
+        recorder.close();
+
+        TrafficRecorder.Reader reader = TrafficRecorder.open(file);
+        assertTrue(reader.next());
+        assertEquals(TrafficRecorder.TYPE_TRANSACTION, reader.getType());
+        assertEquals(1345000000000L, reader.getTimeMillis());
+        assertEquals(3, reader.getLength());
+        assertEquals(3, reader.getPayload()[2]);
+        assertTrue(reader.next());
+        assertEquals(TrafficRecorder.TYPE_BLOCK, reader.getType());
+        assertEquals(1345000000200L, reader.getTimeMillis());
+        assertEquals(100000, reader.getLength());
+        //the clock went back, the record keeps the time of the one before
+        assertTrue(reader.next());
+        assertEquals(1345000000200L, reader.getTimeMillis());
+        assertEquals(0, reader.getLength());
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testTruncatedRecordEndsReading() throws IOException {
+        TrafficRecorder recorder = new TrafficRecorder(file, clock);
+        recorder.record(TrafficRecorder.TYPE_TRANSACTION, new byte[10]);
+        recorder.record(TrafficRecorder.TYPE_TRANSACTION, new byte[10]);
+        recorder.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 4);
+        raf.close();
+
+        TrafficRecorder.Reader reader = TrafficRecorder.open(file);
+        assertTrue(reader.next());
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeBytes("not a recording");
+        raf.close();
+        try {
+            TrafficRecorder.open(file);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 Bitcoin Austria
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package at.bitcoin_austria.bitfluids;
+
+import com.google.bitcoin.core.Address;
+import com.google.bitcoin.core.Sha256Hash;
+import org.apache.http.client.HttpClient;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+
+public class Tx2FluidsAdapterTest {
+
+    @Test
+    public void testUnpricedPaymentKeepsItsHash() {
+        PriceService priceService = new PriceService((HttpClient) null, new EventDispatcher()) {
+            @Override
+            public synchronized Double getEurQuote() throws RemoteSystemFail {
+                throw new RemoteSystemFail("no source answered");
+            }
+        };
+        List<TransactionItem> unpriced = new ArrayList<TransactionItem>();
+        TxNotifier notifier = new Tx2FluidsAdapter(priceService, Environment.TEST).convert(collecting(unpriced));
+        Sha256Hash hash = BinaryCodecTest.hash(3);
+        notifier.onValue(Bitcoins.valueOf(2000000L), Environment.TEST.getKey150(), hash);
+
+        assertEquals(1, unpriced.size());
+        TransactionItem item = unpriced.get(0);
+        assertFalse(item.isPriced());
+        assertEquals(FluidType.COLA, item.fluidType);
+        assertEquals(Bitcoins.valueOf(2000000L), item.paid);
+        assertEquals(hash, item.hash);
+    }
+
+    @Test
+    public void testPaymentToExpiredAddressIsReported() {
+        PriceService priceService = new PriceService((HttpClient) null, new EventDispatcher()) {
+            @Override
+            public synchronized Double getEurQuote() {
+                return 10.0;
+            }
+        };
+        final long[] now = {1000000};
+        ExpiringAddressIndex<FluidType> lookup = Tx2FluidsAdapter.fixedKeys(Environment.TEST, 1000, new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return now[0];
+            }
+        });
+        Address saleAddress = ExpiringAddressIndexTest.randomAddresses(new Random(2), 1).get(0);
+        lookup.watch(saleAddress, FluidType.MATE);
+        now[0] += 1000;
+        List<TransactionItem> unpriced = new ArrayList<TransactionItem>();
+        TxNotifier notifier = new Tx2FluidsAdapter(priceService, lookup).convert(collecting(unpriced));
+        Sha256Hash hash = BinaryCodecTest.hash(5);
+        notifier.onValue(Bitcoins.valueOf(3000000L), saleAddress, hash);
+
+        assertEquals(1, unpriced.size());
+        assertNull(unpriced.get(0).fluidType);
+        assertEquals(Bitcoins.valueOf(3000000L), unpriced.get(0).paid);
+        assertEquals(hash, unpriced.get(0).hash);
+    }
+
+    /**
+     * keeps the errors as the watchers journal them
+     */
+    static FluidsNotifier collecting(final List<TransactionItem> unpriced) {
+        return new FluidsNotifier() {
+            @Override
+            public void onFluidPaid(TransactionItem transactionItem) {
+                throw new AssertionError("no price, no sale: " + transactionItem);
+            }
+
+            @Override
+            public void onError(String message, FluidType type, Bitcoins bitcoins, Sha256Hash hash) {
+                unpriced.add(TransactionItem.unpriced(type, bitcoins, hash));
+            }
+        };
+    }
+}